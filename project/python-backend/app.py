@@ -13,6 +13,7 @@ from fastapi import Body
 from fastapi.responses import JSONResponse
 from fastapi.responses import StreamingResponse
 import json, time
+import threading
 
 from dotenv import load_dotenv
 
@@ -36,6 +37,8 @@ OLLAMA_BASE = "http://localhost:11434"
 OLLAMA_MODEL = "qwen3-vl:8b"
 # Windows 환경에서 localhost 사용 시 DNS 해석 지연(약 1~2초)이 발생할 수 있어 127.0.0.1로 변경
 SPRING_BOOT_URL = "http://127.0.0.1:8080"
+# 프롬프트에 넣을 대화 기록 토큰 예산 (예산 밖의 오래된 대화는 Spring 이 요약 1개로 접어 줌)
+HISTORY_MAX_TOKENS = 2000
 
 # # 테스트용.
 # class PingResponse(BaseModel):
@@ -50,6 +53,8 @@ class IngestRequest(BaseModel):
     document_id: list[int]
     file_path: str
     title: str | None = None
+    # Spring 의 인덱싱 작업 id. 있으면 단계별 진행 상황을 Spring 으로 보고
+    job_id: int | None = None
 
 class IngestResponse(BaseModel):
     document_id: int
@@ -58,6 +63,20 @@ class IngestResponse(BaseModel):
     page_count: int | None = None
     extracted_chars : int
 
+# 여러 문서를 한 번에 인덱싱 (Spring 에서 가까운 시간에 들어온 ingest 를 묶어서 보냄)
+class IngestBatchRequest(BaseModel):
+    items: list[IngestRequest]
+
+class IngestBatchItemResult(BaseModel):
+    document_id: list[int]
+    ok: bool
+    message: str
+    page_count: int | None = None
+    extracted_chars: int = 0
+
+class IngestBatchResponse(BaseModel):
+    results: list[IngestBatchItemResult]
+
 
 class ChatRequest(BaseModel):
     document_id: int
@@ -67,6 +86,7 @@ class ChatRequest(BaseModel):
     model: str = "ollama" # "ollama" or "gemini"
     document_name: str = ""
     user_id: str = ""
+    conversation_id: str = ""
     
 
 class ChatResponse(BaseModel):
@@ -170,26 +190,31 @@ def save_doc_store(doc_id, chunks, vectors):
     index.add(vectors)
     faiss.write_index(index, str(doc_dir / "index.faiss"))
 
-# ✅ 간단한 인메모리 캐시 (doc_id -> (chunks, index))
+# ✅ 간단한 인메모리 캐시 (doc_id -> (chunks, index, 인덱스 파일 수정 시각))
+# 파이썬 노드가 여러 대이면 다른 노드가 재인덱싱할 수 있으므로, 파일 수정 시각이 바뀌면 다시 읽음
 DOC_CACHE = {}
 
 def load_doc_store(doc_id):
-    # 1. 캐시에 있으면 바로 반환 (디스크 I/O 제거)
-    if doc_id in DOC_CACHE:
-        return DOC_CACHE[doc_id]
-
     doc_dir = DATA_DIR / f"doc_{doc_id}"
     chunks_path = doc_dir / "chunks.json"
     index_path = doc_dir / "index.faiss"
 
     if not chunks_path.exists() or not index_path.exists():
+        DOC_CACHE.pop(doc_id, None)
         raise FileNotFoundError(f"Index not found for document_id={doc_id}. Did you ingest?")
 
+    mtime = index_path.stat().st_mtime_ns
+
+    # 1. 캐시에 있고 파일이 그대로면 바로 반환 (디스크 I/O 제거)
+    cached = DOC_CACHE.get(doc_id)
+    if cached is not None and cached[2] == mtime:
+        return cached[0], cached[1]
+
     chunks = json.loads(chunks_path.read_text(encoding="utf-8"))
     index = faiss.read_index(str(index_path))
     
     # 2. 로드된 데이터를 캐시에 저장
-    DOC_CACHE[doc_id] = (chunks, index)
+    DOC_CACHE[doc_id] = (chunks, index, mtime)
     return chunks, index
 
 
@@ -278,15 +303,26 @@ def build_rag_prompt(question: str, context: str, history_text: str = ""):
 """
 
 # Spring Boot에서 채팅 기록을 가져오는 헬퍼 함수
-def fetch_chat_history_text(user_id: str, limit: int = 20) -> str:
+# max_tokens: 기록 토큰 예산 (None 이면 개수(limit)로만 자름)
+# conversation_id: 있으면 그 대화의 기록만
+def fetch_chat_history_text(user_id: str, limit: int = 20, max_tokens: int | None = None, conversation_id: str = "") -> str:
     history_text = ""
     try:
         # Spring Boot의 /chats/history API 호출
-        resp = requests.get(f"{SPRING_BOOT_URL}/chats/history", params={"limit": limit, "userId": user_id}, timeout=2)
+        params = {"limit": limit, "userId": user_id}
+        if max_tokens is not None:
+            params["maxTokens"] = max_tokens
+        if conversation_id:
+            params["conversationId"] = conversation_id
+        resp = requests.get(f"{SPRING_BOOT_URL}/chats/history", params=params, timeout=2)
         if resp.status_code == 200:
             for msg in resp.json():
-                role = "User" if msg.get("role") == "user" else "Assistant"
                 content = msg.get("content", "")
+                # Spring 이 토큰 예산 밖의 오래된 대화를 role=system 요약 1개로 앞에 붙여 줌
+                if msg.get("role") == "system":
+                    history_text += f"{content}\n\n"
+                    continue
+                role = "User" if msg.get("role") == "user" else "Assistant"
                 history_text += f"{role}: {content}\n"
        
     except Exception as e:
@@ -295,6 +331,23 @@ def fetch_chat_history_text(user_id: str, limit: int = 20) -> str:
     return history_text
 
 
+# Spring 게이트웨이의 헬스 체크용. 로드된 문서 인덱스 수도 같이 알려줌
+@app.get("/health")
+def health():
+    return {"status": "ok", "cached_docs": len(DOC_CACHE)}
+
+
+# 인덱싱 진행 상황을 Spring 으로 보고 (실패해도 인덱싱은 계속)
+def report_progress(job_id, stage: str, **data):
+    if job_id is None:
+        return
+    try:
+        requests.post(f"{SPRING_BOOT_URL}/documents/jobs/{job_id}/progress",
+                      json={"stage": stage, **data}, timeout=1)
+    except Exception as e:
+        print(f"Progress report failed: {e}")
+
+
 # 받고나서 파일읽고(extract_pdf_text) -> 텍스트 분할하고(chunk_pages) -> 벡터화(embed_passages) -> 저장(save_doc_store):.
 @app.post("/ingest", response_model=IngestResponse)
 def ingest(req: IngestRequest):
@@ -304,16 +357,19 @@ def ingest(req: IngestRequest):
         total_chars = sum(len(p["text"]) for p in pages)
         if total_chars < 50:
             raise HTTPException(status_code=400, detail="PDF파일의 텍스트를 읽을수가 없습니다.")
+        report_progress(req.job_id, "pages_parsed", pages=len(pages), chars=total_chars)
 
         chunks = chunk_pages(pages, chunk_chars=800, overlap=120)
         texts = [c["text"] for c in chunks]
         vecs = embed_passages(texts)
+        report_progress(req.job_id, "chunks_embedded", chunks=len(chunks))
 
         for doc_id in req.document_id:
             save_doc_store(doc_id, chunks, vecs)
 
             # ✅ 문서가 업데이트되었으므로 캐시 초기화 (다음 검색 때 새로 로드)
             DOC_CACHE.pop(doc_id, None)
+        report_progress(req.job_id, "index_written", chunks=len(chunks))
 
         return IngestResponse(
             document_id=req.document_id[0],
@@ -331,6 +387,54 @@ def ingest(req: IngestRequest):
         raise HTTPException(status_code=500, detail=f"Ingest failed: {e}")
 
 
+# 배치 인덱싱: 문서별로 추출/분할한 뒤 모든 청크를 한 번의 encode 로 벡터화 -> 임베딩 모델이 꽉 찬 배치로 돎.
+# 문서 하나가 실패해도 나머지는 저장하고, 결과는 문서별로 돌려줌.
+@app.post("/ingest/batch", response_model=IngestBatchResponse)
+def ingest_batch(req: IngestBatchRequest):
+    results = [None] * len(req.items)
+    prepared = []  # (index, item, pages, chunks, total_chars)
+    all_texts = []
+
+    for i, item in enumerate(req.items):
+        try:
+            pages = extract_pdf_text(item.file_path)
+            total_chars = sum(len(p["text"]) for p in pages)
+            if total_chars < 50:
+                results[i] = IngestBatchItemResult(document_id=item.document_id, ok=False,
+                                                   message="PDF파일의 텍스트를 읽을수가 없습니다.",
+                                                   page_count=len(pages), extracted_chars=total_chars)
+                continue
+            report_progress(item.job_id, "pages_parsed", pages=len(pages), chars=total_chars)
+            chunks = chunk_pages(pages, chunk_chars=800, overlap=120)
+            prepared.append((i, item, pages, chunks, total_chars))
+            all_texts.extend(c["text"] for c in chunks)
+        except Exception as e:
+            traceback.print_exc()
+            results[i] = IngestBatchItemResult(document_id=item.document_id, ok=False, message=f"Ingest failed: {e}")
+
+    vecs = embed_passages(all_texts) if all_texts else None
+    for _, item, _, chunks, _ in prepared:
+        report_progress(item.job_id, "chunks_embedded", chunks=len(chunks))
+
+    offset = 0
+    for i, item, pages, chunks, total_chars in prepared:
+        doc_vecs = vecs[offset:offset + len(chunks)]
+        offset += len(chunks)
+        try:
+            for doc_id in item.document_id:
+                save_doc_store(doc_id, chunks, doc_vecs)
+                DOC_CACHE.pop(doc_id, None)
+            report_progress(item.job_id, "index_written", chunks=len(chunks))
+            results[i] = IngestBatchItemResult(document_id=item.document_id, ok=True,
+                                               message=f"Ingested: {len(chunks)}의 청크들을 저장했습니다.",
+                                               page_count=len(pages), extracted_chars=total_chars)
+        except Exception as e:
+            traceback.print_exc()
+            results[i] = IngestBatchItemResult(document_id=item.document_id, ok=False, message=f"Ingest failed: {e}")
+
+    return IngestBatchResponse(results=results)
+
+
 
 THRESHOLD = 0.90  # 필요하면 조정 RAG로 갈지 아니면 모델의 내용으로 갈지 확인.
     
@@ -339,8 +443,36 @@ def sse_event(data: dict, event: str = "message") -> str:
     # SSE 포맷: event: xxx \n data: yyy \n\n \n = 여기까지가 하나의 메시지 임을 나타냄.
     return f"event: {event}\ndata: {json.dumps(data, ensure_ascii=False)}\n\n"
 
+# 생성 취소 신호 (Spring 이 클라이언트가 떠난 스트림의 request_id 를 보냄).
+# 연결 끊김은 다음 토큰을 보낼 때에야 알 수 있어서, 토큰 사이마다 이 표시를 보고 모델 호출을 바로 멈춤
+CANCELLED = {}
+CANCELLED_LOCK = threading.Lock()
+CANCELLED_TTL_SEC = 600
+
+
+def is_cancelled(request_id: str) -> bool:
+    if not request_id:
+        return False
+    with CANCELLED_LOCK:
+        return request_id in CANCELLED
+
+
+@app.post("/chat/cancel")
+def chat_cancel(request_id: str = ""):
+    if not request_id:
+        return {"cancelled": False}
+    now = time.time()
+    with CANCELLED_LOCK:
+        # 스트림이 이미 끝난 뒤 도착한 신호는 남으므로 오래된 것은 정리
+        for rid in [k for k, t in CANCELLED.items() if now - t > CANCELLED_TTL_SEC]:
+            CANCELLED.pop(rid, None)
+        CANCELLED[request_id] = now
+    print("생성 취소:", request_id)
+    return {"cancelled": True}
+
+
 @app.get("/chat/stream")
-def chat_stream(docIds: str = "0", q: str = "", topK: int = 3, model: str = "ollama", document_name: str = "",user_id: str = ""):
+def chat_stream(docIds: str = "0", q: str = "", topK: int = 3, model: str = "ollama", document_name: str = "",user_id: str = "", conversation_id: str = "", request_id: str = ""):
     # 테스트용 시간 측정 시작
     start = time.time()
 
@@ -357,6 +489,7 @@ def chat_stream(docIds: str = "0", q: str = "", topK: int = 3, model: str = "oll
         model=model,
         document_name = document_name,
         user_id = user_id,
+        conversation_id = conversation_id,
     )
 
     def gen():
@@ -368,7 +501,7 @@ def chat_stream(docIds: str = "0", q: str = "", topK: int = 3, model: str = "oll
         try:
             # 0) Spring Boot에서 채팅 기록 가져오기 (Pull 방식)
             # 함수를 호출하여 깔끔하게 처리
-            history_text = fetch_chat_history_text(user_id=req.user_id, limit=20)
+            history_text = fetch_chat_history_text(user_id=req.user_id, limit=20, max_tokens=HISTORY_MAX_TOKENS, conversation_id=req.conversation_id)
 
             # --- 2) 프롬프트 및 컨텍스트 구성 ---
             if req.document_id == 0:
@@ -433,13 +566,23 @@ def chat_stream(docIds: str = "0", q: str = "", topK: int = 3, model: str = "oll
                 # Gemini 스트리밍
                 response = gemini_service.generate_gemini(prompt, stream=True)
                 for chunk in response:
+                    if is_cancelled(request_id):
+                        print("생성 중단 (취소됨):", request_id)
+                        return
                     if chunk.parts:
                         text_chunk = chunk.text
                         yield sse_event({"type": "delta", "text": text_chunk}, event="delta")
             else:
-                # Ollama 스트리밍
-                for chunk in ollama_stream(prompt):
-                    yield sse_event({"type": "delta", "text": chunk}, event="delta")
+                # Ollama 스트리밍 (취소되면 generator 를 닫아 Ollama 연결도 끊음)
+                stream = ollama_stream(prompt)
+                try:
+                    for chunk in stream:
+                        if is_cancelled(request_id):
+                            print("생성 중단 (취소됨):", request_id)
+                            return
+                        yield sse_event({"type": "delta", "text": chunk}, event="delta")
+                finally:
+                    stream.close()
             
             # --- 4) 종료 이벤트 (citations 포함) ---
             yield sse_event({"type": "end", "citations": citations}, event="meta")
@@ -451,6 +594,10 @@ def chat_stream(docIds: str = "0", q: str = "", topK: int = 3, model: str = "oll
             import traceback
             traceback.print_exc() # 서버 콘솔에 상세 에러 로그 출력
             raise HTTPException(status_code=500, detail=f"Chat failed: {e}")
+        finally:
+            if request_id:
+                with CANCELLED_LOCK:
+                    CANCELLED.pop(request_id, None)
     
 
     return StreamingResponse(gen(), media_type="text/event-stream")
@@ -0,0 +1,34 @@
+package com.example.project.controller;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// GET /chats/stream 의 docIds 파라미터 파싱 (요청마다 1번)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseIdsBenchmark {
+
+    // 단일 문서 / 전체(0) / 여러 문서 (공백 섞임)
+    @Param({"12", "0", "3, 17, 42, 108, 256, 1024, 4096, 65536"})
+    public String docIds;
+
+    @Benchmark
+    public List<Long> parseIds() {
+        return ChatStreamController.parseIds(docIds);
+    }
+}
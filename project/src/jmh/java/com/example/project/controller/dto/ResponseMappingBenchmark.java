@@ -0,0 +1,86 @@
+package com.example.project.controller.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.project.domain.ChatMessage;
+import com.example.project.domain.Document;
+import com.example.project.domain.DocumentStatus;
+import com.example.project.repository.DocumentSummary;
+
+// 목록 API 의 엔티티 -> 응답 DTO 변환.
+// 20 = /chats 기본 page size, 200 = /documents 기본 page size, 500 = /documents 최대 page size
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseMappingBenchmark {
+
+    @Param({"20", "200", "500"})
+    public int size;
+
+    // /documents 목록은 projection(DocumentSummary)으로 읽음
+    private record Summary(Long getId, String getTitle, String getFilePath, DocumentStatus getStatus,
+                           LocalDateTime getCreatedAt, String getUserId) implements DocumentSummary {}
+
+    private List<Document> documents;
+    private List<DocumentSummary> summaries;
+    private List<ChatMessage> messages;
+
+    @Setup
+    public void setup() {
+        LocalDateTime now = LocalDateTime.now();
+        documents = new ArrayList<>(size);
+        summaries = new ArrayList<>(size);
+        messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Document d = new Document();
+            d.setTitle("계약서_" + i + ".pdf");
+            d.setFilePath("uploads/" + i + "_계약서.pdf");
+            d.setStatus(DocumentStatus.DONE);
+            d.setUserId("user-1");
+            d.setCreatedAt(now.minusMinutes(i));
+            documents.add(d);
+            summaries.add(new Summary((long) i, d.getTitle(), d.getFilePath(), d.getStatus(), d.getCreatedAt(), d.getUserId()));
+
+            ChatMessage m = new ChatMessage();
+            m.setId((long) i);
+            m.setUserId("user-1");
+            m.setRole(i % 2 == 0 ? "user" : "assistant");
+            m.setContent("계약 기간은 2년이며 갱신 조건은 제12조에 명시되어 있습니다.");
+            m.setCreatedAt(now.minusSeconds(i));
+            messages.add(m);
+        }
+    }
+
+    @Benchmark
+    public List<DocumentResponse> documentResponsesFromEntity() {
+        return documents.stream().map(DocumentResponse::from).toList();
+    }
+
+    @Benchmark
+    public List<DocumentResponse> documentResponsesFromSummary() {
+        return summaries.stream().map(DocumentResponse::from).toList();
+    }
+
+    @Benchmark
+    public List<ChatResponse> chatResponses() {
+        return messages.stream().map(ChatResponse::from).toList();
+    }
+}
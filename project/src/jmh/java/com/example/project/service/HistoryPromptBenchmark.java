@@ -0,0 +1,74 @@
+package com.example.project.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.project.domain.ChatMessage;
+
+// getRecentMessagesForPrompt 의 변환 비용.
+// db    : DB 결과(최신순)를 뒤집고 프롬프트 Map 으로 변환 (캐시 창보다 큰 limit 또는 캐시 미스)
+// cache : 캐시 창에서 최근 limit 개를 복사 (예산 없음)
+// cacheBudgeted : 토큰 예산(1000)으로 자르고 오래된 대화는 캐시된 요약 줄로 (기본 경로)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryPromptBenchmark {
+
+    // 파이썬이 보통 요청하는 개수 / 캐시 창 크기 / 큰 요청
+    @Param({"10", "50", "200"})
+    public int limit;
+
+    private List<ChatMessage> newestFirst;
+    private ChatHistoryCache cache;
+
+    @Setup
+    public void setup() {
+        newestFirst = new ArrayList<>(limit);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < limit; i++) {
+            ChatMessage m = new ChatMessage();
+            m.setId((long) (limit - i));
+            m.setUserId("user-1");
+            m.setRole(i % 2 == 0 ? "assistant" : "user");
+            m.setContent((i % 2 == 0 ? "계약 기간은 2년이며 갱신 조건은 제12조에 명시되어 있습니다. " : "갱신 조건이 뭐야? ").repeat(3));
+            m.setTokenCount(TokenCounter.countMessage(m.getContent()));
+            m.setCreatedAt(now.minusSeconds(i));
+            newestFirst.add(m);
+        }
+        cache = new ChatHistoryCache(Math.max(50, limit), 10_000, 300, 20, true);
+        cache.load("user-1", ChatHistoryService.oldestFirst(newestFirst));
+    }
+
+    @Benchmark
+    public List<Map<String, String>> db() {
+        return ChatHistoryService.toPromptFormat(ChatHistoryService.oldestFirst(newestFirst));
+    }
+
+    @Benchmark
+    public List<Map<String, String>> cache() {
+        return cache.snapshot("user-1", limit);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> cacheBudgeted() {
+        return cache.snapshot("user-1", limit, 1000);
+    }
+}
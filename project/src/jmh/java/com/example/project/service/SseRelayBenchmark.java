@@ -0,0 +1,59 @@
+package com.example.project.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// 파이썬 SSE 본문 -> 이벤트 분리 -> 클라이언트 이벤트 생성 (forwardSseToClient 의 중계 루프).
+// 입력은 파이썬 /chat/stream 과 같은 형식으로 녹화한 스트림 (src/jmh/resources/streams).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseRelayBenchmark {
+
+    @Param({"short-answer", "long-answer"})
+    public String stream;
+
+    private byte[] recorded;
+    private PythonClientService client;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream in = SseRelayBenchmark.class.getResourceAsStream("/streams/" + stream + ".sse")) {
+            recorded = in.readAllBytes();
+        }
+        // relay 는 게이트웨이/지표를 쓰지 않음
+        client = new PythonClientService(null, null);
+    }
+
+    // SseEmitter 로 보낼 이벤트까지 만든 경우 (실제 클라이언트 중계와 같은 할당)
+    @Benchmark
+    public String relayToEmitterEvents(Blackhole bh) throws IOException {
+        return client.relay(new ByteArrayInputStream(recorded),
+                (name, data) -> bh.consume(SseEmitter.event().name(name).data(data).build()));
+    }
+
+    // 파싱 + 답변 수집만 (내보내기 비용 제외)
+    @Benchmark
+    public String parseOnly(Blackhole bh) throws IOException {
+        return client.relay(new ByteArrayInputStream(recorded), (name, data) -> bh.consume(data));
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.project.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+// Kafka 경로를 쓸 때만 요청/응답 토픽 생성 (파티션 수 = 워커 최대 병렬 처리 수)
+@Configuration
+@ConditionalOnExpression("'${chat.stream.transport:local}' == 'kafka' or ${chat.kafka.worker-enabled:false}")
+public class KafkaTopicConfig {
+
+    @Bean
+    public NewTopic chatRequestsTopic(@Value("${chat.kafka.request-topic:chat-requests}") String name,
+                                      @Value("${chat.kafka.partitions:6}") int partitions) {
+        return TopicBuilder.name(name).partitions(partitions).replicas(1).build();
+    }
+
+    @Bean
+    public NewTopic chatRepliesTopic(@Value("${chat.kafka.reply-topic:chat-replies}") String name,
+                                     @Value("${chat.kafka.partitions:6}") int partitions) {
+        return TopicBuilder.name(name).partitions(partitions).replicas(1).build();
+    }
+}
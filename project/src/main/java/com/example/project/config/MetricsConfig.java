@@ -0,0 +1,77 @@
+package com.example.project.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.project.service.ChatEmitterRegistry;
+import com.example.project.service.ChatMessageWriteBehind;
+import com.example.project.service.ChatStreamExecutor;
+import com.example.project.service.FairChatScheduler;
+import com.example.project.service.InFlightStreams;
+import com.example.project.service.IngestionService;
+import com.example.project.service.ResumableStreams;
+import com.example.project.service.StreamDrain;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+// 현재 상태 게이지 (스크레이프 시점에 값을 읽음). 타이머/카운터는 AppMetrics 에서 기록
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder chatStreamGauges(ChatStreamExecutor executor, FairChatScheduler scheduler,
+                                        ChatEmitterRegistry activeEmitters, InFlightStreams inFlight,
+                                        ResumableStreams resumable, StreamDrain drain) {
+        return registry -> {
+            Gauge.builder("chat.stream.executor.active", executor, ChatStreamExecutor::running)
+                    .description("실행 중인 스트림 수")
+                    .tag("mode", executor.getMode().name().toLowerCase())
+                    .register(registry);
+            Gauge.builder("chat.stream.executor.capacity", executor, ChatStreamExecutor::getMaxConcurrent)
+                    .description("동시 스트림 상한")
+                    .register(registry);
+            Gauge.builder("chat.stream.queue.size", scheduler, FairChatScheduler::queuedCount)
+                    .description("유저 대기열에 쌓인 요청 수")
+                    .register(registry);
+            Gauge.builder("chat.stream.emitters.active", activeEmitters, ChatEmitterRegistry::size)
+                    .description("이 노드가 들고 있는 SSE 연결 수")
+                    .register(registry);
+            Gauge.builder("chat.stream.singleflight.active", inFlight, InFlightStreams::size)
+                    .description("여러 클라이언트가 공유할 수 있는 진행 중 파이썬 스트림 수")
+                    .register(registry);
+            Gauge.builder("chat.stream.resumable.active", resumable, ResumableStreams::size)
+                    .description("재연결을 기다리거나 재생 버퍼를 들고 있는 스트림 수")
+                    .register(registry);
+            Gauge.builder("chat.stream.draining", drain, d -> d.isDraining() ? 1 : 0)
+                    .description("드레인 중이면 1 (새 스트림을 받지 않음)")
+                    .register(registry);
+            FunctionCounter.builder("chat.stream.singleflight.joined", inFlight, s -> ((Number) s.stats().get("joined")).doubleValue())
+                    .description("진행 중인 같은 질문 스트림에 합류한 요청 수 (파이썬 호출 절약)")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder writeBehindMeters(ChatMessageWriteBehind writeBehind) {
+        return registry -> {
+            Gauge.builder("chat.history.write.behind.queued", writeBehind, w -> ((Number) w.stats().get("queued")).doubleValue())
+                    .description("DB 저장을 기다리는 대화 메시지 수")
+                    .register(registry);
+            FunctionCounter.builder("chat.history.write.behind.lost", writeBehind, ChatMessageWriteBehind::lostCount)
+                    .description("재시도와 한 건씩 저장까지 실패해 버린 대화 메시지 수")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder ingestGauges(IngestionService ingestionService) {
+        return registry -> {
+            Gauge.builder("ingest.workers.active", ingestionService, s -> ((Number) s.stats().get("active")).doubleValue())
+                    .register(registry);
+            Gauge.builder("ingest.workers.queued", ingestionService, s -> ((Number) s.stats().get("queued")).doubleValue())
+                    .register(registry);
+        };
+    }
+}
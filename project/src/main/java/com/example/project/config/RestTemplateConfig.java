@@ -2,14 +2,18 @@ package com.example.project.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import com.example.project.service.PythonGateway;
+
 @Configuration
 public class RestTemplateConfig {
 
+    // 파이썬 게이트웨이와 같은 keep-alive 커넥션 풀 사용 (요청마다 새 TCP 연결을 만들지 않음)
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(PythonGateway pythonGateway) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(pythonGateway.httpClient()));
     }
 
 }
@@ -5,14 +5,22 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.example.project.controller.dto.ChatPageResponse;
 import com.example.project.controller.dto.ChatResponse;
+import com.example.project.controller.dto.ConversationResponse;
+import com.example.project.domain.ChatMessage;
 import com.example.project.repository.ChatMessageRepository;
 import com.example.project.service.ChatHistoryService;
 
@@ -27,15 +35,23 @@ public class ChatHistoryController {
         this.chatHistoryService = chatHistoryService;
     }
     
-    // 챗 기록들 가져오기.
+    // 챗 기록들 가져오기. conversationId 가 있으면 그 대화만
     @GetMapping("/chats")
     public List<ChatResponse> list(@RequestParam(name = "page", defaultValue = "0") int page,
                                    @RequestParam(name = "size", defaultValue = "20") int size,
-                                    @RequestParam(name = "userId",defaultValue = "") String userId) {
+                                    @RequestParam(name = "userId",defaultValue = "") String userId,
+                                   @RequestParam(name = "conversationId", required = false) String conversationId) {
+        String cid = ChatHistoryService.normalize(conversationId);
+        // 아직 큐에 남은(write-behind) 이 유저의 메시지를 먼저 저장
+        chatHistoryService.flushPending(userId);
+
         // 최신순(내림차순)으로 페이징하여 가져옴
-        Pageable pageable = PageRequest.of(page, size ,Sort.by("createdAt").descending());
+        Pageable pageable = PageRequest.of(page, size ,Sort.by("createdAt").descending().and(Sort.by("id").descending()));
         
-        List<ChatResponse> list = chatMessageRepository.findByUserId(userId, pageable)
+        List<ChatMessage> rows = cid == null
+                ? chatMessageRepository.findByUserId(userId, pageable)
+                : chatMessageRepository.findByUserIdAndConversationId(userId, cid, pageable);
+        List<ChatResponse> list = rows
                 .stream()
                 .map(ChatResponse::from)
                 .toList();
@@ -46,9 +62,79 @@ public class ChatHistoryController {
         return reversed;
     }
 
+    // 무한 스크롤용 커서 페이징: before 파라미터가 있으면 이쪽으로 옴 (첫 페이지는 before= 빈 값)
+    // OFFSET 을 쓰지 않으므로 500페이지째도 1페이지와 같은 비용
+    // 잘못된 커서는 400 (size 는 1~200 으로 맞춤)
+    @GetMapping(value = "/chats", params = "before")
+    public ChatPageResponse scroll(@RequestParam(name = "before") String before,
+                                   @RequestParam(name = "size", defaultValue = "20") int size,
+                                   @RequestParam(name = "userId",defaultValue = "") String userId,
+                                   @RequestParam(name = "conversationId", required = false) String conversationId) {
+        String cid = ChatHistoryService.normalize(conversationId);
+        size = Math.max(1, Math.min(size, 200));
+        chatHistoryService.flushPending(userId);
+
+        List<ChatMessage> rows;
+        if (before.isBlank()) {
+            rows = cid == null
+                    ? chatMessageRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, Limit.of(size))
+                    : chatMessageRepository.findByUserIdAndConversationIdOrderByCreatedAtDescIdDesc(userId, cid, Limit.of(size));
+        } else {
+            ChatPageResponse.Cursor c;
+            try {
+                c = ChatPageResponse.decodeCursor(before);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            rows = cid == null
+                    ? chatMessageRepository.findBefore(userId, c.createdAt(), c.id(), Limit.of(size))
+                    : chatMessageRepository.findBeforeInConversation(userId, cid, c.createdAt(), c.id(), Limit.of(size));
+        }
+
+        // 가득 찬 페이지면 가장 과거 메시지가 다음 커서
+        String nextCursor = rows.size() == size ? ChatPageResponse.encodeCursor(rows.get(rows.size() - 1)) : null;
+
+        // 과거 -> 최신 순으로 뒤집어서 반환
+        List<ChatResponse> items = new ArrayList<>(rows.size());
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            items.add(ChatResponse.from(rows.get(i)));
+        }
+        return new ChatPageResponse(items, nextCursor);
+    }
+
     // Python 서버가 호출할 API: 최근 대화 기록을 프롬프트용 포맷으로 반환
+    // maxTokens: 기록 토큰 예산 (없으면 chat.history.token-budget, 기본 0 = 개수로만 자름). 예산 밖 대화는 role=system 요약 1개로 맨 앞에
+    // conversationId: 있으면 그 대화의 기록만
     @GetMapping("/chats/history")
-    public List<Map<String, String>> getHistoryForPrompt(@RequestParam(name = "limit", defaultValue = "20") int limit,@RequestParam(name = "userId",defaultValue = "") String userId) {
-        return chatHistoryService.getRecentMessagesForPrompt(limit,userId);
+    public List<Map<String, String>> getHistoryForPrompt(@RequestParam(name = "limit", defaultValue = "20") int limit,@RequestParam(name = "userId",defaultValue = "") String userId,
+                                                         @RequestParam(name = "conversationId", required = false) String conversationId,
+                                                         @RequestParam(name = "maxTokens", required = false) Integer maxTokens) {
+        return chatHistoryService.getRecentMessagesForPrompt(limit,userId,conversationId,maxTokens);
+    }
+
+    // 유저의 대화 목록 (최근 대화 순)
+    @GetMapping("/chats/conversations")
+    public List<ConversationResponse> conversations(@RequestParam(name = "userId",defaultValue = "") String userId,
+                                                    @RequestParam(name = "size", defaultValue = "50") int size) {
+        return chatHistoryService.listConversations(userId, size)
+                .stream()
+                .map(ConversationResponse::from)
+                .toList();
+    }
+
+    // 대화 1개 삭제 (없는 대화면 404, 대화 id 가 비었으면 400)
+    @DeleteMapping("/chats/conversations/{conversationId}")
+    public Map<String, Object> deleteConversation(@PathVariable("conversationId") String conversationId,
+                                                  @RequestParam(name = "userId",defaultValue = "") String userId) {
+        int deleted;
+        try {
+            deleted = chatHistoryService.deleteConversation(userId, conversationId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (deleted == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "대화가 없습니다: " + conversationId);
+        }
+        return Map.of("conversationId", conversationId, "deleted", deleted);
     }
 }
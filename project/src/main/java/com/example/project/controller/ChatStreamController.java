@@ -1,45 +1,94 @@
 package com.example.project.controller;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.example.project.controller.dto.ChatRequest;
+import com.example.project.service.AnswerCache;
+import com.example.project.service.ChatEmitterRegistry;
 import com.example.project.service.ChatHistoryService;
+import com.example.project.service.ChatStreamExecutor;
+import com.example.project.service.DeltaCoalescer;
+import com.example.project.service.FairChatScheduler;
+import com.example.project.service.InFlightStreams;
+import com.example.project.service.KafkaChatFront;
 import com.example.project.service.PythonClientService;
+import com.example.project.service.ReactivePythonClientService;
+import com.example.project.service.ResumableStreams;
+import com.example.project.service.StreamDrain;
+import com.example.project.service.StreamEventSink;
+
+import reactor.core.publisher.Flux;
 
 @RestController
 public class ChatStreamController {
     private final PythonClientService pythonClientService;
     private final ChatHistoryService chatHistoryService;
+
+    // 스트림 실행기 (pool / virtual 모드는 chat.stream.executor-mode 설정으로 선택)
+    private final ChatStreamExecutor executor;
+    // 유저별 대기열 + 라운드로빈 (전체 FIFO 대신)
+    private final FairChatScheduler scheduler;
+    private final ReactivePythonClientService reactivePythonClientService;
     
-     // [최적화] 스레드 3개 고정, 대기열(Queue)은 100개까지만 허용
-    // 100개가 꽉 차면 요청을 거절(Reject)하여 서버 다운을 방지합니다.
-    private final ExecutorService executor = new ThreadPoolExecutor(
-        3,3,
-        0L,TimeUnit.MILLISECONDS,
-        new ArrayBlockingQueue<>(100)
-    ); 
-    
-    // Kafka 도입 시, 응답을 돌려줄 Emitter를 찾기 위한 저장소
-    private final Map<String, SseEmitter> activeEmitters = new ConcurrentHashMap<>();
+    // Kafka 응답 Consumer 와 공유하는, 응답을 돌려줄 Emitter를 찾기 위한 저장소
+    private final ChatEmitterRegistry activeEmitters;
+
+    // 반복 질문 답변 캐시 (적중 시 파이썬 호출 없이 저장된 이벤트 재생)
+    private final AnswerCache answerCache;
+
+    // chat.stream.transport=kafka 일 때만 존재. 없으면 로컬 스케줄러로 처리.
+    private final KafkaChatFront kafkaFront;
+
+    // 토큰마다 send 하지 않고 delta 를 창 단위로 합쳐서 전송 (요청별 / 서버 설정)
+    private final DeltaCoalescer coalescer;
 
-    public ChatStreamController(PythonClientService pythonClientService, ChatHistoryService chatHistoryService) {
+    // 같은 질문의 동시 스트림은 파이썬 호출 1번으로 합침 (로컬 모드만)
+    private final InFlightStreams inFlight;
+
+    // 이벤트 id + 요청별 재생 버퍼: 끊긴 연결이 Last-Event-ID 로 다시 붙음 (로컬 모드만)
+    private final ResumableStreams resumable;
+
+    // 배포 시 드레인: 새 스트림을 받지 않고 실행 중인 것만 끝까지 보냄
+    private final StreamDrain drain;
+
+    public ChatStreamController(PythonClientService pythonClientService, ChatHistoryService chatHistoryService,
+                                ChatStreamExecutor executor, FairChatScheduler scheduler,
+                                ReactivePythonClientService reactivePythonClientService,
+                                ChatEmitterRegistry activeEmitters, AnswerCache answerCache,
+                                ObjectProvider<KafkaChatFront> kafkaFront, DeltaCoalescer coalescer,
+                                InFlightStreams inFlight, ResumableStreams resumable, StreamDrain drain) {
         this.pythonClientService = pythonClientService;
         this.chatHistoryService = chatHistoryService;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.reactivePythonClientService = reactivePythonClientService;
+        this.activeEmitters = activeEmitters;
+        this.answerCache = answerCache;
+        this.kafkaFront = kafkaFront.getIfAvailable();
+        this.coalescer = coalescer;
+        this.inFlight = inFlight;
+        this.resumable = resumable;
+        this.drain = drain;
     }
 
     @PostMapping("/chats/stream")
@@ -48,51 +97,303 @@ public class ChatStreamController {
         SseEmitter emitter = new SseEmitter(0L);
         String requestId = UUID.randomUUID().toString();
 
+        // 드레인 중인 노드: 받지 않고 다른 노드로 다시 요청하라고 알림 (readiness 가 내려가 로드밸런서가 곧 다른 노드로 보냄)
+        if (drain.isDraining()) {
+            sendDraining(emitter);
+            emitter.complete();
+            return emitter;
+        }
+
         // 2. Emitter 저장 (Kafka Consumer가 나중에 이 ID로 Emitter를 찾음)
         activeEmitters.put(requestId, emitter);
 
-        // 연결 종료/타임아웃 시 Map에서 제거
-        emitter.onCompletion(() -> activeEmitters.remove(requestId));
-        emitter.onTimeout(() -> activeEmitters.remove(requestId));
-        emitter.onError((e) -> activeEmitters.remove(requestId));
+        // 3-a. [Producer 역할] Kafka 모드: 요청 토픽으로 발행. 어느 노드의 워커든 처리 후 응답 토픽으로 돌려줌
+        // (응답이 다른 노드의 Consumer 에서 오므로 재연결 버퍼 없이 예전처럼 연결 종료 시 정리)
+        if (kafkaFront != null) {
+            emitter.onCompletion(() -> release(requestId, req));
+            emitter.onTimeout(() -> release(requestId, req));
+            emitter.onError((e) -> release(requestId, req));
+            if (!replayCached(req, requestId, (name, data) -> emitter.send(SseEmitter.event().name(name).data(data)),
+                    emitter::complete, emitter::completeWithError)) {
+                kafkaFront.publish(requestId, req);
+            }
+            return emitter;
+        }
 
-        // 3. [Producer 역할] 요청을 큐(Kafka)로 전송
-        // 나중에 Kafka 도입 시: kafkaTemplate.send("chat-requests", requestId, req);
-        try{
-            executor.execute(() -> processQueue(requestId, req));
-        } catch (Exception e) {
-            emitter.completeWithError(new RuntimeException("서버가 혼잡하여 요청을 처리할 수 없습니다. 잠시 후 다시 시도해주세요."));
+        // 로컬 모드: 이벤트에 id 를 붙이고 버퍼에 남겨 재연결(/chats/stream/resume)로 이어받을 수 있게 함.
+        // 연결이 끊기면 바로 정리하지 않고 grace 동안 기다림 -> 그래도 안 돌아오면(또는 취소 요청) 대기열에서 빼고 업스트림을 끊음
+        ResumableStreams.Stream stream = resumable.open(requestId, emitter, (reason) -> abandon(requestId, req, reason));
+        watch(requestId, stream, emitter);
+
+        // 캐시 적중: 같은 질문/문서/모델의 답변을 그대로 재생하고 대화 기록만 저장
+        if (replayCached(req, requestId, stream.sink(), stream::complete, stream::fail)) {
+            return emitter;
+        }
+
+        // 같은 질문의 스트림이 이미 돌고 있으면 거기에 붙음 (대기열/실행 슬롯/파이썬 호출 없음)
+        if (inFlight.isEnabled() && inFlight.attachIfRunning(req, hasPromptHistory(req), subscriber(req, stream))) {
+            System.out.println(">>> [SingleFlight] 진행 중인 같은 질문 스트림에 합류: " + requestId);
+            return emitter;
+        }
+
+        // 3-b. [Producer 역할] 로컬 모드: 요청을 유저별 대기열로 전송
+        FairChatScheduler.Admission admission = scheduler.submit(requestId, req.getUserId(),
+                () -> processQueue(requestId, req),
+                (position, estimatedWaitMs) -> sendQueued(stream, position, estimatedWaitMs));
+
+        if (admission.result() == FairChatScheduler.Result.REJECTED && "draining".equals(admission.reason())) {
+            // 확인한 뒤 드레인이 시작된 경우
+            sendDraining(emitter);
+            stream.complete();
+        } else if (admission.result() == FairChatScheduler.Result.REJECTED) {
+            // 429 성격의 거절 이벤트 + 재시도 힌트 (일반 에러가 아님)
+            try {
+                emitter.send(SseEmitter.event()
+                        .name("rejected")
+                        .reconnectTime(admission.retryAfterMs())
+                        .data(Map.of(
+                                "status", 429,
+                                "reason", admission.reason(),
+                                "retryAfterMs", admission.retryAfterMs(),
+                                "message", "서버가 혼잡하여 요청을 처리할 수 없습니다. 잠시 후 다시 시도해주세요.")));
+            } catch (Exception ignore) {}
+            stream.complete(); // 실행되지 않은 요청: 재연결해도 이어받을 것이 없음
+        }
+        return emitter;
+    }
+
+    // 캐시 적중이면 저장된 이벤트를 재생하고 true. 완료 시 대화 기록 저장 후 onDone
+    private boolean replayCached(ChatRequest req, String requestId, StreamEventSink sink, Runnable onDone,
+                                 Consumer<Exception> onError) {
+        AnswerCache.Hit hit = answerCache.get(req);
+        if (hit == null) return false;
+        System.out.println(">>> [Cache] 적중, 저장된 답변 재생: " + requestId);
+        long startedAt = System.currentTimeMillis();
+        // replay-delay-ms 를 쓰면 재생이 실행기 밖(answer-replay 스레드)에서 이어지므로 드레인이 기다리도록 셈
+        Runnable tracked = drain.track();
+        answerCache.replay(hit, sink,
+                () -> {
+                    try {
+                        chatHistoryService.saveExchange(req.getQuestion(), hit.fullAnswer(), req.getUserId(), req.getConversationId(), startedAt);
+                        onDone.run();
+                    } finally {
+                        tracked.run();
+                    }
+                },
+                (e) -> {
+                    tracked.run();
+                    onError.accept(e);
+                });
+        return true;
+    }
+
+    // 연결이 끝나면(정상/타임아웃/에러) 스트림에서 떼어냄. 생성은 계속되고 재연결을 기다림
+    private void watch(String requestId, ResumableStreams.Stream stream, SseEmitter emitter) {
+        Runnable detach = () -> {
+            stream.detach(emitter);
+            activeEmitters.remove(requestId, emitter);
+        };
+        emitter.onCompletion(detach);
+        emitter.onTimeout(detach);
+        emitter.onError((e) -> detach.run());
+    }
+
+    // 끊긴 스트림에 다시 붙기 (fetch 로 읽는 클라이언트용: 마지막으로 받은 id 를 lastEventId 파라미터나 Last-Event-ID 헤더로 보냄).
+    // EventSource 는 GET /chats/stream 으로 자동 재연결하므로 거기서도 Last-Event-ID 를 보고 이쪽으로 넘김
+    @GetMapping("/chats/stream/resume")
+    public SseEmitter resume(@RequestParam("requestId") String requestId,
+                             @RequestParam(value = "lastEventId", required = false) Long lastEventIdParam,
+                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader) {
+        long lastEventId = lastEventIdParam != null ? lastEventIdParam : parseEventId(lastEventIdHeader);
+        return resumeStream(requestId, lastEventId);
+    }
+
+    private SseEmitter resumeStream(String requestId, long lastEventId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        ResumableStreams.Stream stream = resumable.get(requestId);
+        if (stream != null) {
+            activeEmitters.put(requestId, emitter);
+            watch(requestId, stream, emitter);
+        }
+
+        ResumableStreams.ResumeResult result = resumable.resume(requestId, lastEventId, emitter);
+        System.out.println(">>> [Resume] " + requestId + " lastEventId=" + lastEventId + " -> " + result);
+        if (result == ResumableStreams.ResumeResult.NOT_FOUND || result == ResumableStreams.ResumeResult.GAP) {
+            // 만료됐거나 버퍼에서 이미 밀려난 구간: 이어받을 수 없으므로 클라이언트가 새로 질문해야 함
+            try {
+                emitter.send(SseEmitter.event().name("expired")
+                        .data(Map.of("requestId", requestId, "reason", result.name().toLowerCase())));
+            } catch (Exception ignore) {}
+            emitter.complete();
         }
         return emitter;
     }
 
-    // 4. [Consumer 역할] 큐에서 메시지를 꺼내 실제 처리 (나중에 @KafkaListener 메서드로 분리 가능)
+    // "<requestId>:<순번>" 또는 순번만. 없거나 잘못된 값이면 0 (처음부터 재생)
+    static long parseEventId(String header) {
+        ResumableStreams.EventId id = ResumableStreams.EventId.parse(header);
+        return id == null ? 0 : id.seq();
+    }
+
+    // 생성 취소 (중지 버튼). 대기 중이면 대기열에서 빼고, 실행 중이면 파이썬 스트림을 바로 끊어 실행 슬롯을 반납.
+    // 같은 질문을 함께 받는 다른 클라이언트가 있으면 이 요청만 빠지고 스트림은 계속
+    @DeleteMapping("/chats/stream/{requestId}")
+    public Map<String, Object> cancelStream(@PathVariable("requestId") String requestId) {
+        boolean cancelled = resumable.cancel(requestId);
+        System.out.println(">>> [Cancel] " + requestId + " -> " + cancelled);
+        return Map.of("requestId", requestId, "cancelled", cancelled);
+    }
+
+    private void release(String requestId, ChatRequest req) {
+        activeEmitters.remove(requestId);
+        scheduler.cancel(requestId, req.getUserId());
+    }
+
+    // 클라이언트가 떠난 요청 정리 (reason: client_gone / client_cancel)
+    private void abandon(String requestId, ChatRequest req, String reason) {
+        release(requestId, req);
+        if (inFlight.leave(requestId, reason)) {
+            System.out.println(">>> [Cancel] 스트림에서 제외 (" + reason + "): " + requestId);
+        }
+    }
+
+    // 503 성격: 이 노드는 종료 준비 중. reconnectTime 뒤에 다시 요청하면 다른 노드가 받음
+    private void sendDraining(SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("draining")
+                    .reconnectTime(drain.retryAfterMs())
+                    .data(Map.of(
+                            "status", 503,
+                            "retryAfterMs", drain.retryAfterMs(),
+                            "message", "서버 점검(배포) 중입니다. 잠시 후 다시 시도해주세요.")));
+        } catch (Exception ignore) {}
+    }
+
+    // 배포 스크립트용: 종료 전에 미리 드레인 시작 (readiness 내림 -> 로드밸런서가 빼고 나면 SIGTERM)
+    @PostMapping("/chats/stream/drain")
+    public Map<String, Object> startDrain() {
+        drain.begin();
+        Map<String, Object> m = new LinkedHashMap<>(drain.stats());
+        m.put("running", executor.running());
+        return m;
+    }
+
+    // 대기 중인 클라이언트에게 현재 순번과 예상 대기 시간 전달. 재연결 버퍼를 거쳐서 (id 부여) 다시 붙은 연결에도 전달됨
+    private void sendQueued(ResumableStreams.Stream stream, int position, long estimatedWaitMs) {
+        try {
+            stream.sink().send("queued", "{\"position\":" + position + ",\"estimatedWaitMs\":" + estimatedWaitMs + "}");
+        } catch (Exception ignore) {
+            // 재연결 없이 만료된 스트림. 만료 시 대기열에서 정리됨.
+        }
+    }
+
+    // 4. [Consumer 역할] 큐에서 메시지를 꺼내 실제 처리 (Kafka 모드에서는 KafkaChatWorker가 담당)
+    // 기록이 없는 첫 질문이면 유저가 달라도 같은 스트림에 합칠 수 있음 (InFlightStreams.keyOf)
+    private boolean hasPromptHistory(ChatRequest req) {
+        return chatHistoryService.hasPromptHistory(req.getUserId(), req.getConversationId());
+    }
+
     private void processQueue(String requestId, ChatRequest req) {
-        SseEmitter emitter = activeEmitters.get(requestId);
-        if (emitter == null) {
-            System.out.println(">>> [Queue] Emitter 없음 (연결 종료됨): " + requestId);
+        ResumableStreams.Stream stream = resumable.get(requestId);
+        if (stream == null) {
+            System.out.println(">>> [Queue] 스트림 없음 (연결 종료 후 만료됨): " + requestId);
             return; // 이미 연결이 끊긴 경우
         }
 
+        // 대기 중에 같은 질문 스트림이 시작됐으면 거기에 붙고 슬롯을 바로 반납, 아니면 리더로 파이썬 호출
+        InFlightStreams.Join join = inFlight.join(req, inFlight.isEnabled() && hasPromptHistory(req), subscriber(req, stream));
+        if (!join.leader()) {
+            System.out.println(">>> [SingleFlight] 진행 중인 같은 질문 스트림에 합류: " + requestId);
+            return;
+        }
+
+        InFlightStreams.Flight flight = join.flight();
         try {
             System.out.println(">>> [Queue] Python 서버로 요청 전송 중... " + requestId);
-            pythonClientService.forwardSseToClient(req, emitter,
+            long startedAt = System.currentTimeMillis();
+            // flight 가 붙은 모든 구독자에게 내려보내고, 끝나면 구독자마다 대화 기록 저장 + 종료.
+            // 구독자가 모두 떠나면 flight.cancellation() 으로 업스트림 연결을 바로 끊음
+            pythonClientService.forwardSse(req, flight,
                     (fullAnswer) -> {
-                        System.out.println(">>> [Queue] 응답 완료 및 DB 저장: " + requestId);
-                        chatHistoryService.saveMessage("user", req.getQuestion(), req.getUserId());
-                        chatHistoryService.saveMessage("assistant", fullAnswer, req.getUserId());
-                    });
-            emitter.complete();
+                        answerCache.put(req, flight.frames(), fullAnswer, startedAt);
+                        flight.complete(fullAnswer);
+                    },
+                    flight.cancellation());
         } catch (Exception e) {
-            System.err.println(">>> [Queue] 에러 발생: " + e.getMessage());
-            try {
-                emitter.send(SseEmitter.event().name("error").data(e.getMessage()));
-            } catch (Exception ignore) {}
-            emitter.completeWithError(e);
+            if (flight.cancellation().isCancelled()) {
+                System.out.println(">>> [Queue] 업스트림 취소됨 (" + flight.cancellation().reason() + "): " + requestId);
+            } else {
+                System.err.println(">>> [Queue] 에러 발생: " + e.getMessage());
+            }
+            flight.fail(e);
+        }
+    }
+
+    // 스트림 1개를 받을 클라이언트. delta 합치기 창과 대화 기록 저장은 클라이언트(요청)별.
+    // 합친 뒤의 이벤트가 재연결 버퍼(id 부여)로 들어감
+    private InFlightStreams.Subscriber subscriber(ChatRequest req, ResumableStreams.Stream stream) {
+        String requestId = stream.requestId();
+        DeltaCoalescer.CoalescingSink sink = coalescer.wrap(stream.sink(), req.getCoalesceMs());
+        long startedAt = System.currentTimeMillis();
+        return new InFlightStreams.Subscriber(requestId, sink,
+                (fullAnswer) -> {
+                    System.out.println(">>> [Queue] 응답 완료 및 DB 저장: " + requestId);
+                    chatHistoryService.saveExchange(req.getQuestion(), fullAnswer, req.getUserId(), req.getConversationId(), startedAt);
+                    stream.complete();
+                },
+                stream::fail);
+    }
+
+    // 논블로킹 중계 경로: 스레드/큐 없이 WebClient Flux를 그대로 반환
+    @PostMapping(value = "/chats/stream/reactive", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<byte[]>> chatStreamReactive(@RequestBody ChatRequest req) {
+        if (drain.isDraining()) {
+            return Flux.just(ServerSentEvent.builder("draining".getBytes(StandardCharsets.UTF_8))
+                    .event("draining")
+                    .retry(Duration.ofMillis(drain.retryAfterMs()))
+                    .build());
         }
+        long startedAt = System.currentTimeMillis();
+        // 실행기 슬롯을 쓰지 않으므로 드레인이 따로 세어 기록 저장까지 기다림
+        return drain.tracked(reactivePythonClientService.streamChat(req,
+                (fullAnswer) -> chatHistoryService.saveExchange(req.getQuestion(), fullAnswer, req.getUserId(), req.getConversationId(), startedAt))
+                .onErrorResume(e -> {
+                    System.err.println(">>> [Reactive] 에러 발생: " + e.getMessage());
+                    String msg = e.getMessage() == null ? "error" : e.getMessage();
+                    return Flux.just(ServerSentEvent.builder(msg.getBytes(StandardCharsets.UTF_8)).event("error").build());
+                }));
+    }
+
+    @GetMapping(value = "/chats/stream/reactive", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<byte[]>> chatStreamReactiveGet(@RequestParam("docIds") String docIds,
+            @RequestParam("q") String q,
+            @RequestParam(value = "topK", required = false) Integer topK,
+            @RequestParam("model") String model,
+            @RequestParam("documentName") String documentName,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "conversationId", required = false) String conversationId) {
+        return chatStreamReactive(toRequest(docIds, q, topK, model, documentName, userId, conversationId, null));
+    }
+
+    // 스트림 실행기 상태 (대기 시간 / 스트리밍 시간 통계)
+    @GetMapping("/chats/stream/stats")
+    public Map<String, Object> streamStats() {
+        Map<String, Object> m = new LinkedHashMap<>(executor.stats());
+        m.putAll(scheduler.stats());
+        m.putAll(inFlight.stats());
+        m.putAll(resumable.stats());
+        m.putAll(drain.stats());
+        return m;
     }
 
-    private List<Long> parseIds(String s) {
+    // 답변 캐시 적중/미스 통계
+    @GetMapping("/chats/cache/stats")
+    public Map<String, Object> cacheStats() {
+        return answerCache.stats();
+    }
+
+    static List<Long> parseIds(String s) {
         return Arrays.stream(s.split(","))
                 .map(String::trim)
                 .filter(x -> !x.isEmpty())
@@ -101,14 +402,26 @@ public class ChatStreamController {
     }
 
     // q는 질문임.
+    // EventSource 가 끊긴 뒤 같은 URL 로 자동 재연결하면 Last-Event-ID("<requestId>:<순번>")가 붙어 옴 -> 새로 생성하지 않고 이어받음
     @GetMapping("/chats/stream")
-    public SseEmitter chatStreamGet(@RequestParam("docIds") String docIds,
+    public SseEmitter chatStreamGet(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam("docIds") String docIds,
             @RequestParam("q") String q,
             @RequestParam(value = "topK", required = false) Integer topK,
             @RequestParam("model") String model,
             @RequestParam("documentName") String documentName,
-            @RequestParam(value = "userId", required = false) String userId) {
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "conversationId", required = false) String conversationId,
+            @RequestParam(value = "coalesceMs", required = false) Integer coalesceMs) {
+        ResumableStreams.EventId resumeFrom = ResumableStreams.EventId.parse(lastEventId);
+        if (resumeFrom != null && resumeFrom.requestId() != null) {
+            return resumeStream(resumeFrom.requestId(), resumeFrom.seq());
+        }
+        return chatStream(toRequest(docIds, q, topK, model, documentName, userId, conversationId, coalesceMs));
+    }
 
+    private ChatRequest toRequest(String docIds, String q, Integer topK, String model, String documentName, String userId,
+                                  String conversationId, Integer coalesceMs) {
         ChatRequest req = new ChatRequest();
 
         req.setDocumentIds(parseIds(docIds));
@@ -117,7 +430,8 @@ public class ChatStreamController {
         req.setModel(model);
         req.setDocumentName(documentName);
         req.setUserId(userId);
-
-        return chatStream(req);
+        req.setConversationId(conversationId);
+        req.setCoalesceMs(coalesceMs);
+        return req;
     }
 }
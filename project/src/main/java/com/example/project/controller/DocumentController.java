@@ -3,19 +3,35 @@ package com.example.project.controller;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.project.controller.dto.BulkReingestRequest;
+import com.example.project.controller.dto.DocumentPageResponse;
 import com.example.project.controller.dto.DocumentResponse;
+import com.example.project.controller.dto.IngestJobResponse;
 import com.example.project.domain.Document;
+import com.example.project.domain.DocumentStatus;
 import com.example.project.repository.DocumentRepository;
+import com.example.project.repository.DocumentSummary;
 import com.example.project.service.DocumentService;
+import com.example.project.service.IngestionService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 
 
 
@@ -25,22 +41,30 @@ public class DocumentController {
 
     private final DocumentService documentService;
     private final DocumentRepository documentRepository;
+    private final IngestionService ingestionService;
 
-    public DocumentController(DocumentRepository documentRepository, DocumentService documentService) {
+    public DocumentController(DocumentRepository documentRepository, DocumentService documentService,
+                              IngestionService ingestionService) {
         this.documentRepository = documentRepository;
         this.documentService = documentService;
+        this.ingestionService = ingestionService;
 
     }
 
+    // 유저 문서 목록. DB에서 userId(+status)로 걸러 필요한 컬럼만 페이지 단위로 읽음.
+    // 잘린 목록을 전체로 오해하지 않도록 hasNext 를 같이 돌려줌 (클라이언트는 hasNext 가 false 일 때까지 page 를 올려 요청)
     @GetMapping("/documents/{userId}")
-    public List<DocumentResponse> list(@PathVariable(value = "userId") String userId)
+    public DocumentPageResponse list(@PathVariable(value = "userId") String userId,
+                                     @RequestParam(name = "page", defaultValue = "0") int page,
+                                     @RequestParam(name = "size", defaultValue = "200") int size,
+                                     @RequestParam(name = "status", required = false) DocumentStatus status)
     {
-        return documentRepository.findAll()
-            .stream()
-            // userId가 파라미터로 왔다면 해당 유저의 문서만 필터링 (없으면 전체 조회)
-            .filter(doc -> userId.equals(doc.getUserId()))
-            .map(DocumentResponse::from)
-            .toList();
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, 500)));
+        Slice<DocumentSummary> rows = (status == null)
+            ? documentRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable)
+            : documentRepository.findByUserIdAndStatusOrderByCreatedAtDesc(userId, status, pageable);
+        return new DocumentPageResponse(rows.map(DocumentResponse::from).getContent(),
+                rows.getNumber(), rows.getSize(), rows.hasNext());
     }
 
     // legacy 코드
@@ -73,24 +97,44 @@ public class DocumentController {
             throw new IllegalArgumentException("파일이 없습니다.");
         
         }
-        List<DocumentResponse> results = new ArrayList<>();
         // 파일을 2개이상 보낼때, 유저 id도 2개 이상씩 나오니, 그중 1개 맨 앞의 리스트값 사용.
         String userId = userIds.isEmpty() ? null : userIds.get(0);
-        
-        for (MultipartFile f : files) {
-            String original = (f.getOriginalFilename() == null) ? "untitled.pdf" : f.getOriginalFilename();
-            String title = original;
-            Document d = documentService.createAndUpload(title, f, userId);
+
+        // 전부 저장한 뒤 인덱싱은 한 번에 등록 (배치 ingest)
+        List<DocumentResponse> results = new ArrayList<>();
+        for (Document d : documentService.createAndUploadMany(files, userId)) {
             results.add(DocumentResponse.from(d));
         }
 
         return results;
     }
     
-    // 파일 임베딩
+    // 스트리밍 업로드: 요청 본문이 PDF 바이트 그대로 (멀티파트 임시 파일 없이 최종 위치로 바로 저장)
+    @PostMapping(value = "/documents/upload-stream", consumes = {"application/pdf", "application/octet-stream"})
+    public DocumentResponse uploadStream(@RequestParam("title") String title,
+                                         @RequestParam("userId") String userId,
+                                         HttpServletRequest request) throws IOException {
+        return DocumentResponse.from(documentService.createAndUploadStream(title, userId, request.getInputStream()));
+    }
+
+    // 파일 임베딩. 작업만 등록하고 바로 반환 (202). 상태는 /documents/jobs/{jobId}, 진행 상황은 /documents/jobs/{jobId}/events
     @PostMapping("/documents/{id}/reingest")
-    public DocumentResponse reingest(@PathVariable("id") Long id) {
-        return DocumentResponse.from(documentService.reingest(id));
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public IngestJobResponse reingest(@PathVariable("id") Long id) {
+        return IngestJobResponse.from(documentService.reingest(id), null);
+    }
+
+    // 여러 문서 재인덱싱 (동시 실행 수 제한). 진행 상태는 /documents/reingest/bulk/{bulkId}
+    @PostMapping("/documents/reingest")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Map<String, Object> reingestMany(@Valid @RequestBody BulkReingestRequest req) {
+        return documentService.reingestAll(req.getDocumentIds(), req.getConcurrency());
+    }
+
+    @GetMapping("/documents/reingest/bulk/{bulkId}")
+    public Map<String, Object> bulkStatus(@PathVariable("bulkId") String bulkId) {
+        return ingestionService.findBulk(bulkId)
+                .orElseThrow(() -> new IllegalArgumentException("일괄 작업이 없습니다." + bulkId));
     }
     
     // 파일 삭제
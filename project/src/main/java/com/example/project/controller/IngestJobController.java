@@ -0,0 +1,52 @@
+package com.example.project.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.project.controller.dto.IngestJobResponse;
+import com.example.project.domain.IngestJob;
+import com.example.project.service.IngestProgressHub;
+import com.example.project.service.IngestionService;
+
+// 인덱싱 작업 조회 / 진행 상황 구독 / 파이썬 진행 보고 수신
+@RestController
+public class IngestJobController {
+
+    private final IngestionService ingestionService;
+    private final IngestProgressHub progressHub;
+
+    public IngestJobController(IngestionService ingestionService, IngestProgressHub progressHub) {
+        this.ingestionService = ingestionService;
+        this.progressHub = progressHub;
+    }
+
+    // 작업 상태 폴링 (없는 작업은 404)
+    @GetMapping("/documents/jobs/{jobId}")
+    public IngestJobResponse job(@PathVariable("jobId") Long jobId) {
+        IngestJob job = ingestionService.findJob(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "작업이 없습니다: " + jobId));
+        return IngestJobResponse.from(job, ingestionService.latestProgress(jobId));
+    }
+
+    // 진행 상황 SSE: progress 이벤트(단계별) ... 마지막에 done 이벤트 {status, error}
+    @GetMapping(value = "/documents/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable("jobId") Long jobId) {
+        return ingestionService.subscribe(jobId);
+    }
+
+    // 파이썬 /ingest 가 단계마다 호출 {stage: pages_parsed|chunks_embedded|index_written, pages, chunks ...}
+    @PostMapping("/documents/jobs/{jobId}/progress")
+    public void progress(@PathVariable("jobId") Long jobId, @RequestBody Map<String, Object> body) {
+        Object stage = body.get("stage");
+        progressHub.report(jobId, stage == null ? "progress" : stage.toString(), body);
+    }
+}
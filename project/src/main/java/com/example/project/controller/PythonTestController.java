@@ -3,6 +3,7 @@ package com.example.project.controller;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.Map;
 import com.example.project.service.PythonClientService;
+import com.example.project.service.PythonGateway;
 import org.springframework.web.bind.annotation.GetMapping;
 
 
@@ -10,9 +11,17 @@ import org.springframework.web.bind.annotation.GetMapping;
 public class PythonTestController {
 
     private final PythonClientService pythonClientService;
+    private final PythonGateway pythonGateway;
 
-    public PythonTestController(PythonClientService pythonClientService) {
+    public PythonTestController(PythonClientService pythonClientService, PythonGateway pythonGateway) {
         this.pythonClientService = pythonClientService;
+        this.pythonGateway = pythonGateway;
+    }
+
+    // 파이썬 호출 커넥션 풀 / 서킷 브레이커 / 프로필별 지연 통계
+    @GetMapping("/python/stats")
+    public Map<String, Object> stats() {
+        return pythonGateway.stats();
     }
     
 }
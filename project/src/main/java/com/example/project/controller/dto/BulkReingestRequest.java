@@ -0,0 +1,19 @@
+package com.example.project.controller.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotEmpty;
+
+public class BulkReingestRequest {
+
+    @NotEmpty
+    private List<Long> documentIds;
+    // 동시에 인덱싱할 문서 수. 없으면 app.ingest.bulk.default-concurrency
+    private Integer concurrency;
+
+    public List<Long> getDocumentIds() { return documentIds; }
+    public void setDocumentIds(List<Long> documentIds) { this.documentIds = documentIds; }
+
+    public Integer getConcurrency() { return concurrency; }
+    public void setConcurrency(Integer concurrency) { this.concurrency = concurrency; }
+}
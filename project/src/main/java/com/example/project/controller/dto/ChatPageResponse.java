@@ -0,0 +1,40 @@
+package com.example.project.controller.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import com.example.project.domain.ChatMessage;
+
+// 커서 페이징 응답. items 는 과거 -> 최신 순, nextCursor 로 더 과거 페이지를 요청 (없으면 null)
+public class ChatPageResponse {
+    private List<ChatResponse> items;
+    private String nextCursor;
+
+    public ChatPageResponse(List<ChatResponse> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ChatResponse> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+
+    // 커서 = "createdAt_id" 를 URL-safe Base64 로 감싼 값 (클라이언트는 내용을 몰라도 됨)
+    public static String encodeCursor(ChatMessage m) {
+        String raw = m.getCreatedAt() + "_" + m.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public record Cursor(LocalDateTime createdAt, Long id) {}
+
+    public static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('_');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다: " + cursor);
+        }
+    }
+}
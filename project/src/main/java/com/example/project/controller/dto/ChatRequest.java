@@ -15,8 +15,12 @@ public class ChatRequest {
     private Integer topK = 5;
     private String model = "qwen3-vl:8b";
     private String userId;
+    // 대화(세션) id. 같은 유저의 다른 대화와 기록을 섞지 않음. 없으면 유저 전체 기록 (예전 동작)
+    private String conversationId;
     private String documentName;
-    
+    // delta 합치기 창(ms). null = 서버 설정(chat.stream.coalesce.*), 0 = 토큰마다 바로 전송
+    private Integer coalesceMs;
+
 
     public List<Long> getDocumentIds() { return documentIds; }
     public void setDocumentIds(List<Long> documentIds) { this.documentIds = documentIds; }
@@ -33,7 +37,13 @@ public class ChatRequest {
     public String getUserId() {return userId;}
     public void setUserId(String userId) {this.userId = userId;}
 
+    public String getConversationId() {return conversationId;}
+    public void setConversationId(String conversationId) {this.conversationId = conversationId;}
+
     public String getDocumentName() {return documentName;}
     public void setDocumentName(String documentName) {this.documentName = documentName;}
+
+    public Integer getCoalesceMs() {return coalesceMs;}
+    public void setCoalesceMs(Integer coalesceMs) {this.coalesceMs = coalesceMs;}
     
 }
@@ -0,0 +1,26 @@
+package com.example.project.controller.dto;
+
+import java.time.LocalDateTime;
+
+import com.example.project.repository.ChatMessageRepository.ConversationSummary;
+
+public class ConversationResponse {
+    private String conversationId;
+    private long messageCount;
+    private LocalDateTime startedAt;
+    private LocalDateTime lastMessageAt;
+
+    public static ConversationResponse from(ConversationSummary s) {
+        ConversationResponse r = new ConversationResponse();
+        r.conversationId = s.getConversationId();
+        r.messageCount = s.getMessageCount();
+        r.startedAt = s.getStartedAt();
+        r.lastMessageAt = s.getLastMessageAt();
+        return r;
+    }
+
+    public String getConversationId() { return conversationId; }
+    public long getMessageCount() { return messageCount; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public LocalDateTime getLastMessageAt() { return lastMessageAt; }
+}
@@ -0,0 +1,23 @@
+package com.example.project.controller.dto;
+
+import java.util.List;
+
+// 문서 목록 페이지 응답. hasNext 가 true 면 page + 1 로 다음 페이지를 요청
+public class DocumentPageResponse {
+    private List<DocumentResponse> items;
+    private int page;
+    private int size;
+    private boolean hasNext;
+
+    public DocumentPageResponse(List<DocumentResponse> items, int page, int size, boolean hasNext) {
+        this.items = items;
+        this.page = page;
+        this.size = size;
+        this.hasNext = hasNext;
+    }
+
+    public List<DocumentResponse> getItems() { return items; }
+    public int getPage() { return page; }
+    public int getSize() { return size; }
+    public boolean isHasNext() { return hasNext; }
+}
@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 
 import com.example.project.domain.Document;
 import com.example.project.domain.DocumentStatus;
+import com.example.project.repository.DocumentSummary;
 
 
 public class DocumentResponse {
@@ -26,6 +27,17 @@ public class DocumentResponse {
         r.userId = d.getUserId(); 
         return r;
     }
+
+    public static DocumentResponse from (DocumentSummary d) {
+        DocumentResponse r = new DocumentResponse();
+        r.id = d.getId();
+        r.title = d.getTitle();
+        r.filePath = d.getFilePath();
+        r.status = d.getStatus();
+        r.createAt = d.getCreatedAt();
+        r.userId = d.getUserId();
+        return r;
+    }
     
     public Long getId() {
         return id;
@@ -0,0 +1,42 @@
+package com.example.project.controller.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import com.example.project.domain.IngestJob;
+import com.example.project.domain.IngestJobStatus;
+
+public class IngestJobResponse {
+
+    private Long jobId;
+    private Long documentId;
+    private IngestJobStatus status;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    // 파이썬이 마지막으로 보고한 진행 상황 (stage, pages, chunks ...). 없으면 null
+    private Map<String, Object> progress;
+
+    public static IngestJobResponse from(IngestJob j, Map<String, Object> progress) {
+        IngestJobResponse r = new IngestJobResponse();
+        r.jobId = j.getId();
+        r.documentId = j.getDocumentId();
+        r.status = j.getStatus();
+        r.attempts = j.getAttempts();
+        r.lastError = j.getLastError();
+        r.createdAt = j.getCreatedAt();
+        r.updatedAt = j.getUpdatedAt();
+        r.progress = progress;
+        return r;
+    }
+
+    public Long getJobId() { return jobId; }
+    public Long getDocumentId() { return documentId; }
+    public IngestJobStatus getStatus() { return status; }
+    public int getAttempts() { return attempts; }
+    public String getLastError() { return lastError; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public Map<String, Object> getProgress() { return progress; }
+}
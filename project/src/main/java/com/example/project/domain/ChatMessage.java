@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Lob;
 import jakarta.persistence.Table;
 
@@ -12,18 +13,26 @@ import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
 
 @Entity
-@Table(name = "chats")
+// (userId, createdAt, id) 인덱스: 유저별 최신순 조회와 커서(keyset) 페이징이 인덱스만 타도록
+// (userId, conversationId, createdAt, id) 인덱스: 대화 1개 범위만 읽는 기록 조회 / 대화 목록 / 대화 삭제용
+@Table(name = "chats", indexes = {
+        @Index(name = "idx_chats_user_created_id", columnList = "userId, createdAt, id"),
+        @Index(name = "idx_chats_user_conv_created_id", columnList = "userId, conversationId, createdAt, id")})
 public class ChatMessage {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id; // 일반 기본 키 id 순서
     private String userId; // 유저 id
+    private String conversationId; // 대화(세션) id. 예전 행은 null
     private String role; // "user" 또는 "assistant"
 
     @Lob
     @Column(columnDefinition = "TEXT")
     private String content;
 
+    // 저장 시점에 한 번 계산한 프롬프트 토큰 수 (TokenCounter 추정치). 예전 행은 null -> 읽을 때 계산
+    private Integer tokenCount;
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
@@ -39,7 +48,13 @@ public class ChatMessage {
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
+    public Integer getTokenCount() { return tokenCount; }
+    public void setTokenCount(Integer tokenCount) { this.tokenCount = tokenCount; }
+
     public String getUserId() { return userId; }
     public void setUserId(String userId) { this.userId = userId; }
 
+    public String getConversationId() { return conversationId; }
+    public void setConversationId(String conversationId) { this.conversationId = conversationId; }
+
 }
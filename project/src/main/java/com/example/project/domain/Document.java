@@ -9,11 +9,16 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "documents")
-
+// 유저별 목록 조회(최신순)와 상태 필터(PROCESSING 등) 조회용 인덱스
+@Table(name = "documents", indexes = {
+        @Index(name = "idx_documents_user_created", columnList = "userId, createdAt"),
+        @Index(name = "idx_documents_user_status_created", columnList = "userId, status, createdAt"),
+        @Index(name = "idx_documents_content_hash", columnList = "contentHash")
+})
 public class Document {
     @Id //Primary Key
     @GeneratedValue(strategy = GenerationType.IDENTITY) // 자동증가 하는 방식.
@@ -29,6 +34,10 @@ public class Document {
     @Column(length = 500)
     private String filePath;
 
+    // 업로드 파일 SHA-256 (hex). 같은 PDF 재업로드 시 임베딩 재사용 판단용
+    @Column(length = 64)
+    private String contentHash;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
     private DocumentStatus status = DocumentStatus.UPLOADED;
@@ -79,6 +88,13 @@ public class Document {
     public String getUserId() {
         return userId;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
     public void setUserId(String userId) {
         this.userId = userId;
     }
@@ -0,0 +1,71 @@
+package com.example.project.domain;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// 문서 인덱싱(파이썬 /ingest) 작업 상태. JVM 이 죽어도 재시작 시 이어서 처리할 수 있도록 DB에 저장.
+@Entity
+@Table(name = "ingest_jobs", indexes = {
+        @Index(name = "idx_ingest_jobs_status_next", columnList = "status, nextAttemptAt"),
+        @Index(name = "idx_ingest_jobs_document", columnList = "documentId")
+})
+public class IngestJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long documentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private IngestJobStatus status = IngestJobStatus.QUEUED;
+
+    // 지금까지 시도한 횟수
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // 다음 시도 가능 시각 (재시도 백오프)
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public Long getId() { return id; }
+
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public IngestJobStatus getStatus() { return status; }
+    public void setStatus(IngestJobStatus status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
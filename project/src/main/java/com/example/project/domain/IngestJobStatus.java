@@ -0,0 +1,8 @@
+package com.example.project.domain;
+
+public enum IngestJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
@@ -2,10 +2,64 @@ package com.example.project.repository;
 
 import com.example.project.domain.ChatMessage;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     List<ChatMessage> findByUserId(String userId, Pageable pageable);
+
+    List<ChatMessage> findByUserIdAndConversationId(String userId, String conversationId, Pageable pageable);
+
+    // 커서(keyset) 페이징 첫 페이지: 유저의 최신 메시지부터
+    List<ChatMessage> findByUserIdOrderByCreatedAtDescIdDesc(String userId, Limit limit);
+
+    // 대화 1개의 최신 메시지부터 ((userId, conversationId, createdAt, id) 인덱스)
+    List<ChatMessage> findByUserIdAndConversationIdOrderByCreatedAtDescIdDesc(String userId, String conversationId, Limit limit);
+
+    // 커서(keyset) 페이징 다음 페이지: (createdAt, id)가 커서보다 과거인 것. OFFSET 없이 인덱스 범위 조회
+    @Query("select m from ChatMessage m where m.userId = :userId "
+            + "and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id)) "
+            + "order by m.createdAt desc, m.id desc")
+    List<ChatMessage> findBefore(@Param("userId") String userId,
+                                 @Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Limit limit);
+
+    // 위와 같고 대화 1개 범위만
+    @Query("select m from ChatMessage m where m.userId = :userId and m.conversationId = :conversationId "
+            + "and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id)) "
+            + "order by m.createdAt desc, m.id desc")
+    List<ChatMessage> findBeforeInConversation(@Param("userId") String userId,
+                                               @Param("conversationId") String conversationId,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id,
+                                               Limit limit);
+
+    // 유저의 대화 목록 (최근 대화 순). conversationId 가 없는 예전 메시지는 제외
+    @Query("select m.conversationId as conversationId, count(m) as messageCount, "
+            + "min(m.createdAt) as startedAt, max(m.createdAt) as lastMessageAt "
+            + "from ChatMessage m where m.userId = :userId and m.conversationId is not null "
+            + "group by m.conversationId order by max(m.createdAt) desc")
+    List<ConversationSummary> findConversations(@Param("userId") String userId, Limit limit);
+
+    // 대화 1개 삭제. 삭제된 행 수 반환
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from ChatMessage m where m.userId = :userId and m.conversationId = :conversationId")
+    int deleteConversation(@Param("userId") String userId, @Param("conversationId") String conversationId);
+
+    // findConversations 결과 (프로젝션)
+    interface ConversationSummary {
+        String getConversationId();
+        long getMessageCount();
+        LocalDateTime getStartedAt();
+        LocalDateTime getLastMessageAt();
+    }
 }
@@ -1,10 +1,26 @@
 package com.example.project.repository;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.example.project.domain.Document;
+import com.example.project.domain.DocumentStatus;
 
 public interface DocumentRepository extends JpaRepository<Document, Long> {
 
+    // 유저별 문서 목록 (DB에서 userId 로 걸러서 페이지 단위로). Slice 라 count 쿼리 없음
+    Slice<DocumentSummary> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
+
+    // 상태 필터 (예: PROCESSING 인 것만 폴링)
+    Slice<DocumentSummary> findByUserIdAndStatusOrderByCreatedAtDesc(String userId, DocumentStatus status, Pageable pageable);
+
+    // 재시작 시 PROCESSING 에 멈춰 있는 문서 복구용
+    List<Document> findByStatus(DocumentStatus status);
 
+    // 같은 내용(SHA-256)의 이미 인덱싱된 문서
+    Optional<Document> findFirstByContentHashAndStatusOrderByIdDesc(String contentHash, DocumentStatus status);
 }
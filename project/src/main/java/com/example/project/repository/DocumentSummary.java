@@ -0,0 +1,15 @@
+package com.example.project.repository;
+
+import java.time.LocalDateTime;
+
+import com.example.project.domain.DocumentStatus;
+
+// 문서 목록용 가벼운 projection. DocumentResponse 에 필요한 컬럼만 SELECT 함 (엔티티 로딩 없음)
+public interface DocumentSummary {
+    Long getId();
+    String getTitle();
+    String getFilePath();
+    DocumentStatus getStatus();
+    LocalDateTime getCreatedAt();
+    String getUserId();
+}
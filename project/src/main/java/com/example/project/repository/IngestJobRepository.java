@@ -0,0 +1,54 @@
+package com.example.project.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.project.domain.IngestJob;
+import com.example.project.domain.IngestJobStatus;
+
+public interface IngestJobRepository extends JpaRepository<IngestJob, Long> {
+
+    Optional<IngestJob> findFirstByDocumentIdOrderByIdDesc(Long documentId);
+
+    // 문서의 진행 중(QUEUED/RUNNING) 작업 (재인덱싱 중복 등록 방지)
+    Optional<IngestJob> findFirstByDocumentIdAndStatusInOrderByIdDesc(Long documentId, Collection<IngestJobStatus> statuses);
+
+    // lease 가 끊긴 실행 중 작업 (실행하던 노드가 죽음)
+    List<IngestJob> findByStatusAndUpdatedAtBeforeOrderByIdAsc(IngestJobStatus status, LocalDateTime before, Limit limit);
+
+    // 실행 시각이 된 대기 작업들 (오래된 것부터)
+    List<IngestJob> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(IngestJobStatus status, LocalDateTime now, Limit limit);
+
+    // QUEUED -> RUNNING 선점. 여러 노드/스레드가 같은 작업을 집어도 1곳만 성공(1 반환)
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update IngestJob j set j.status = com.example.project.domain.IngestJobStatus.RUNNING, "
+            + "j.attempts = j.attempts + 1, j.updatedAt = :now "
+            + "where j.id = :id and j.status = com.example.project.domain.IngestJobStatus.QUEUED")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // 이 노드에서 실행 중인 작업의 lease 갱신 (updatedAt 을 현재 시각으로)
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update IngestJob j set j.updatedAt = :now "
+            + "where j.id in :ids and j.status = com.example.project.domain.IngestJobStatus.RUNNING")
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // lease 가 끊긴 RUNNING 작업을 QUEUED(다시 시도) / FAILED 로. 그 사이 원래 노드가 lease 를 갱신했으면 0
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update IngestJob j set j.status = :status, j.lastError = :error, j.nextAttemptAt = :now, j.updatedAt = :now "
+            + "where j.id = :id and j.status = com.example.project.domain.IngestJobStatus.RUNNING "
+            + "and j.updatedAt < :staleBefore")
+    int releaseStale(@Param("id") Long id, @Param("status") IngestJobStatus status, @Param("error") String error,
+                     @Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,231 @@
+package com.example.project.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.project.controller.dto.ChatRequest;
+
+// 같은 PDF에 같은 질문이 반복되는 경우를 위한 답변 캐시.
+// key = 정규화한 질문 + 정렬한 documentIds + topK + model + documentName + userId + conversationId
+// (파이썬 프롬프트에 요청한 유저의 이전 대화가 들어가므로 답변은 유저/대화별. 다른 유저의 답변을 재생하면 안 됨)
+// value = 파이썬이 보냈던 SSE 이벤트 순서 그대로 (적중 시 그대로 재생)
+// LRU + TTL + 메모리 예산(max-bytes)으로 제거. 문서가 reingest/delete 되면 그 문서가 들어간 key는 무효화.
+@Service
+public class AnswerCache {
+
+    public record Frame(String event, String data) {}
+
+    private static final class Entry {
+        final List<Frame> frames;
+        final String fullAnswer;
+        final List<Long> documentIds;
+        final long bytes;
+        final long createdAt = System.currentTimeMillis();
+
+        Entry(List<Frame> frames, String fullAnswer, List<Long> documentIds) {
+            this.frames = frames;
+            this.fullAnswer = fullAnswer;
+            this.documentIds = documentIds;
+            long b = 64L + fullAnswer.length() * 2L;
+            for (Frame f : frames) {
+                b += 48L + (f.event().length() + f.data().length()) * 2L;
+            }
+            this.bytes = b;
+        }
+    }
+
+    // 적중 결과: 재생할 이벤트들과 DB 저장용 전체 답변
+    public record Hit(List<Frame> frames, String fullAnswer) {}
+
+    private final boolean enabled;
+    private final long ttlMs;
+    private final long maxBytes;
+    private final int maxEntries;
+    private final long replayDelayMs;
+
+    // accessOrder=true 로 LRU 순서 유지
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // documentId -> 그 문서가 포함된 key 들 (무효화용)
+    private final Map<Long, Set<String>> keysByDocument = new HashMap<>();
+    // documentId -> 마지막 무효화 시각. 무효화 전에 시작된 스트림의 답변이 뒤늦게 저장되는 것을 막음.
+    // TTL 보다 오래된 기록은 정리 (그보다 오래 도는 스트림은 없음)
+    private final Map<Long, Long> invalidatedAt = new HashMap<>();
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private final ScheduledExecutorService replayScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "answer-replay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AnswerCache(@Value("${chat.cache.enabled:true}") boolean enabled,
+                       @Value("${chat.cache.ttl-seconds:3600}") long ttlSeconds,
+                       @Value("${chat.cache.max-bytes:33554432}") long maxBytes,
+                       @Value("${chat.cache.max-entries:1000}") int maxEntries,
+                       @Value("${chat.cache.replay-delay-ms:0}") long replayDelayMs) {
+        this.enabled = enabled;
+        this.ttlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.replayDelayMs = replayDelayMs;
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    public static String keyOf(ChatRequest req) {
+        String conversationId = ChatHistoryService.normalize(req.getConversationId());
+        return questionKeyOf(req) + "|"
+                + (req.getUserId() == null ? "" : req.getUserId()) + "|"
+                + (conversationId == null ? "" : conversationId);
+    }
+
+    // 유저/대화를 뺀 부분 (질문 + documentIds + topK + model + documentName)
+    static String questionKeyOf(ChatRequest req) {
+        String question = req.getQuestion() == null ? "" : req.getQuestion().trim().replaceAll("\\s+", " ").toLowerCase();
+        List<Long> ids = req.getDocumentIds() == null ? List.of() : req.getDocumentIds().stream().sorted().toList();
+        return question + "|" + ids + "|" + req.getTopK() + "|" + req.getModel() + "|"
+                + (req.getDocumentName() == null ? "" : req.getDocumentName());
+    }
+
+    public synchronized Hit get(ChatRequest req) {
+        if (!enabled) return null;
+        String key = keyOf(req);
+        Entry e = entries.get(key);
+        if (e != null && System.currentTimeMillis() - e.createdAt > ttlMs) {
+            remove(key);
+            e = null;
+        }
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new Hit(e.frames, e.fullAnswer);
+    }
+
+    // startedAt = 이 답변을 만든 스트림의 시작 시각 (System.currentTimeMillis)
+    public synchronized void put(ChatRequest req, List<Frame> frames, String fullAnswer, long startedAt) {
+        if (!enabled || fullAnswer == null || fullAnswer.isEmpty()) return;
+        String key = keyOf(req);
+        List<Long> ids = req.getDocumentIds() == null ? List.of() : List.copyOf(req.getDocumentIds());
+        for (Long id : ids) {
+            if (invalidatedAt.getOrDefault(id, 0L) >= startedAt) return; // 생성 도중 문서가 바뀜
+        }
+        Entry e = new Entry(List.copyOf(frames), fullAnswer, ids);
+        if (e.bytes > maxBytes) return; // 예산보다 큰 답변은 저장하지 않음
+
+        remove(key);
+        entries.put(key, e);
+        totalBytes += e.bytes;
+        for (Long id : ids) {
+            keysByDocument.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+        }
+
+        // 가장 오래 안 쓴 것부터 제거
+        while ((totalBytes > maxBytes || entries.size() > maxEntries) && !entries.isEmpty()) {
+            remove(entries.keySet().iterator().next());
+            evictions.increment();
+        }
+    }
+
+    // 문서가 재임베딩/삭제되면 그 문서가 포함된 답변들은 모두 무효
+    public synchronized void invalidateDocument(Long documentId) {
+        long now = System.currentTimeMillis();
+        invalidatedAt.values().removeIf(at -> now - at > ttlMs);
+        invalidatedAt.put(documentId, now);
+        Set<String> keys = keysByDocument.remove(documentId);
+        if (keys == null) return;
+        for (String key : new ArrayList<>(keys)) {
+            if (remove(key)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    // 저장된 이벤트를 sink로 재생. replay-delay-ms > 0 이면 이벤트 사이에 간격을 둠.
+    public void replay(Hit hit, StreamEventSink sink, Runnable onDone, Consumer<Exception> onError) {
+        if (replayDelayMs <= 0) {
+            try {
+                for (Frame f : hit.frames()) {
+                    sink.send(f.event(), f.data());
+                }
+                onDone.run();
+            } catch (Exception e) {
+                onError.accept(e);
+            }
+            return;
+        }
+        replayNext(hit.frames(), 0, sink, onDone, onError);
+    }
+
+    private void replayNext(List<Frame> frames, int index, StreamEventSink sink, Runnable onDone,
+                            Consumer<Exception> onError) {
+        if (index >= frames.size()) {
+            onDone.run();
+            return;
+        }
+        try {
+            Frame f = frames.get(index);
+            sink.send(f.event(), f.data());
+        } catch (Exception e) {
+            onError.accept(e);
+            return;
+        }
+        replayScheduler.schedule(() -> replayNext(frames, index + 1, sink, onDone, onError),
+                replayDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("enabled", enabled);
+        s.put("entries", entries.size());
+        s.put("bytes", totalBytes);
+        s.put("maxBytes", maxBytes);
+        s.put("hits", h);
+        s.put("misses", m);
+        s.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        s.put("evictions", evictions.sum());
+        s.put("invalidations", invalidations.sum());
+        s.put("invalidatedDocuments", invalidatedAt.size());
+        return s;
+    }
+
+    private boolean remove(String key) {
+        Entry e = entries.remove(key);
+        if (e == null) return false;
+        detach(key, e);
+        totalBytes -= e.bytes;
+        return true;
+    }
+
+    // 문서 색인에서 key 제거
+    private void detach(String key, Entry e) {
+        for (Long id : e.documentIds) {
+            Set<String> keys = keysByDocument.get(id);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) keysByDocument.remove(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.project.service;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// 성능 지표 (Micrometer -> /actuator/prometheus).
+// 스트리밍 핫패스(TTFT, 토큰/초, 스트림 시간), 대기열 대기 시간, 파이썬 호출 지연, 대화 기록 조회, 인덱싱 시간.
+// 게이지(실행 중 / 대기 중 / 열린 SSE 수)는 MetricsConfig 에서 등록.
+// 히스토그램 버킷(percentiles-histogram)은 application.yml 의 management.metrics.distribution 에서 켬.
+@Component
+public class AppMetrics {
+
+    // model 태그로 쓸 수 있는 값. 클라이언트가 보낸 문자열을 그대로 태그로 쓰면 시계열이 끝없이 늘어나므로 나머지는 "other"
+    // (파이썬은 gemini 외에는 모두 ollama 로 처리, qwen3-vl:8b 는 ChatRequest 기본값)
+    private static final Set<String> KNOWN_MODELS = Set.of("ollama", "gemini", "qwen3-vl:8b");
+
+    private final MeterRegistry registry;
+
+    public AppMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // 스트림 1건 계측 시작. path: blocking / reactive
+    public StreamRecorder startStream(String path, String model) {
+        return new StreamRecorder(path, modelTag(model));
+    }
+
+    static String modelTag(String model) {
+        if (model == null || model.isBlank()) return "unknown";
+        return KNOWN_MODELS.contains(model) ? model : "other";
+    }
+
+    // 스트림 1건의 TTFT / 길이 / 토큰 수. delta 이벤트 1개를 토큰 1개로 셈 (파이썬이 토큰 단위로 흘려보냄)
+    public final class StreamRecorder {
+        private final String path;
+        private final String model;
+        private final long startedAt = System.nanoTime();
+        private long firstTokenAt;
+        private long tokens;
+        private boolean finished;
+
+        private StreamRecorder(String path, String model) {
+            this.path = path;
+            this.model = model;
+        }
+
+        public void onEvent(String event) {
+            if (!"delta".equals(event)) return;
+            tokens++;
+            if (firstTokenAt == 0) {
+                firstTokenAt = System.nanoTime();
+                Timer.builder("chat.stream.ttft")
+                        .description("첫 delta 까지 걸린 시간")
+                        .tag("model", model).tag("path", path)
+                        .register(registry)
+                        .record(firstTokenAt - startedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // outcome: ok / error / cancelled (클라이언트가 먼저 끊음). 여러 번 불러도 1번만 기록
+        public void finish(String outcome) {
+            if (finished) return;
+            finished = true;
+            long now = System.nanoTime();
+            Timer.builder("chat.stream.duration")
+                    .description("스트림 전체 시간")
+                    .tag("model", model).tag("path", path).tag("outcome", outcome)
+                    .register(registry)
+                    .record(now - startedAt, TimeUnit.NANOSECONDS);
+            Counter.builder("chat.stream.tokens")
+                    .tag("model", model).tag("path", path).tag("outcome", outcome)
+                    .register(registry)
+                    .increment(tokens);
+            // 생성 속도: 첫 토큰 이후 구간 기준 (TTFT 는 따로 봄)
+            if (tokens > 1 && now > firstTokenAt) {
+                double seconds = (now - firstTokenAt) / 1e9;
+                DistributionSummary.builder("chat.stream.tokens.per.second")
+                        .tag("model", model).tag("path", path).tag("outcome", outcome)
+                        .register(registry)
+                        .record((tokens - 1) / seconds);
+            }
+        }
+    }
+
+    // delta 합치기: 내려보낸 이벤트 1개에 합쳐진 delta 수
+    public void recordCoalescedFlush(int merged) {
+        DistributionSummary.builder("chat.stream.coalesce.batch")
+                .register(registry)
+                .record(merged);
+    }
+
+    // 클라이언트가 떠나 업스트림(파이썬 생성)을 중간에 끊음. reason: client_gone / client_cancel / shutdown
+    public void recordStreamCancelled(String reason) {
+        Counter.builder("chat.stream.cancelled").tag("reason", reason).register(registry).increment();
+    }
+
+    // SSE 재연결 (Last-Event-ID). result: resumed / finished / not_found / gap
+    public void recordStreamResume(String result) {
+        Counter.builder("chat.stream.resume").tag("result", result).register(registry).increment();
+    }
+
+    // 유저 대기열 + 슬롯 대기 시간 (제출 -> 실행 시작)
+    public void recordQueueWait(String mode, long nanos) {
+        Timer.builder("chat.stream.queue.wait")
+                .tag("mode", mode)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordQueueRejected(String reason) {
+        Counter.builder("chat.stream.queue.rejected").tag("reason", reason).register(registry).increment();
+    }
+
+    // 파이썬 호출 1건 (노드 / 프로필 / 결과별)
+    public void recordPythonCall(String profile, String endpoint, String outcome, long nanos) {
+        Timer.builder("python.call")
+                .tag("profile", profile).tag("endpoint", endpoint).tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // 호출 전에 막힘 (circuit_open / bulkhead_full)
+    public void recordPythonRejected(String profile, String reason) {
+        Counter.builder("python.call.rejected").tag("profile", profile).tag("reason", reason).register(registry).increment();
+    }
+
+    // 대화 기록 조회. source: cache / db
+    public void recordHistoryQuery(String source, long nanos) {
+        Timer.builder("chat.history.query")
+                .tag("source", source)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // 문서 1건 인덱싱 (작업 시작 -> 결과). mode: single / batch, outcome: succeeded / retrying / failed
+    public void recordIngest(String mode, String outcome, long nanos) {
+        Timer.builder("ingest.duration")
+                .tag("mode", mode).tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
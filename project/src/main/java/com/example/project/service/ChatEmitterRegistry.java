@@ -0,0 +1,36 @@
+package com.example.project.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// 이 노드가 들고 있는 SSE 연결 저장소 (requestId -> Emitter).
+// 로컬 스트림 처리와 Kafka 응답 토픽 Consumer가 같은 저장소에서 Emitter를 찾음.
+@Component
+public class ChatEmitterRegistry {
+
+    private final Map<String, SseEmitter> activeEmitters = new ConcurrentHashMap<>();
+
+    public void put(String requestId, SseEmitter emitter) {
+        activeEmitters.put(requestId, emitter);
+    }
+
+    public SseEmitter get(String requestId) {
+        return activeEmitters.get(requestId);
+    }
+
+    public void remove(String requestId) {
+        activeEmitters.remove(requestId);
+    }
+
+    // 재연결로 emitter 가 바뀌었을 수 있으므로, 지금 등록된 것이 이 emitter 일 때만 제거
+    public void remove(String requestId, SseEmitter emitter) {
+        activeEmitters.remove(requestId, emitter);
+    }
+
+    public int size() {
+        return activeEmitters.size();
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.project.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.project.domain.ChatMessage;
+
+// 유저별 최근 대화 창(ring buffer) 캐시.
+// 파이썬이 질문마다 /chats/history 를 부르므로, 최근 N개를 프롬프트 형식(Map) 그대로 메모리에 들고 있음.
+// saveMessage 시 write-through 로 추가, 처음 보는 유저만 DB에서 한 번 읽어 채움(lazy load).
+// 창 수가 max-windows 를 넘으면 가장 오래 안 쓴 창부터 제거 (유저 전체 창 + 대화별 창을 모두 셈, 예전 이름 max-users 도 읽음).
+// 창 키는 keyOf(userId, conversationId): 대화 id 가 있으면 대화별 창, 없으면 유저 전체 창 (잠금은 유저 단위 lockFor(userId)).
+// 토큰 예산 조회(snapshot + tokenBudget): 최신 메시지부터 예산만큼 담고, 그보다 오래된 대화는 요약 줄로 접어 앞에 붙임.
+// 요약 줄은 메시지마다 한 번만 만들어 유저별로 들고 있음 (창에서 밀려나거나 예산 밖으로 나갈 때 추가, summary-tokens 를 넘으면 오래된 줄부터 버림)
+// write-through 는 이 노드에서 저장한 메시지만 반영하므로, 여러 노드가 같은 유저의 대화를 저장하는 Kafka 모드
+// (chat.stream.transport=kafka 또는 chat.kafka.worker-enabled=true)에서는 기본으로 끔 -> 매번 DB 에서 읽고 저장하지 않음 (render)
+@Component
+public class ChatHistoryCache {
+
+    // 요약 줄 1개에 남길 글자 수 (메시지 첫 줄 기준)
+    private static final int SUMMARY_LINE_CHARS = 100;
+
+    private final int windowSize;
+    private final int maxWindows;
+    private final int summaryTokens;
+    private final int summaryBacklog;
+    private final boolean enabled;
+
+    // accessOrder=true 로 LRU 순서 유지
+    private final LinkedHashMap<String, Window> windows = new LinkedHashMap<>(16, 0.75f, true);
+
+    // 같은 유저의 DB 로드와 저장이 엇갈리지 않도록 유저별(해시 분할) 잠금
+    private final Object[] locks = new Object[64];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ChatHistoryCache(@Value("${chat.history.window-size:50}") int windowSize,
+                            @Value("${chat.history.max-windows:${chat.history.max-users:20000}}") int maxWindows,
+                            @Value("${chat.history.summary-tokens:300}") int summaryTokens,
+                            @Value("${chat.history.summary-backlog:20}") int summaryBacklog,
+                            @Value("${chat.history.cache.enabled:#{'${chat.stream.transport:local}' != 'kafka' && !${chat.kafka.worker-enabled:false}}}") boolean enabled) {
+        this.windowSize = windowSize;
+        this.maxWindows = maxWindows;
+        this.summaryTokens = summaryTokens;
+        this.summaryBacklog = Math.max(0, summaryBacklog);
+        this.enabled = enabled;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // 프롬프트용 메시지 1개 + 저장 시 계산된 토큰 수. seq 는 유저 창 안에서 증가하는 번호
+    private record Entry(long seq, Map<String, String> prompt, int tokens) {}
+
+    // 요약 줄 1개 (어느 메시지에서 만들었는지 seq 로 기억 -> 예산이 커서 그 메시지가 그대로 들어가면 요약에서 뺌)
+    private record SummaryLine(long seq, String text, int tokens) {}
+
+    // 유저 1명의 창. 값은 과거 -> 최신 순서
+    private static final class Window {
+        final ArrayDeque<Entry> messages = new ArrayDeque<>();
+        final ArrayDeque<SummaryLine> summary = new ArrayDeque<>();
+        long nextSeq;
+        long summarizedThrough = -1; // 이 seq 까지는 요약 줄을 만들었음
+        int summaryTokens;
+    }
+
+    public int getWindowSize() { return windowSize; }
+
+    public boolean isEnabled() { return enabled; }
+
+    // DB 에서 창을 채울 때 읽을 개수: 창 + 요약으로 접을 앞부분
+    public int getLoadSize() { return windowSize + summaryBacklog; }
+
+    // 창 키. 대화 id 가 없으면 userId 그대로 (예전 키와 같음)
+    public static String keyOf(String userId, String conversationId) {
+        String u = userId == null ? "" : userId;
+        return conversationId == null ? u : u + '\u0000' + conversationId;
+    }
+
+    public Object lockFor(String userId) {
+        return locks[Math.floorMod(key(userId).hashCode(), locks.length)];
+    }
+
+    // 캐시에 있으면 최근 limit개(과거 -> 최신), 없으면 null
+    public List<Map<String, String>> snapshot(String windowKey, int limit) {
+        return snapshot(windowKey, limit, 0);
+    }
+
+    // tokenBudget > 0 이면 최근 limit개 중 예산 안에 드는 최신 메시지만 담고, 오래된 대화는 요약으로 앞에 붙임
+    public synchronized List<Map<String, String>> snapshot(String windowKey, int limit, int tokenBudget) {
+        Window w = windows.get(key(windowKey));
+        if (w == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return snapshotOf(w, limit, tokenBudget);
+    }
+
+    // 캐시를 끈 경우: DB 에서 읽은 메시지(과거 -> 최신)로 임시 창을 만들어 같은 방식으로 자르고 버림
+    public List<Map<String, String>> render(List<ChatMessage> oldestFirst, int limit, int tokenBudget) {
+        return snapshotOf(newWindow(oldestFirst), limit, tokenBudget);
+    }
+
+    private List<Map<String, String>> snapshotOf(Window w, int limit, int tokenBudget) {
+        if (tokenBudget <= 0) {
+            int skip = Math.max(0, w.messages.size() - limit);
+            List<Map<String, String>> out = new ArrayList<>(w.messages.size() - skip);
+            Iterator<Entry> it = w.messages.iterator();
+            for (int i = 0; it.hasNext(); i++) {
+                Entry e = it.next();
+                if (i >= skip) out.add(e.prompt());
+            }
+            return out;
+        }
+
+        // 1차: 예산 전체로 담아 봄. 다 들어가고 접어 둔 요약도 없으면 요약 없이 끝
+        int taken = countFitting(w.messages, limit, tokenBudget);
+        boolean needsSummary = taken < w.messages.size() || !w.summary.isEmpty();
+        int reserve = 0;
+        if (needsSummary) {
+            // 2차: 요약 자리를 떼어 두고 다시 담음
+            reserve = Math.min(summaryTokens, tokenBudget / 4);
+            taken = countFitting(w.messages, limit, tokenBudget - reserve);
+        }
+
+        List<Map<String, String>> out = new ArrayList<>(taken + 1);
+        long firstPackedSeq = w.nextSeq;
+        Iterator<Entry> it = w.messages.iterator();
+        for (int i = 0, skip = w.messages.size() - taken; it.hasNext(); i++) {
+            Entry e = it.next();
+            if (i < skip) {
+                fold(w, e); // 예산 밖으로 나간 메시지 -> 요약 줄 (이미 만든 것은 건너뜀)
+            } else {
+                if (out.isEmpty()) firstPackedSeq = e.seq();
+                out.add(e.prompt());
+            }
+        }
+        if (reserve > 0) {
+            Map<String, String> summary = renderSummary(w, firstPackedSeq, reserve);
+            if (summary != null) out.add(0, summary);
+        }
+        return out;
+    }
+
+    // 최신부터 limit개, 예산 안에 드는 개수 (중간에 안 들어가는 메시지가 있으면 거기서 멈춤: 대화 순서 유지)
+    private static int countFitting(ArrayDeque<Entry> messages, int limit, int budget) {
+        int taken = 0;
+        int used = 0;
+        Iterator<Entry> it = messages.descendingIterator();
+        while (it.hasNext() && taken < limit) {
+            int t = it.next().tokens();
+            if (used + t > budget) break;
+            used += t;
+            taken++;
+        }
+        return taken;
+    }
+
+    // firstPackedSeq 보다 앞선 요약 줄을 최신부터 reserve 토큰만큼 모아 system 메시지 1개로
+    private static Map<String, String> renderSummary(Window w, long firstPackedSeq, int reserve) {
+        List<String> lines = new ArrayList<>();
+        int used = TokenCounter.MESSAGE_OVERHEAD;
+        Iterator<SummaryLine> it = w.summary.descendingIterator();
+        while (it.hasNext()) {
+            SummaryLine line = it.next();
+            if (line.seq() >= firstPackedSeq) continue;
+            if (used + line.tokens() > reserve) break;
+            used += line.tokens();
+            lines.add(line.text());
+        }
+        if (lines.isEmpty()) return null;
+        Collections.reverse(lines);
+        return Map.of("role", "system", "content", "이전 대화 요약:\n" + String.join("\n", lines));
+    }
+
+    // 메시지 1개를 요약 줄로 접음. 메시지마다 한 번만 (summarizedThrough 로 기억)
+    private void fold(Window w, Entry e) {
+        if (e.seq() <= w.summarizedThrough) return;
+        w.summarizedThrough = e.seq();
+        String text = summaryLine(e.prompt().get("role"), e.prompt().get("content"));
+        SummaryLine line = new SummaryLine(e.seq(), text, TokenCounter.count(text) + 1);
+        w.summary.addLast(line);
+        w.summaryTokens += line.tokens();
+        while (w.summaryTokens > summaryTokens && !w.summary.isEmpty()) {
+            w.summaryTokens -= w.summary.pollFirst().tokens();
+        }
+    }
+
+    // 요약 줄: "- 사용자: 첫 줄..." (LLM 요약 대신 메시지 첫 줄을 잘라 씀 -> 호출 비용 없음)
+    static String summaryLine(String role, String content) {
+        String who = "user".equals(role) ? "사용자" : "assistant".equals(role) ? "답변" : role;
+        String text = content == null ? "" : content.strip();
+        int nl = text.indexOf('\n');
+        if (nl >= 0) text = text.substring(0, nl).strip();
+        if (text.length() > SUMMARY_LINE_CHARS) text = text.substring(0, SUMMARY_LINE_CHARS) + "…";
+        return "- " + who + ": " + text;
+    }
+
+    // DB에서 읽은 최근 메시지(과거 -> 최신)로 창을 채움. 창보다 많으면 앞부분은 요약 줄로 접음 (append 에서 밀려날 때와 같게)
+    public synchronized void load(String windowKey, List<ChatMessage> oldestFirst) {
+        if (!enabled) return;
+        windows.put(key(windowKey), newWindow(oldestFirst));
+
+        Iterator<String> it = windows.keySet().iterator();
+        while (windows.size() > maxWindows && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private Window newWindow(List<ChatMessage> oldestFirst) {
+        Window w = new Window();
+        for (ChatMessage m : oldestFirst) {
+            w.messages.addLast(toEntry(w, m));
+        }
+        while (w.messages.size() > windowSize) fold(w, w.messages.pollFirst());
+        return w;
+    }
+
+    // write-through: 이미 캐시된 유저면 새 메시지를 뒤에 붙이고 오래된 것은 밀어냄 (밀려난 메시지는 요약 줄로)
+    public synchronized void append(String windowKey, ChatMessage m) {
+        Window w = windows.get(key(windowKey));
+        if (w == null) return; // 아직 안 읽은 유저는 다음 조회 때 DB에서 로드
+        w.messages.addLast(toEntry(w, m));
+        if (w.messages.size() > windowSize) fold(w, w.messages.pollFirst());
+    }
+
+    public synchronized void evict(String windowKey) {
+        windows.remove(key(windowKey));
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("enabled", enabled);
+        s.put("windows", windows.size());
+        s.put("maxWindows", maxWindows);
+        s.put("windowSize", windowSize);
+        s.put("summaryTokens", summaryTokens);
+        s.put("hits", hits.sum());
+        s.put("misses", misses.sum());
+        return s;
+    }
+
+    // 저장 시 계산해 둔 토큰 수. 컬럼이 생기기 전 행(null)은 여기서 계산
+    static int tokensOf(ChatMessage m) {
+        return m.getTokenCount() != null ? m.getTokenCount() : TokenCounter.countMessage(m.getContent());
+    }
+
+    private static Entry toEntry(Window w, ChatMessage m) {
+        return new Entry(w.nextSeq++, toPrompt(m), tokensOf(m));
+    }
+
+    // Python: [{"role": "user", "content": "..."}, ...] 형식. 저장 시 한 번만 만들어 재사용 (불변 Map)
+    private static Map<String, String> toPrompt(ChatMessage m) {
+        return Map.of(
+                "role", m.getRole() == null ? "" : m.getRole(),
+                "content", m.getContent() == null ? "" : m.getContent());
+    }
+
+    private static String key(String userId) {
+        return userId == null ? "" : userId;
+    }
+}
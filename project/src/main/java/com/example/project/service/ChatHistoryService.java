@@ -1,13 +1,14 @@
 package com.example.project.service;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import com.example.project.domain.ChatMessage;
@@ -17,41 +18,188 @@ import com.example.project.repository.ChatMessageRepository;
 public class ChatHistoryService {
 
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatHistoryCache historyCache;
+    private final ChatMessageWriteBehind writeBehind;
+    private final AppMetrics metrics;
+    // 삭제한 대화 (창 키 -> 삭제 시각). 삭제 전에 시작된 스트림이 끝나며 저장해서 대화가 되살아나지 않게 함.
+    // 노드 안에서만 보임 (Kafka 워커가 다른 노드면 그 노드의 저장은 막지 못함)
+    private final Map<String, Long> deletedAt = new ConcurrentHashMap<>();
+    private final long deleteTombstoneMs;
+    // maxTokens 없이 부른 경우의 토큰 예산 (기본 0 = 예전처럼 개수로만 자름, 요약 없음)
+    private final int defaultTokenBudget;
 
-    public ChatHistoryService(ChatMessageRepository chatMessageRepository) {
+    public ChatHistoryService(ChatMessageRepository chatMessageRepository, ChatHistoryCache historyCache,
+                              ChatMessageWriteBehind writeBehind, AppMetrics metrics,
+                              @Value("${chat.history.token-budget:0}") int defaultTokenBudget,
+                              @Value("${chat.history.delete-tombstone-ms:600000}") long deleteTombstoneMs) {
         this.chatMessageRepository = chatMessageRepository;
+        this.historyCache = historyCache;
+        this.writeBehind = writeBehind;
+        this.metrics = metrics;
+        this.defaultTokenBudget = defaultTokenBudget;
+        this.deleteTombstoneMs = deleteTombstoneMs;
+    }
+
+    // 질문 + 답변 저장 (스트림이 끝날 때). startedAt: 요청을 받은 시각.
+    // 그 사이 대화가 삭제됐으면 저장하지 않음 (삭제한 대화가 다시 생기지 않게). 저장했으면 true
+    public boolean saveExchange(String question, String answer, String userId, String conversationId, long startedAt) {
+        String cid = normalize(conversationId);
+        synchronized (historyCache.lockFor(userId)) {
+            Long deleted = cid == null ? null : deletedAt.get(ChatHistoryCache.keyOf(userId, cid));
+            if (deleted != null && deleted >= startedAt) {
+                System.out.println(">>> [History] 삭제된 대화라 저장 생략: " + cid);
+                return false;
+            }
+            saveMessage("user", question, userId, cid);
+            saveMessage("assistant", answer, userId, cid);
+            return true;
+        }
     }
 
     // DB에 저장하려고 msg에서 각각의 것들 빼와 가져오고 저장.
-    public void saveMessage(String role, String content,String userId) {
+    // conversationId: 대화(세션) id, 없으면 null
+    public void saveMessage(String role, String content,String userId, String conversationId) {
+        conversationId = normalize(conversationId);
         ChatMessage msg = new ChatMessage();
         msg.setRole(role);
         msg.setContent(content);
         msg.setUserId(userId);
-        chatMessageRepository.save(msg);
+        msg.setConversationId(conversationId);
+        // 토큰 수는 저장할 때 한 번만 계산 (조회마다 다시 세지 않음)
+        msg.setTokenCount(TokenCounter.countMessage(content));
+
+        // 같은 유저의 캐시 로드와 순서가 꼬이지 않도록 유저 잠금 안에서 저장 + 캐시 반영(write-through)
+        // write-behind 사용 시 INSERT 는 배치 플러시 스레드가 담당 (createdAt 은 큐에 넣는 시점으로 고정)
+        synchronized (historyCache.lockFor(userId)) {
+            if (writeBehind.isEnabled()) {
+                msg.setCreatedAt(LocalDateTime.now());
+                writeBehind.enqueue(msg);
+            } else {
+                chatMessageRepository.save(msg);
+            }
+            // 유저 전체 창 + 대화 창 둘 다 (캐시된 경우에만)
+            historyCache.append(ChatHistoryCache.keyOf(userId, null), msg);
+            if (conversationId != null) {
+                historyCache.append(ChatHistoryCache.keyOf(userId, conversationId), msg);
+            }
+        }
+    }
+
+    // DB를 직접 읽기 전에 호출: 이 유저의 아직 저장 안 된 메시지를 먼저 플러시
+    public void flushPending(String userId) {
+        writeBehind.flushUser(userId);
+    }
 
+    // 이 유저/대화에 프롬프트로 들어갈 이전 기록이 있는지 (없으면 파이썬 프롬프트가 유저와 무관 -> single-flight 가 유저끼리 합침)
+    public boolean hasPromptHistory(String userId, String conversationId) {
+        return !getRecentMessagesForPrompt(1, userId, conversationId, 0).isEmpty();
     }
 
-    // 최근 대화 내용을 가져와서 Python 서버에 보낼 형식(List<Map>)으로 변환
     public List<Map<String, String>> getRecentMessagesForPrompt(int limit, String userId) {
+        return getRecentMessagesForPrompt(limit, userId, null, null);
+    }
+
+    // 최근 대화 내용을 Python 서버에 보낼 형식(List<Map>)으로 반환.
+    // 캐시 창 크기 이내면 메모리에서 바로, 처음 보는 유저만 DB에서 창 전체를 한 번 읽어 채움.
+    // maxTokens: null = 서버 설정(chat.history.token-budget, 기본 0), 0 이하 = 개수(limit)로만 자름 (예전 동작).
+    // 예산이 있으면 최신 메시지부터 예산만큼 + 그보다 오래된 대화의 요약(system 메시지 1개).
+    // 이때 limit 은 캐시 창 크기(window-size)를 넘지 않고, 창보다 오래된 대화는 요약으로만 들어감.
+    // conversationId 가 있으면 그 대화의 기록만 (캐시 창도 대화별로 따로 둠), 없으면 유저 전체 기록.
+    public List<Map<String, String>> getRecentMessagesForPrompt(int limit, String userId, String conversationId, Integer maxTokens) {
+        conversationId = normalize(conversationId);
+        int budget = maxTokens == null ? defaultTokenBudget : Math.max(0, maxTokens);
+        if (budget > 0) {
+            limit = Math.min(limit, historyCache.getWindowSize());
+        } else if (limit > historyCache.getWindowSize()) {
+            return toPromptFormat(loadRecentFromDb(limit, userId, conversationId));
+        }
+
+        // 캐시를 끈 노드(Kafka 모드): 다른 노드가 저장한 메시지를 놓치지 않게 매번 DB 에서
+        if (!historyCache.isEnabled()) {
+            return historyCache.render(loadRecentFromDb(budget > 0 ? historyCache.getLoadSize() : limit, userId, conversationId), limit, budget);
+        }
+
+        String key = ChatHistoryCache.keyOf(userId, conversationId);
+        long startedAt = System.nanoTime();
+        List<Map<String, String>> cached = historyCache.snapshot(key, limit, budget);
+        if (cached != null) {
+            metrics.recordHistoryQuery("cache", System.nanoTime() - startedAt);
+            return cached;
+        }
+
+        synchronized (historyCache.lockFor(userId)) {
+            cached = historyCache.snapshot(key, limit, budget);
+            if (cached != null) {
+                return cached;
+            }
+            historyCache.load(key, loadRecentFromDb(historyCache.getLoadSize(), userId, conversationId));
+            return historyCache.snapshot(key, limit, budget);
+        }
+    }
+
+    // 유저의 대화 목록 (최근 대화 순, 최대 limit개)
+    public List<ChatMessageRepository.ConversationSummary> listConversations(String userId, int limit) {
+        flushPending(userId);
+        return chatMessageRepository.findConversations(userId, Limit.of(limit));
+    }
+
+    // 대화 1개 삭제 + 캐시 정리. 삭제한 메시지 수 반환 (없는 대화면 0, 대화 id 가 비었으면 예외)
+    // 진행 중인 스트림이 나중에 저장하지 않도록 삭제 시각을 delete-tombstone-ms 동안 기억 (saveExchange)
+    public int deleteConversation(String userId, String conversationId) {
+        String cid = normalize(conversationId);
+        if (cid == null) {
+            throw new IllegalArgumentException("대화 id가 없습니다.");
+        }
+        synchronized (historyCache.lockFor(userId)) {
+            long now = System.currentTimeMillis();
+            deletedAt.values().removeIf(t -> t < now - deleteTombstoneMs);
+            deletedAt.put(ChatHistoryCache.keyOf(userId, cid), now);
+            flushPending(userId);
+            int deleted = chatMessageRepository.deleteConversation(userId, cid);
+            if (deleted == 0) {
+                return 0;
+            }
+            // 대화 창은 버리고, 유저 전체 창은 다음 조회 때 DB에서 다시 채움
+            historyCache.evict(ChatHistoryCache.keyOf(userId, cid));
+            historyCache.evict(ChatHistoryCache.keyOf(userId, null));
+            return deleted;
+        }
+    }
+
+    // DB에서 최근 limit개를 과거 -> 최신 순으로 (conversationId 가 있으면 그 대화만)
+    private List<ChatMessage> loadRecentFromDb(int limit, String userId, String conversationId) {
         // 1. DB에서 최신순으로 limit개 가져오기 (createdAt 기준 내림차순)
-        Pageable pageable = PageRequest.of(0, limit, Sort.by("createdAt").descending());
-        
         // [수정] findAll() 후 필터링하면 다른 사람 글 때문에 내 글이 잘릴 수 있음 -> DB 조회 단계에서 필터링
-        long startTime = System.currentTimeMillis(); // 시작 시간
-        
-        List<ChatMessage> messages = chatMessageRepository.findByUserId(userId, pageable);
+        flushPending(userId);
+        long startTime = System.nanoTime(); // 시작 시간
+
+        // (userId, createdAt, id) 인덱스를 그대로 타는 정렬
+        List<ChatMessage> messages = conversationId == null
+                ? chatMessageRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, Limit.of(limit))
+                : chatMessageRepository.findByUserIdAndConversationIdOrderByCreatedAtDescIdDesc(userId, conversationId, Limit.of(limit));
 
-        long endTime = System.currentTimeMillis(); // 종료 시간
-        System.out.println("DB 조회 소요 시간: " + (endTime - startTime) + "ms");
-        
+        // DB 조회 소요 시간 -> chat.history.query{source=db}
+        metrics.recordHistoryQuery("db", System.nanoTime() - startTime);
 
-        // 2. 과거 -> 최신 순으로 정렬 (LLM 문맥 유지를 위해 뒤집기)
-        List<ChatMessage> reversed = new ArrayList<>(messages);
+
+        return oldestFirst(messages);
+    }
+
+    // 빈 문자열은 대화 id 없음(null)으로
+    public static String normalize(String conversationId) {
+        return conversationId == null || conversationId.isBlank() ? null : conversationId.trim();
+    }
+
+    // 2. 과거 -> 최신 순으로 정렬 (LLM 문맥 유지를 위해 뒤집기)
+    static List<ChatMessage> oldestFirst(List<ChatMessage> newestFirst) {
+        List<ChatMessage> reversed = new ArrayList<>(newestFirst);
         Collections.reverse(reversed);
+        return reversed;
+    }
 
-        // 3. Map 형태로 변환 (Python: [{"role": "user", "content": "..."}, ...])
-        return reversed.stream().map(msg -> {
+    // 3. Map 형태로 변환 (Python: [{"role": "user", "content": "..."}, ...])
+    static List<Map<String, String>> toPromptFormat(List<ChatMessage> messages) {
+        return messages.stream().map(msg -> {
             Map<String, String> map = new HashMap<>();
             map.put("role", msg.getRole());
             map.put("content", msg.getContent());
@@ -0,0 +1,230 @@
+package com.example.project.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.project.domain.ChatMessage;
+
+import jakarta.annotation.PreDestroy;
+
+// 대화 기록 비동기 저장(write-behind).
+// 스트림이 끝날 때마다 saveMessage 두 번 = INSERT 트랜잭션 두 번이 스트림 워커 스레드에서 돌던 것을,
+// 제한된 큐에 모았다가 크기(batch-size) 또는 시간(flush-interval-ms) 기준으로 JDBC 배치 INSERT 한 번에 저장.
+// (ChatMessage 는 IDENTITY 전략이라 Hibernate 배치가 안 되므로 JdbcTemplate 사용)
+// 플러시는 단일 스레드 + FIFO 라서 유저별 user/assistant 순서가 그대로 유지됨.
+// 배치가 재시도 후에도 실패하면 한 건씩 다시 저장 (행 1개 문제로 배치 전체가 버려지지 않게). 그래도 안 되는 건만 유실로 셈 (stats.lost, 지표 chat.history.write.behind.lost).
+@Service
+public class ChatMessageWriteBehind {
+
+    private static final String INSERT_SQL =
+            "insert into chats (user_id, conversation_id, role, content, token_count, created_at) values (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+
+    private final BlockingQueue<ChatMessage> queue;
+    // 아직 DB에 안 들어간 메시지 수 (유저별). DB 조회 전에 이 유저 것만 남아 있으면 먼저 플러시.
+    // 카운터 변경은 compute 안에서만 하고, 0 이 되면 항목을 지움 (유저 수만큼 쌓이지 않게)
+    private final Map<String, Integer> pendingByUser = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final Object signal = new Object();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rowFallbacks = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+
+    public ChatMessageWriteBehind(JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${chat.history.write-behind.enabled:true}") boolean enabled,
+                                  @Value("${chat.history.write-behind.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${chat.history.write-behind.batch-size:100}") int batchSize,
+                                  @Value("${chat.history.write-behind.flush-interval-ms:200}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        this.flusher = new Thread(this::flushLoop, "chat-write-behind");
+        this.flusher.setDaemon(true);
+        if (enabled) {
+            this.flusher.start();
+        }
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    // 큐에 넣기. 큐가 가득 차면 자리가 날 때까지 대기(backpressure).
+    public void enqueue(ChatMessage msg) {
+        pendingByUser.merge(key(msg.getUserId()), 1, Integer::sum);
+        try {
+            queue.put(msg);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(msg);
+            throw new IllegalStateException("대화 저장 대기 중 인터럽트", e);
+        }
+        if (queue.size() >= batchSize) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    // 이 유저의 메시지가 아직 큐에 있으면 지금 바로 플러시 (DB 조회가 방금 저장한 글을 놓치지 않게)
+    public void flushUser(String userId) {
+        if (pendingByUser.containsKey(key(userId))) {
+            flush();
+        }
+    }
+
+    // 큐에 있는 것을 전부 배치로 저장. 플러시 스레드와 호출 스레드가 같은 잠금을 써서 순서가 섞이지 않음.
+    public void flush() {
+        synchronized (flushLock) {
+            List<ChatMessage> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                insert(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                synchronized (signal) {
+                    if (running && queue.size() < batchSize) {
+                        signal.wait(flushIntervalMs);
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                System.err.println(">>> [WriteBehind] 플러시 실패: " + e.getMessage());
+            }
+        }
+    }
+
+    private void insert(List<ChatMessage> batch) {
+        Exception last = null;
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), ChatMessageWriteBehind::bind));
+                written.add(batch.size());
+                batches.increment();
+                last = null;
+                break;
+            } catch (Exception e) {
+                last = e;
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (last != null) {
+            System.err.println(">>> [WriteBehind] 배치 저장 실패, " + batch.size() + "건 한 건씩 다시 저장: " + last.getMessage());
+            rowFallbacks.increment();
+            insertEach(batch);
+        }
+        for (ChatMessage m : batch) {
+            release(m);
+        }
+    }
+
+    // 배치 실패 시 한 건씩 저장 (순서 유지). 실패한 행만 유실
+    private void insertEach(List<ChatMessage> batch) {
+        int lostHere = 0;
+        for (ChatMessage m : batch) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, m));
+                written.add(1);
+            } catch (Exception e) {
+                lostHere++;
+                System.err.println(">>> [WriteBehind] 저장 실패, 유실: user=" + m.getUserId()
+                        + ", conversation=" + m.getConversationId() + ", role=" + m.getRole() + " (" + e.getMessage() + ")");
+            }
+        }
+        if (lostHere > 0) {
+            lost.add(lostHere);
+        }
+    }
+
+    private static void bind(PreparedStatement ps, ChatMessage m) throws SQLException {
+        ps.setString(1, m.getUserId());
+        ps.setString(2, m.getConversationId());
+        ps.setString(3, m.getRole());
+        ps.setString(4, m.getContent());
+        if (m.getTokenCount() == null) {
+            ps.setNull(5, Types.INTEGER);
+        } else {
+            ps.setInt(5, m.getTokenCount());
+        }
+        ps.setTimestamp(6, Timestamp.valueOf(m.getCreatedAt()));
+    }
+
+    private void release(ChatMessage m) {
+        pendingByUser.computeIfPresent(key(m.getUserId()), (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    // 저장하지 못하고 버린 메시지 수 (지표용)
+    public long lostCount() {
+        return lost.sum();
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "enabled", enabled,
+                "queued", queue.size(),
+                "written", written.sum(),
+                "batches", batches.sum(),
+                "rowFallbacks", rowFallbacks.sum(),
+                "lost", lost.sum(),
+                "pendingUsers", pendingByUser.size());
+    }
+
+    // 종료 시 남은 메시지 모두 저장
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        try {
+            flusher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static String key(String userId) {
+        return userId == null ? "" : userId;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.project.service;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+// 채팅 스트림 중계(relay)를 실행하는 실행기.
+// pool    : 기존 방식. 고정 스레드 풀. 스레드 수(pool-size) = 동시 답변 수.
+// virtual : 요청마다 가상 스레드 1개. 동시 스트림 수는 스레드 수가 아니라 세마포어(max-concurrent)로 제한.
+@Service
+public class ChatStreamExecutor {
+
+    public enum Mode { POOL, VIRTUAL }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final Semaphore permits; // 동시 스트림 슬롯
+    private final int maxConcurrent;
+    private final AppMetrics metrics;
+
+    // 실행 중인 요청 수
+    private final AtomicInteger running = new AtomicInteger();
+
+    // 상한(cap)을 실제 수치로 정하기 위한 통계 (대기 시간 vs 스트리밍 시간)
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitMs = new LongAdder();
+    private final LongAdder totalStreamMs = new LongAdder();
+    private final AtomicLong maxWaitMs = new AtomicLong();
+    private final AtomicLong maxStreamMs = new AtomicLong();
+
+    public ChatStreamExecutor(@Value("${chat.stream.executor-mode:pool}") String mode,
+                              @Value("${chat.stream.pool-size:3}") int poolSize,
+                              @Value("${chat.stream.max-concurrent:50}") int maxConcurrent,
+                              AppMetrics metrics) {
+        this.metrics = metrics;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+
+        if (this.mode == Mode.VIRTUAL) {
+            this.maxConcurrent = maxConcurrent;
+            this.executor = newThreadPerTaskExecutor();
+        } else {
+            // [최적화] 스레드 고정. 슬롯 수 = 스레드 수 이므로 풀 내부 큐에는 작업이 쌓이지 않음
+            this.maxConcurrent = poolSize;
+            this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>()
+            );
+        }
+        this.permits = new Semaphore(this.maxConcurrent);
+        System.out.println(">>> [Queue] 실행 모드: " + this.mode + ", 동시 스트림 상한: " + this.maxConcurrent);
+    }
+
+    // 슬롯(동시 스트림 상한)이 남아 있으면 바로 실행하고 true, 없으면 false.
+    // 대기열 관리는 앞단의 FairChatScheduler 가 맡고, 여기서는 슬롯과 실행/통계만 담당.
+    // onFinish 는 작업이 끝나 슬롯이 반납된 뒤 호출됨.
+    public boolean tryStart(String requestId, Runnable task, long enqueuedAt, Runnable onFinish) {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        running.incrementAndGet();
+        try {
+            executor.execute(() -> run(requestId, task, enqueuedAt, onFinish));
+        } catch (RejectedExecutionException e) {
+            running.decrementAndGet();
+            permits.release();
+            rejected.increment();
+            throw e;
+        }
+        return true;
+    }
+
+    private void run(String requestId, Runnable task, long enqueuedAt, Runnable onFinish) {
+        long startedAt = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            running.decrementAndGet();
+            permits.release();
+            record(requestId, startedAt - enqueuedAt, System.nanoTime() - startedAt);
+            onFinish.run();
+        }
+    }
+
+    public void recordRejected(String reason) {
+        rejected.increment();
+        metrics.recordQueueRejected(reason);
+    }
+
+    private void record(String requestId, long waitNanos, long streamNanos) {
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        long streamMs = TimeUnit.NANOSECONDS.toMillis(streamNanos);
+        completed.increment();
+        totalWaitMs.add(waitMs);
+        totalStreamMs.add(streamMs);
+        maxWaitMs.accumulateAndGet(waitMs, Math::max);
+        maxStreamMs.accumulateAndGet(streamMs, Math::max);
+        metrics.recordQueueWait(mode.name().toLowerCase(), waitNanos);
+        System.out.println(">>> [Queue] 완료 " + requestId + " 대기: " + waitMs + "ms, 스트리밍: " + streamMs + "ms");
+    }
+
+    // 현재 상태와 누적 통계
+    public Map<String, Object> stats() {
+        long done = completed.sum();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("mode", mode.name().toLowerCase());
+        m.put("maxConcurrent", maxConcurrent);
+        m.put("running", running.get());
+        m.put("completed", done);
+        m.put("rejected", rejected.sum());
+        m.put("avgWaitMs", done == 0 ? 0 : totalWaitMs.sum() / done);
+        m.put("maxWaitMs", maxWaitMs.get());
+        m.put("avgStreamMs", done == 0 ? 0 : totalStreamMs.sum() / done);
+        m.put("maxStreamMs", maxStreamMs.get());
+        return m;
+    }
+
+    // 종료 시 실행기 정리. 실행 중인 릴레이는 StreamDrain 이 먼저 기다려 주므로 여기서는 남은 것만 잠깐 기다렸다가 인터럽트
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println(">>> [Queue] 종료 대기 시간 초과, 남은 스트림 " + running.get() + "개 중단");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Mode getMode() { return mode; }
+    public int running() { return running.get(); }
+    public int getMaxConcurrent() { return maxConcurrent; }
+
+    // 평균 스트리밍 시간 (대기 예상 시간 계산용). 아직 표본이 없으면 fallbackMs.
+    public long averageStreamMs(long fallbackMs) {
+        long done = completed.sum();
+        return done == 0 ? fallbackMs : totalStreamMs.sum() / done;
+    }
+
+    // Java 21 이상이면 가상 스레드 실행기, 그보다 낮은 런타임(현재 toolchain 17)에서는
+    // 요청마다 스레드를 만드는 캐시 풀로 대체. 어느 쪽이든 동시 실행 수는 세마포어가 제한함.
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println(">>> [Queue] 가상 스레드 미지원 런타임 -> 요청별 플랫폼 스레드 사용");
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
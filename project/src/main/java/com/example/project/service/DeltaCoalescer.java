@@ -0,0 +1,237 @@
+package com.example.project.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import jakarta.annotation.PreDestroy;
+
+// 파서와 내려보내기(SseEmitter, Kafka 응답) 사이의 delta 합치기 단계.
+// 토큰마다 send(write + flush) 하지 않고, 연속된 delta 를 창(window) 시간 또는 바이트 예산만큼 모아 1개 이벤트로 보냄.
+// - 첫 delta 는 바로 보냄 (TTFT 유지)
+// - delta 가 아닌 이벤트(meta 등)는 모아둔 delta 를 먼저 내보낸 뒤 바로 보냄 (순서 유지)
+// - 창 크기는 min-window-ms ~ max-window-ms 사이에서 조절: 내려보내기가 느리면(클라이언트가 못 따라옴) 늘리고, 빠르면 줄임
+// 서버 기본값은 chat.stream.coalesce.*, 요청별로 ChatRequest.coalesceMs 로 덮어씀 (0 = 끔)
+// 창 만료 flush(SSE 쓰기, 막힐 수 있음)는 타이머 스레드에서 하지 않고 크기 제한이 있는 flush 풀에 넘김 -> 느린 클라이언트 1명이 다른 스트림을 막지 않음.
+// 풀이 꽉 차서 못 넘기면 릴레이 스레드가 다음 send 에서 창이 지난 걸 보고 직접 flush 함.
+@Component
+public class DeltaCoalescer {
+
+    // 요청별 창 크기 상한 (이보다 길면 스트리밍처럼 보이지 않음)
+    private static final long MAX_REQUEST_WINDOW_MS = 1000;
+
+    private final boolean enabled;
+    private final long minWindowMs;
+    private final long maxWindowMs;
+    private final int maxBytes;
+    private final AppMetrics metrics;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ScheduledExecutorService timer;
+    private final ThreadPoolExecutor flusher;
+
+    public DeltaCoalescer(@Value("${chat.stream.coalesce.enabled:false}") boolean enabled,
+                          @Value("${chat.stream.coalesce.min-window-ms:15}") long minWindowMs,
+                          @Value("${chat.stream.coalesce.max-window-ms:50}") long maxWindowMs,
+                          @Value("${chat.stream.coalesce.max-bytes:2048}") int maxBytes,
+                          @Value("${chat.stream.coalesce.flush-threads:4}") int flushThreads,
+                          AppMetrics metrics) {
+        this.enabled = enabled;
+        this.minWindowMs = Math.max(1, minWindowMs);
+        this.maxWindowMs = Math.max(this.minWindowMs, maxWindowMs);
+        this.maxBytes = maxBytes;
+        this.metrics = metrics;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-coalesce");
+            t.setDaemon(true);
+            return t;
+        });
+        int threads = Math.max(1, flushThreads);
+        AtomicInteger seq = new AtomicInteger();
+        this.flusher = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 64), r -> {
+                    Thread t = new Thread(r, "sse-coalesce-flush-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.flusher.allowCoreThreadTimeOut(true);
+    }
+
+    // requestWindowMs: null = 서버 설정, 0 이하 = 이 요청은 합치지 않음, 그 외 = 이 요청의 시작 창 크기
+    public CoalescingSink wrap(StreamEventSink downstream, Integer requestWindowMs) {
+        long window;
+        if (requestWindowMs == null) {
+            window = enabled ? minWindowMs : 0;
+        } else {
+            window = requestWindowMs <= 0 ? 0 : Math.min(requestWindowMs, MAX_REQUEST_WINDOW_MS);
+        }
+        return new CoalescingSink(downstream, window, Math.max(window, maxWindowMs));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        flusher.shutdownNow();
+    }
+
+    // 스트림 1개용. 릴레이 스레드(send)와 flush 풀(창 만료 flush)이 함께 쓰므로 synchronized.
+    // 끝나면 close() 로 남은 delta 를 내보내야 함.
+    public final class CoalescingSink implements StreamEventSink {
+        private final StreamEventSink downstream;
+        private final long minWindowNanos;
+        private final long maxWindowNanos;
+        private long windowNanos;
+
+        private final StringBuilder pendingText = new StringBuilder();
+        private String lastRaw; // 1건만 모였으면 원본 그대로 보냄
+        private int pendingCount;
+        private long deadlineNanos; // 모아둔 delta 를 늦어도 이때까지 내보냄
+        private boolean firstSent;
+        private ScheduledFuture<?> flushTask;
+        private IOException failure; // 타이머 flush 중 실패 -> 다음 send 에서 던짐
+        private boolean closed;
+
+        private CoalescingSink(StreamEventSink downstream, long windowMs, long maxWindowMs) {
+            this.downstream = downstream;
+            this.minWindowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+            this.maxWindowNanos = TimeUnit.MILLISECONDS.toNanos(maxWindowMs);
+            this.windowNanos = minWindowNanos;
+        }
+
+        public boolean isActive() {
+            return minWindowNanos > 0;
+        }
+
+        @Override
+        public synchronized void send(String event, String data) throws IOException {
+            if (failure != null) throw failure;
+            if (!isActive()) {
+                downstream.send(event, data);
+                return;
+            }
+            if ("delta".equals(event) && firstSent) {
+                String text = mergeableText(data);
+                if (text != null) {
+                    if (pendingCount == 0) {
+                        deadlineNanos = System.nanoTime() + windowNanos;
+                        flushTask = timer.schedule(this::handOff, windowNanos, TimeUnit.NANOSECONDS);
+                    }
+                    pendingText.append(text);
+                    lastRaw = data;
+                    pendingCount++;
+                    if (pendingText.length() >= maxBytes) { // 바이트 예산 (문자 수로 근사)
+                        flush(true);
+                    } else if (System.nanoTime() - deadlineNanos >= 0) { // 풀이 밀려 타이머 flush 가 아직이면 여기서
+                        flush(false);
+                    }
+                    return;
+                }
+            }
+            flush(false);
+            downstream.send(event, data);
+            if ("delta".equals(event)) firstSent = true;
+        }
+
+        @Override
+        public void end() throws IOException {
+            close();
+        }
+
+        // 남은 delta 를 내보내고 타이머 정리. 이미 끊긴 스트림이면 실패를 다시 던짐 (여러 번 불러도 됨)
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (failure == null) flush(false);
+            if (flushTask != null) flushTask.cancel(false);
+            if (failure != null) throw failure;
+        }
+
+        // 타이머 스레드: 쓰기는 flush 풀에서. 풀이 꽉 찼으면 버림 (다음 send 나 close 에서 내보냄)
+        private void handOff() {
+            try {
+                flusher.execute(this::flushOnTimer);
+            } catch (RejectedExecutionException e) {
+                // 릴레이 스레드가 창이 지난 걸 보고 flush
+            }
+        }
+
+        private synchronized void flushOnTimer() {
+            if (closed || failure != null) return;
+            try {
+                flush(false);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void flush(boolean overBudget) throws IOException {
+            if (pendingCount == 0) return;
+            if (flushTask != null) {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+            String data = pendingCount == 1 ? lastRaw : deltaJson(pendingText);
+            int merged = pendingCount;
+            pendingText.setLength(0);
+            lastRaw = null;
+            pendingCount = 0;
+
+            long startedAt = System.nanoTime();
+            downstream.send("delta", data);
+            long took = System.nanoTime() - startedAt;
+            metrics.recordCoalescedFlush(merged);
+
+            // 창 크기 조절: 보내는 데 창의 1/4 이상 걸리거나 예산이 넘쳤으면 2배, 아니면 조금씩 줄임
+            if (overBudget || took > windowNanos / 4) {
+                windowNanos = Math.min(maxWindowNanos, windowNanos * 2);
+            } else {
+                windowNanos = Math.max(minWindowNanos, windowNanos - windowNanos / 8);
+            }
+        }
+    }
+
+    // {"type":"delta","text":"..."} 형식이면 text, 다른 필드가 있으면 null (합치면 정보가 사라지므로 그대로 보냄)
+    private String mergeableText(String data) {
+        String text = null;
+        try (JsonParser p = jsonFactory.createParser(data)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("text".equals(name) && value == JsonToken.VALUE_STRING) {
+                    text = p.getText();
+                } else if (!"type".equals(name) || !"delta".equals(p.getText())) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return text;
+    }
+
+    private String deltaJson(CharSequence text) throws IOException {
+        StringWriter out = new StringWriter(text.length() + 32);
+        try (JsonGenerator g = jsonFactory.createGenerator(out)) {
+            g.writeStartObject();
+            g.writeStringField("type", "delta");
+            g.writeStringField("text", text.toString());
+            g.writeEndObject();
+        }
+        return out.toString();
+    }
+}
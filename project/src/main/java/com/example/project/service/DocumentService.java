@@ -1,11 +1,19 @@
 package com.example.project.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -13,6 +21,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.example.project.domain.Document;
 import com.example.project.domain.DocumentStatus;
+import com.example.project.domain.IngestJob;
 import com.example.project.repository.DocumentRepository;
 
 
@@ -23,13 +32,32 @@ public class DocumentService {
     private final DocumentRepository documentRepository;
     private final Path uploadDir;
     private final PythonClientService pythonClientService;
+    private final AnswerCache answerCache;
+    private final IngestionService ingestionService;
+    // 파이썬이 청크/벡터를 저장하는 폴더 (data/doc_{id})
+    private final Path dataDir;
+    private final boolean streamingUploadEnabled;
+    private final boolean dedupEnabled;
+    private final long maxUploadBytes;
 
     public DocumentService(DocumentRepository documentRepository,
         @Value("${app.upload-dir}") String uploadDir,
-        PythonClientService pythonClientService) {
+        PythonClientService pythonClientService,
+        AnswerCache answerCache,
+        IngestionService ingestionService,
+        @Value("${app.data-dir:data}") String dataDir,
+        @Value("${app.upload.streaming-enabled:true}") boolean streamingUploadEnabled,
+        @Value("${app.upload.dedup-enabled:true}") boolean dedupEnabled,
+        @Value("${app.upload.max-bytes:52428800}") long maxUploadBytes) {
         this.documentRepository = documentRepository;
         this.uploadDir = Path.of(uploadDir).toAbsolutePath().normalize();
         this.pythonClientService = pythonClientService;
+        this.answerCache = answerCache;
+        this.ingestionService = ingestionService;
+        this.dataDir = Path.of(dataDir).toAbsolutePath().normalize();
+        this.streamingUploadEnabled = streamingUploadEnabled;
+        this.dedupEnabled = dedupEnabled;
+        this.maxUploadBytes = maxUploadBytes;
     }
 
     // 문서생성 및 업로드
@@ -44,7 +72,14 @@ public class DocumentService {
     //파일 업로드
     public Document uploadFile(Long documentId, MultipartFile file) throws IOException {
         Document d = documentRepository.findById(documentId).orElseThrow(() -> new IllegalArgumentException("문서가 없습니다." + documentId));
-        
+        validatePdf(file);
+
+        try (InputStream in = file.getInputStream()) {
+            return storeAndIngest(d, in);
+        }
+    }
+
+    private void validatePdf(MultipartFile file) {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("파일이 없습니다.");
         }
@@ -53,72 +88,196 @@ public class DocumentService {
         if (!original.endsWith(".pdf")) {
             throw new IllegalArgumentException("PDF 파일만 업로드 가능합니다.");
         }
+    }
+
+    // 멀티파트 임시 파일 없이 요청 본문(PDF 바이트)을 바로 최종 위치로 저장
+    public Document createAndUploadStream(String title, String userId, InputStream body) throws IOException {
+        if (!streamingUploadEnabled) {
+            throw new IllegalStateException("스트리밍 업로드가 비활성화되어 있습니다.");
+        }
+        String t = (title == null || title.isBlank()) ? "untitled.pdf" : title;
+        if (!t.toLowerCase().endsWith(".pdf")) {
+            throw new IllegalArgumentException("PDF 파일만 업로드 가능합니다.");
+        }
+        Document d = create(t, userId);
+        try {
+            return storeAndIngest(d, body);
+        } catch (IOException | RuntimeException e) {
+            documentRepository.delete(d);
+            throw e;
+        }
+    }
+
+    // 파일을 UUID 이름으로 저장하면서 SHA-256 을 같이 계산 -> 같은 내용의 PDF 가 이미 인덱싱돼 있으면 재사용
+    private Document storeAndIngest(Document d, InputStream in) throws IOException {
+        Document saved = store(d, in);
+        if (saved.getStatus() == DocumentStatus.DONE) {
+            return saved;
+        }
 
+        // [비동기 처리] 응답을 바로 반환하기 위해 인덱싱은 백그라운드에서 실행
+        // 배포 시 타임아웃 방지를 위해 필수적인 패턴입니다.
+        // 전용 워커 풀 + DB 작업 기록(IngestionService) -> 재시도, 재시작 복구 가능
+        ingestionService.submit(saved);
+        return saved;
+    }
+
+    // 파일 저장 + 중복 검사까지만. 중복이면 DONE, 아니면 인덱싱이 필요한 상태로 저장해서 반환
+    private Document store(Document d, InputStream in) throws IOException {
         Files.createDirectories(uploadDir);
 
         String safeName = UUID.randomUUID() + ".pdf";
         Path target = uploadDir.resolve(safeName);
-        
-        Files.copy(file.getInputStream(), target, StandardCopyOption.REPLACE_EXISTING);
-        
+
+        String hash = copyWithDigest(in, target);
+
         //DB 업데이트
         d.setFilePath(target.toString());
-        d.setStatus(DocumentStatus.PROCESSING);
-        Document saved = documentRepository.save(d);
+        d.setContentHash(hash);
 
-        // [비동기 처리] 응답을 바로 반환하기 위해 인덱싱은 백그라운드 스레드에서 실행 문서작업 비동기 처리
-        // 배포 시 타임아웃 방지를 위해 필수적인 패턴입니다.
-        //CompletableFutre.runAsync를 넣음오르써 비동기 작업이 되는것.
-        CompletableFuture.runAsync(() -> {
-            try {
-                var resp = pythonClientService.ingestDocument(saved);
-                System.out.println(" Python ingest 응답: " + resp);
-                saved.setStatus(DocumentStatus.DONE);
-                documentRepository.save(saved);
-            } catch (Exception e) {
-                System.err.println("Python ingest 호출 실패: " + e.getMessage());
-                saved.setStatus(DocumentStatus.FAILED);
-                documentRepository.save(saved);
+        // [중복 PDF] 바이트가 같은 문서가 이미 DONE 이면, 가장 비싼 임베딩을 건너뛰고 청크/벡터 파일을 복사해서 사용
+        if (dedupEnabled) {
+            Optional<Document> same = documentRepository.findFirstByContentHashAndStatusOrderByIdDesc(hash, DocumentStatus.DONE);
+            if (same.isPresent() && copyArtifacts(same.get().getId(), d.getId())) {
+                System.out.println(" 중복 PDF, 기존 인덱스 재사용: doc_" + same.get().getId() + " -> doc_" + d.getId());
+                d.setStatus(DocumentStatus.DONE);
+            }
+        }
+        return documentRepository.save(d);
+    }
+
+    // 스트림을 그대로 target 에 쓰면서 SHA-256 계산. 최대 크기를 넘으면 파일 삭제 후 거절.
+    private String copyWithDigest(InputStream in, Path target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        long total = 0;
+        byte[] buf = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                total += n;
+                if (total > maxUploadBytes) {
+                    throw new IllegalArgumentException("파일이 너무 큽니다. 최대 " + maxUploadBytes + " bytes");
+                }
+                digest.update(buf, 0, n);
+                out.write(buf, 0, n);
             }
-        });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        if (total == 0) {
+            Files.deleteIfExists(target);
+            throw new IllegalArgumentException("파일이 없습니다.");
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
-        return saved;
-    
+    // data/doc_{from} 의 청크/벡터 파일을 data/doc_{to} 로 복사. 원본이 없으면 false (재임베딩 필요)
+    private boolean copyArtifacts(Long fromId, Long toId) {
+        Path from = dataDir.resolve("doc_" + fromId);
+        Path to = dataDir.resolve("doc_" + toId);
+        if (!Files.exists(from.resolve("chunks.json")) || !Files.exists(from.resolve("index.faiss"))) {
+            return false;
+        }
+        try {
+            Files.createDirectories(to);
+            Files.copy(from.resolve("chunks.json"), to.resolve("chunks.json"), StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(from.resolve("index.faiss"), to.resolve("index.faiss"), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            System.err.println("인덱스 복사 실패, 재임베딩으로 진행: " + e.getMessage());
+            return false;
+        }
     }
 
     //파일 한번에 id 만들어서 바로 전송.
+    // 저장에 실패하면 만든 문서 행도 지움 (스트리밍 업로드와 같게: filePath 없는 UPLOADED 행을 남기지 않음)
     public Document createAndUpload (String title, MultipartFile file, String userId) throws IOException {
+        validatePdf(file);
         Document d = create(title,userId);
-        return uploadFile(d.getId(), file);
+        try {
+            return uploadFile(d.getId(), file);
+        } catch (IOException | RuntimeException e) {
+            documentRepository.delete(d);
+            throw e;
+        }
     }
 
-    public Document reingest(Long documentId) {
-    Document d = documentRepository.findById(documentId)
-            .orElseThrow(() -> new IllegalArgumentException("Document not found: " + documentId));
-
-    if (d.getFilePath() == null || d.getFilePath().isBlank()) {
-        throw new IllegalStateException("No filePath for document: " + documentId);
+    // 여러 파일 업로드: 전부 저장한 뒤 인덱싱은 한 번에 등록 -> 배치로 묶여 파이썬 호출 횟수가 줄어듦
+    // 형식 검사는 저장 전에 전부 먼저. 중간 파일 저장이 실패하면 그 행은 지우고, 이미 저장된 파일은 finally 에서 인덱싱 등록
+    // (UPLOADED 로 남으면 재시작 복구 대상(PROCESSING)이 아니라 영영 인덱싱되지 않음)
+    public List<Document> createAndUploadMany(List<MultipartFile> files, String userId) throws IOException {
+        for (MultipartFile f : files) {
+            validatePdf(f);
+        }
+        List<Document> results = new ArrayList<>();
+        List<Document> toIngest = new ArrayList<>();
+        try {
+            for (MultipartFile f : files) {
+                String title = (f.getOriginalFilename() == null) ? "untitled.pdf" : f.getOriginalFilename();
+                Document d = create(title, userId);
+                try (InputStream in = f.getInputStream()) {
+                    d = store(d, in);
+                } catch (IOException | RuntimeException e) {
+                    documentRepository.delete(d);
+                    throw e;
+                }
+                results.add(d);
+                if (d.getStatus() != DocumentStatus.DONE) {
+                    toIngest.add(d);
+                }
+            }
+        } finally {
+            if (!toIngest.isEmpty()) {
+                ingestionService.submitAll(toIngest);
+            }
+        }
+        return results;
     }
 
-    // 상태를 PROCESSING으로
-    d.setStatus(DocumentStatus.PROCESSING);
-    d = documentRepository.save(d);
+    // 재인덱싱은 작업으로 등록만 하고 바로 반환 (큰 PDF 도 서블릿 스레드를 잡지 않음). 진행 상황은 작업 id 로 조회/구독
+    public IngestJob reingest(Long documentId) {
+        Document d = documentRepository.findById(documentId)
+                .orElseThrow(() -> new IllegalArgumentException("Document not found: " + documentId));
 
-    try {
-        pythonClientService.ingestDocument(d);
-        d.setStatus(DocumentStatus.DONE);
-    } catch (Exception e) {
-        d.setStatus(DocumentStatus.FAILED);
+        if (d.getFilePath() == null || d.getFilePath().isBlank()) {
+            throw new IllegalStateException("No filePath for document: " + documentId);
+        }
+
+        // 문서 내용(벡터)이 바뀌므로 이 문서가 포함된 캐시 답변 무효화 (완료 시 IngestionService 가 한 번 더 무효화)
+        answerCache.invalidateDocument(documentId);
+
+        return ingestionService.submit(d);
     }
 
-    return documentRepository.save(d);
-}
+    // 여러 문서 재인덱싱. 파일이 없거나 존재하지 않는 문서는 skipped 로 돌려줌
+    public Map<String, Object> reingestAll(List<Long> documentIds, Integer concurrency) {
+        List<Document> docs = new ArrayList<>();
+        List<Long> skipped = new ArrayList<>();
+        for (Long id : documentIds) {
+            Optional<Document> d = documentRepository.findById(id);
+            if (d.isEmpty() || d.get().getFilePath() == null || d.get().getFilePath().isBlank()) {
+                skipped.add(id);
+                continue;
+            }
+            answerCache.invalidateDocument(id);
+            docs.add(d.get());
+        }
+        return ingestionService.startBulk(docs, skipped, concurrency);
+    }
 
     //파일 하나씩 제거.
     public void delete(Long documentId) {
         //파일 제거
          Document d = documentRepository.findById(documentId).orElseThrow(() -> new IllegalArgumentException("문서가 없습니다." + documentId));
          documentRepository.delete(d);
+         answerCache.invalidateDocument(documentId);
 
          // 서버내 업로드 pdf 파일 제거
          Path target = Path.of(d.getFilePath());
@@ -130,7 +289,7 @@ public class DocumentService {
          }
 
          // 서버 내 데이터 청크 벡터 제거
-         Path dataPath = Path.of("data").toAbsolutePath().resolve("doc_" + documentId);
+         Path dataPath = dataDir.resolve("doc_" + documentId);
          try {
             System.out.println("벡터 데이터 삭제: " + dataPath);
             Files.deleteIfExists(dataPath.resolve("chunks.json"));
@@ -0,0 +1,302 @@
+package com.example.project.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+// 유저별 공정 스케줄러.
+// 기존 ArrayBlockingQueue(100)은 전체 유저 공용 FIFO 라서, 한 유저가 질문 50개를 던지면 나머지 유저가 전부 밀렸음.
+// 여기서는 userId마다 대기열을 따로 두고, 유저별 동시 실행 수(per-user-concurrency)를 제한한 뒤
+// 대기 중인 유저들을 라운드로빈으로 돌면서 ChatStreamExecutor의 빈 슬롯에 하나씩 넣어줌.
+// 대기 위치 알림은 submit / cancel / 작업 종료 스레드에서 계산하지 않고 "바뀜" 표시만 남김.
+// 알림 스레드(chat-queue-notify) 하나가 몰린 변경을 한 번에 계산(O(대기 작업 수))하고 SSE 전송도 그 스레드에서 함.
+@Service
+public class FairChatScheduler {
+
+    // 대기 위치가 바뀔 때 호출 (SSE "queued" 이벤트 전송용)
+    public interface QueueListener {
+        void onQueued(int position, long estimatedWaitMs);
+    }
+
+    public enum Result { STARTED, QUEUED, REJECTED }
+
+    // 제출 결과. REJECTED 일 때 reason / retryAfterMs 사용.
+    public record Admission(Result result, String reason, long retryAfterMs) {
+        static final Admission STARTED = new Admission(Result.STARTED, null, 0);
+        static final Admission QUEUED = new Admission(Result.QUEUED, null, 0);
+    }
+
+    private static final class Task {
+        final String requestId;
+        final Runnable body;
+        final QueueListener listener;
+        final long enqueuedAt = System.nanoTime();
+        int lastPosition = -1;
+        volatile boolean dispatched; // 시작된 뒤에는 늦게 도착한 위치 알림을 보내지 않음
+
+        Task(String requestId, Runnable body, QueueListener listener) {
+            this.requestId = requestId;
+            this.body = body;
+            this.listener = listener;
+        }
+    }
+
+    private static final class UserQueue {
+        final Deque<Task> pending = new ArrayDeque<>();
+        int running;
+    }
+
+    private final ChatStreamExecutor executor;
+    private final int perUserConcurrency;
+    private final int perUserQueue;
+    private final int queueCapacity;
+
+    // userId -> 대기열. ring 은 대기 작업이 있는 유저들의 라운드로빈 순서.
+    private final Map<String, UserQueue> users = new HashMap<>();
+    private final Deque<String> ring = new ArrayDeque<>();
+    private int queued;
+    private boolean closed; // 드레인 중: 새 요청을 받지 않음
+    private boolean positionsDirty; // 대기 위치가 바뀌었을 수 있음 -> 알림 스레드가 다시 계산
+    private final Thread notifier;
+
+    public FairChatScheduler(ChatStreamExecutor executor,
+                             @Value("${chat.stream.per-user-concurrency:1}") int perUserConcurrency,
+                             @Value("${chat.stream.per-user-queue:10}") int perUserQueue,
+                             @Value("${chat.stream.queue-capacity:100}") int queueCapacity) {
+        this.executor = executor;
+        this.perUserConcurrency = perUserConcurrency;
+        this.perUserQueue = perUserQueue;
+        this.queueCapacity = queueCapacity;
+        this.notifier = new Thread(this::notifyLoop, "chat-queue-notify");
+        this.notifier.setDaemon(true);
+        this.notifier.start();
+    }
+
+    // 요청 제출. 슬롯이 있으면 바로 시작, 없으면 유저 대기열에 넣고 위치를 알려줌, 한도 초과면 거절.
+    public Admission submit(String requestId, String userId, Runnable body, QueueListener listener) {
+        String key = userId == null ? "" : userId;
+        synchronized (this) {
+            if (closed) {
+                return new Admission(Result.REJECTED, "draining", 0);
+            }
+            UserQueue uq = users.computeIfAbsent(key, k -> new UserQueue());
+            if (uq.pending.size() >= perUserQueue) {
+                executor.recordRejected("user_queue_full");
+                return new Admission(Result.REJECTED, "user_queue_full", retryAfterMs(uq.pending.size()));
+            }
+            if (queued >= queueCapacity) {
+                removeIfIdle(key, uq);
+                executor.recordRejected("queue_full");
+                return new Admission(Result.REJECTED, "queue_full", retryAfterMs(queued));
+            }
+
+            Task task = new Task(requestId, body, listener);
+            if (uq.pending.isEmpty()) {
+                ring.addLast(key);
+            }
+            uq.pending.addLast(task);
+            queued++;
+
+            dispatch();
+            markPositionsDirty();
+            return task.dispatched ? Admission.STARTED : Admission.QUEUED;
+        }
+    }
+
+    // 대기 중에 클라이언트가 끊긴 경우 대기열에서 제거 (이미 실행 중이면 무시)
+    public void cancel(String requestId, String userId) {
+        String key = userId == null ? "" : userId;
+        synchronized (this) {
+            UserQueue uq = users.get(key);
+            if (uq == null || !uq.pending.removeIf(t -> t.requestId.equals(requestId))) {
+                return;
+            }
+            queued--;
+            if (uq.pending.isEmpty()) {
+                ring.remove(key);
+                removeIfIdle(key, uq);
+            }
+            markPositionsDirty();
+        }
+    }
+
+    private void onFinish(String userId) {
+        synchronized (this) {
+            UserQueue uq = users.get(userId);
+            if (uq != null) {
+                uq.running--;
+                if (uq.pending.isEmpty()) {
+                    removeIfIdle(userId, uq);
+                } else if (!ring.contains(userId)) {
+                    ring.addLast(userId);
+                }
+            }
+            dispatch();
+            markPositionsDirty();
+        }
+    }
+
+    // 라운드로빈: ring 앞에서 유저를 꺼내 한 건 실행하고, 남은 작업이 있으면 뒤로 보냄.
+    // 유저별 동시 실행 한도에 걸린 유저는 슬롯이 날 때까지 ring 에서 빠짐 (onFinish 에서 복귀).
+    private void dispatch() {
+        while (!ring.isEmpty()) {
+            String key = ring.peekFirst();
+            UserQueue uq = users.get(key);
+            if (uq.running >= perUserConcurrency) {
+                ring.pollFirst();
+                continue;
+            }
+            Task task = uq.pending.peekFirst();
+            if (!executor.tryStart(task.requestId, task.body, task.enqueuedAt, () -> onFinish(key))) {
+                return; // 전체 슬롯이 가득 참
+            }
+            uq.pending.pollFirst();
+            task.dispatched = true;
+            uq.running++;
+            queued--;
+            ring.pollFirst();
+            if (!uq.pending.isEmpty() && uq.running < perUserConcurrency) {
+                ring.addLast(key);
+            }
+        }
+    }
+
+    // this 잠금 안에서 호출
+    private void markPositionsDirty() {
+        positionsDirty = true;
+        notifyAll();
+    }
+
+    // 알림 스레드: 바뀜 표시가 생기면 위치를 한 번 계산하고, 전송(SSE I/O)은 잠금 밖에서
+    private void notifyLoop() {
+        while (true) {
+            List<Runnable> notices;
+            synchronized (this) {
+                try {
+                    while (!positionsDirty) wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                positionsDirty = false;
+                notices = positionNotices();
+            }
+            for (Runnable notice : notices) {
+                try {
+                    notice.run();
+                } catch (RuntimeException e) {
+                    System.err.println(">>> [Queue] 대기 위치 알림 실패: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // 대기 위치 추정: 라운드로빈 순서대로 한 바퀴에 유저당 1건씩 빠진다고 보고 앞에 있는 작업 수를 셈.
+    // 유저 u 의 index 번째 작업 앞에는 모든 유저의 min(대기 수, index)개 + u 보다 앞 순서이면서 index 번째가 있는 유저 수.
+    // 앞의 합은 대기 수 분포의 누적합으로, 뒤의 수는 순서대로 돌며 센 값으로 구해서 전체 O(유저 수 + 대기 작업 수).
+    // 위치가 바뀐 작업에 대해서만 알림을 만듦.
+    private List<Runnable> positionNotices() {
+        List<Runnable> notices = new ArrayList<>();
+        if (queued == 0) return notices;
+        long avgStreamMs = executor.averageStreamMs(10_000L);
+        int slots = Math.max(1, executor.getMaxConcurrent());
+
+        List<UserQueue> order = new ArrayList<>(ring.size());
+        Set<String> inRing = new HashSet<>(ring);
+        for (String key : ring) order.add(users.get(key));
+        for (Map.Entry<String, UserQueue> e : users.entrySet()) {
+            if (!e.getValue().pending.isEmpty() && !inRing.contains(e.getKey())) {
+                order.add(e.getValue()); // 유저 한도에 걸려 ring 에서 빠진 유저는 맨 뒤로 간주
+            }
+        }
+
+        int maxLen = 0;
+        for (UserQueue uq : order) maxLen = Math.max(maxLen, uq.pending.size());
+        // longer[i] = 대기 수가 i 보다 많은 유저 수, base[i] = 모든 유저의 min(대기 수, i) 합
+        int[] longer = new int[maxLen];
+        for (UserQueue uq : order) {
+            for (int i = 0; i < uq.pending.size(); i++) longer[i]++;
+        }
+        int[] base = new int[maxLen];
+        for (int i = 1; i < maxLen; i++) base[i] = base[i - 1] + longer[i - 1];
+        int[] earlier = new int[maxLen]; // 지금까지 본(앞 순서) 유저 중 index 번째 작업이 있는 유저 수
+
+        for (UserQueue uq : order) {
+            int index = 0;
+            for (Task t : uq.pending) {
+                int position = base[index] + earlier[index] + 1;
+                if (position != t.lastPosition && t.listener != null) {
+                    t.lastPosition = position;
+                    long estimatedWaitMs = (long) Math.ceil((double) position / slots) * avgStreamMs;
+                    QueueListener l = t.listener;
+                    notices.add(() -> {
+                        if (!t.dispatched) l.onQueued(position, estimatedWaitMs);
+                    });
+                }
+                earlier[index]++;
+                index++;
+            }
+        }
+        return notices;
+    }
+
+    private void removeIfIdle(String key, UserQueue uq) {
+        if (uq.running == 0 && uq.pending.isEmpty()) {
+            users.remove(key);
+        }
+    }
+
+    // 재시도 힌트: 앞에 쌓인 양을 슬롯 수로 나눈 만큼의 평균 스트리밍 시간
+    private long retryAfterMs(int backlog) {
+        int slots = Math.max(1, executor.getMaxConcurrent());
+        long rounds = Math.max(1, (long) Math.ceil((double) backlog / slots));
+        return rounds * executor.averageStreamMs(10_000L);
+    }
+
+    // 드레인 시작: 새 요청을 막고, 아직 시작 안 한 요청을 대기열에서 모두 빼서 requestId 를 돌려줌
+    // (시작 전이라 다른 노드에서 다시 시작해도 잃는 것이 없음). 실행 중인 요청은 그대로 끝까지 감
+    public List<String> close() {
+        List<String> removed = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Map.Entry<String, UserQueue> e : new ArrayList<>(users.entrySet())) {
+                UserQueue uq = e.getValue();
+                for (Task t : uq.pending) removed.add(t.requestId);
+                queued -= uq.pending.size();
+                uq.pending.clear();
+                removeIfIdle(e.getKey(), uq);
+            }
+            ring.clear();
+        }
+        return removed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        notifier.interrupt();
+    }
+
+    public synchronized int queuedCount() {
+        return queued;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("queued", queued);
+        m.put("queueCapacity", queueCapacity);
+        m.put("perUserConcurrency", perUserConcurrency);
+        m.put("perUserQueue", perUserQueue);
+        m.put("waitingUsers", ring.size());
+        return m;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.project.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.project.controller.dto.ChatRequest;
+
+// 같은 질문의 동시 스트림 합치기 (single-flight).
+// 같은 문서를 연 여러 명이 같은 질문을 거의 동시에 보내면, 먼저 시작한 요청(리더) 1개만 파이썬을 호출하고
+// 나머지(팔로워)는 그 스트림에 붙어서 같은 이벤트를 받음. 늦게 붙은 팔로워는 지금까지 나간 이벤트를 먼저 재생(catch-up)받음.
+// key 는 질문 + documentIds + topK + model + documentName. 파이썬 프롬프트에 유저의 이전 대화가 들어가므로
+// 그 대화에 기록이 있으면 userId + conversationId 까지 붙여 같은 유저 / 같은 대화끼리만 합침 (답변 캐시와 같은 key).
+// 기록이 없는 첫 질문은 프롬프트가 유저와 무관 -> 유저가 달라도 합침 (온보딩처럼 여러 명이 같은 첫 질문을 보내는 경우).
+// 대화 기록 저장은 구독자마다 따로 (onDone 에서 각자 saveMessage 2번).
+// 구독자가 모두 떠나면(연결 끊김 / 취소) 리더의 업스트림을 바로 끊음 (Flight.cancellation).
+@Component
+public class InFlightStreams {
+
+    // 스트림 1개를 받는 클라이언트 1명. sink 는 구독자별 (delta 합치기 창도 구독자별)
+    public record Subscriber(String requestId, StreamEventSink sink, Consumer<String> onDone, Consumer<Exception> onError) {}
+
+    // join 결과. leader 면 호출한 쪽이 flight 를 sink 로 파이썬 스트림을 돌리고 complete/fail 을 불러야 함
+    public record Join(Flight flight, boolean leader) {}
+
+    private final boolean enabled;
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    // requestId -> 구독 중인 스트림 (취소 / 만료 시 찾기용)
+    private final Map<String, Flight> byRequest = new ConcurrentHashMap<>();
+
+    private final LongAdder led = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    public InFlightStreams(@Value("${chat.stream.single-flight.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // hasHistory = 이 유저/대화에 프롬프트로 들어갈 이전 기록이 있는지 (ChatHistoryService.hasPromptHistory)
+    static String keyOf(ChatRequest req, boolean hasHistory) {
+        return hasHistory ? AnswerCache.keyOf(req) : AnswerCache.questionKeyOf(req);
+    }
+
+    // 기록 여부를 모르면 같은 유저 / 같은 대화끼리만
+    public Join join(ChatRequest req, Subscriber subscriber) {
+        return join(req, true, subscriber);
+    }
+
+    // 같은 key 의 스트림이 돌고 있으면 붙고, 없으면 새로 리더가 됨 (꺼져 있으면 항상 혼자 리더)
+    public Join join(ChatRequest req, boolean hasHistory, Subscriber subscriber) {
+        if (!enabled) {
+            Flight flight = new Flight(null);
+            flight.add(subscriber);
+            led.increment();
+            return new Join(flight, true);
+        }
+        String key = keyOf(req, hasHistory);
+        while (true) {
+            Flight running = flights.get(key);
+            if (running != null) {
+                if (running.add(subscriber)) {
+                    joined.increment();
+                    return new Join(running, false);
+                }
+                flights.remove(key, running); // 막 끝난 스트림 -> 다시 시도
+                continue;
+            }
+            Flight flight = new Flight(key);
+            flight.add(subscriber);
+            if (flights.putIfAbsent(key, flight) == null) {
+                led.increment();
+                return new Join(flight, true);
+            }
+        }
+    }
+
+    // 돌고 있는 스트림이 있을 때만 붙음 (대기열에 넣기 전에 확인: 팔로워는 실행 슬롯을 쓰지 않음)
+    public boolean attachIfRunning(ChatRequest req, Subscriber subscriber) {
+        return attachIfRunning(req, true, subscriber);
+    }
+
+    public boolean attachIfRunning(ChatRequest req, boolean hasHistory, Subscriber subscriber) {
+        if (!enabled) return false;
+        Flight running = flights.get(keyOf(req, hasHistory));
+        if (running != null && running.add(subscriber)) {
+            joined.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // 요청 1개가 스트림에서 빠짐 (재연결 없이 만료 / 취소). 마지막 구독자였으면 업스트림을 끊음. 구독 중이 아니면 false
+    public boolean leave(String requestId, String reason) {
+        Flight flight = byRequest.remove(requestId);
+        return flight != null && flight.remove(requestId, reason);
+    }
+
+    // 드레인 시간 초과: 아직 돌고 있는 모든 스트림의 업스트림을 끊음
+    public void cancelAll(String reason) {
+        for (Flight f : new ArrayList<>(byRequest.values())) {
+            f.cancellation.cancel(reason);
+        }
+    }
+
+    public int size() {
+        return flights.size();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("singleFlightEnabled", enabled);
+        s.put("inFlight", flights.size());
+        s.put("led", led.sum());
+        s.put("joined", joined.sum());
+        return s;
+    }
+
+    // 진행 중인 파이썬 스트림 1개. 리더의 릴레이 스레드가 send/end 를 부르고, 구독자 추가는 요청 스레드에서 옴 -> synchronized
+    public final class Flight implements StreamEventSink {
+        private final String key;
+        private final List<AnswerCache.Frame> frames = new ArrayList<>(); // catch-up 재생 + 답변 캐시 저장용
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private final StreamCancellation cancellation = new StreamCancellation();
+        private boolean done;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        // 지금까지 나간 이벤트를 재생한 뒤 구독자로 추가. 이미 끝난 스트림이면 false
+        synchronized boolean add(Subscriber subscriber) {
+            if (done) return false;
+            try {
+                for (AnswerCache.Frame f : frames) {
+                    subscriber.sink().send(f.event(), f.data());
+                }
+            } catch (IOException | RuntimeException e) {
+                return true; // 재생 중 끊긴 클라이언트: 붙은 것으로 치고 버림 (새 스트림을 만들 필요 없음)
+            }
+            subscribers.add(subscriber);
+            byRequest.put(subscriber.requestId(), this);
+            return true;
+        }
+
+        // 리더가 forwardSse 에 넘겨 업스트림을 끊을 수 있게 함
+        public StreamCancellation cancellation() {
+            return cancellation;
+        }
+
+        private boolean remove(String requestId, String reason) {
+            synchronized (this) {
+                if (done || !subscribers.removeIf(s -> s.requestId().equals(requestId))) return false;
+                if (!subscribers.isEmpty()) return true;
+            }
+            cancellation.cancel(reason); // 마지막 구독자: 다음 토큰을 기다리지 않고 바로 끊음
+            return true;
+        }
+
+        private void dropped(Subscriber s) {
+            byRequest.remove(s.requestId(), this);
+        }
+
+        private void throwIfAbandoned() throws IOException {
+            if (subscribers.isEmpty()) {
+                cancellation.cancel("client_gone");
+                throw new IOException("모든 클라이언트 연결 끊김");
+            }
+        }
+
+        // 모든 구독자에게 전달. 끊긴 구독자는 빼고, 아무도 안 남으면 예외 (리더가 업스트림을 멈춤)
+        @Override
+        public synchronized void send(String event, String data) throws IOException {
+            frames.add(new AnswerCache.Frame(event, data));
+            Iterator<Subscriber> it = subscribers.iterator();
+            while (it.hasNext()) {
+                Subscriber s = it.next();
+                try {
+                    s.sink().send(event, data);
+                } catch (IOException | RuntimeException e) {
+                    it.remove();
+                    dropped(s);
+                }
+            }
+            throwIfAbandoned();
+        }
+
+        @Override
+        public synchronized void end() throws IOException {
+            Iterator<Subscriber> it = subscribers.iterator();
+            while (it.hasNext()) {
+                Subscriber s = it.next();
+                try {
+                    s.sink().end();
+                } catch (IOException | RuntimeException e) {
+                    it.remove();
+                    dropped(s);
+                }
+            }
+            throwIfAbandoned();
+        }
+
+        public synchronized List<AnswerCache.Frame> frames() {
+            return List.copyOf(frames);
+        }
+
+        // 정상 종료: 새 구독을 막고 구독자마다 onDone (각자 대화 기록 저장 + 연결 종료)
+        public void complete(String fullAnswer) {
+            for (Subscriber s : close()) {
+                try {
+                    s.onDone().accept(fullAnswer);
+                } catch (RuntimeException e) {
+                    System.err.println(">>> [SingleFlight] 완료 처리 실패: " + s.requestId() + " " + e.getMessage());
+                }
+            }
+        }
+
+        // 실패: 모아둔 delta 를 내보내고 구독자마다 onError
+        public void fail(Exception error) {
+            for (Subscriber s : close()) {
+                try {
+                    s.sink().end();
+                } catch (Exception ignore) {}
+                s.onError().accept(error);
+            }
+        }
+
+        private List<Subscriber> close() {
+            List<Subscriber> out;
+            synchronized (this) {
+                done = true;
+                out = List.copyOf(subscribers);
+                subscribers.clear();
+            }
+            if (key != null) flights.remove(key, this);
+            for (Subscriber s : out) dropped(s);
+            return out;
+        }
+    }
+}
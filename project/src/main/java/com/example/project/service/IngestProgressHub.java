@@ -0,0 +1,89 @@
+package com.example.project.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// 인덱싱 작업 진행 상황 중계.
+// 파이썬이 보고한 단계(pages_parsed, chunks_embedded, index_written)와 작업 상태 변화를
+// 작업별 최신 값으로 들고 있다가, /documents/jobs/{id}/events 를 구독 중인 SSE 로 바로 전달.
+@Component
+public class IngestProgressHub {
+
+    // jobId -> 마지막 진행 상황
+    private final Map<Long, Map<String, Object>> latest = new ConcurrentHashMap<>();
+    // jobId -> 구독 중인 SSE
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    // 진행 상황 갱신 (파이썬 보고 또는 IngestionService 의 상태 변화)
+    public void report(Long jobId, String stage, Map<String, Object> data) {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("jobId", jobId);
+        progress.put("stage", stage);
+        if (data != null) {
+            data.forEach((k, v) -> {
+                if (!"stage".equals(k)) progress.put(k, v);
+            });
+        }
+        progress.put("at", System.currentTimeMillis());
+        latest.put(jobId, progress);
+        send(jobId, "progress", progress, false);
+    }
+
+    // 작업이 끝남 (SUCCEEDED / FAILED). 구독자에게 마지막 이벤트를 보내고 연결 종료.
+    public void finished(Long jobId, String status, String error) {
+        Map<String, Object> done = new LinkedHashMap<>();
+        done.put("jobId", jobId);
+        done.put("status", status);
+        if (error != null) done.put("error", error);
+        latest.remove(jobId);
+        send(jobId, "done", done, true);
+    }
+
+    public Map<String, Object> latest(Long jobId) {
+        return latest.get(jobId);
+    }
+
+    // 구독. 이미 진행 상황이 있으면 먼저 한 번 보내줌.
+    public SseEmitter subscribe(Long jobId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        List<SseEmitter> list = subscribers.computeIfAbsent(jobId, k -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        Runnable remove = () -> {
+            list.remove(emitter);
+            subscribers.computeIfPresent(jobId, (k, v) -> v.isEmpty() ? null : v);
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        Map<String, Object> current = latest.get(jobId);
+        if (current != null) {
+            try {
+                emitter.send(SseEmitter.event().name("progress").data(current));
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        }
+        return emitter;
+    }
+
+    private void send(Long jobId, String event, Object data, boolean complete) {
+        List<SseEmitter> list = complete ? subscribers.remove(jobId) : subscribers.get(jobId);
+        if (list == null) return;
+        for (SseEmitter emitter : list) {
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data));
+                if (complete) emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package com.example.project.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.project.domain.Document;
+import com.example.project.domain.DocumentStatus;
+import com.example.project.domain.IngestJob;
+import com.example.project.domain.IngestJobStatus;
+import com.example.project.repository.DocumentRepository;
+import com.example.project.repository.IngestJobRepository;
+
+import jakarta.annotation.PreDestroy;
+
+// 문서 인덱싱 작업 전용 처리기.
+// 기존 CompletableFuture.runAsync 는 공용 ForkJoinPool 에서 블로킹 RestTemplate 호출을 제한 없이 돌렸음.
+// - 전용 워커 풀(parallelism)과 제한된 큐(queue-capacity). 큐가 차면 작업은 DB에 QUEUED 로 남고 poller 가 나중에 넣음
+// - 실패 시 지수 백오프로 재시도 (max-attempts 까지)
+// - 가까운 시간(window-ms)에 들어온 작업은 max-size 까지 묶어서 /ingest/batch 한 번으로 처리
+// - 작업 상태를 ingest_jobs 에 저장 -> 재시작 시 PROCESSING 문서를 다시 큐에 넣거나 FAILED 처리
+// - 실행 중(RUNNING) 작업은 lease-ms 마다 updatedAt 을 갱신(lease). 갱신이 끊긴 작업만 다른 노드가 되살림
+//   (롤링 배포 중 살아 있는 노드가 돌리는 작업을 중복 실행하지 않음)
+// - 문서마다 진행 중인 작업은 1개: 이미 QUEUED/RUNNING 작업이 있으면 새로 만들지 않고 그 작업을 돌려줌
+@Service
+public class IngestionService {
+
+    private final IngestJobRepository ingestJobRepository;
+    private final DocumentRepository documentRepository;
+    private final PythonClientService pythonClientService;
+    private final AnswerCache answerCache;
+    private final IngestProgressHub progressHub;
+    private final AppMetrics metrics;
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService poller;
+    // 이 노드에서 큐에 넣었거나 실행 중인 작업 (poller 중복 제출 방지)
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    // 이 노드가 선점(claim)해서 실행 중인 작업 (lease 갱신 대상)
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final long leaseMs;
+    // 같은 문서의 작업 등록이 겹치지 않게 (조회 후 저장 사이)
+    private final Object submitLock = new Object();
+
+    private final int maxAttempts;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final boolean requeueOnStartup;
+
+    // 가까운 시간에 들어온 작업을 묶어서 한 번의 /ingest/batch 호출로 보냄 (임베딩 배치를 크게)
+    private final boolean batchEnabled;
+    private final int batchMaxSize;
+    private final long batchWindowMs;
+    private final List<Long> batchBuffer = new ArrayList<>();
+
+    // jobId -> 작업이 끝났을 때(SUCCEEDED/FAILED) 호출 (일괄 재인덱싱의 동시 실행 제한용)
+    private final Map<Long, Consumer<IngestJob>> terminalListeners = new ConcurrentHashMap<>();
+    private final Map<String, BulkReingest> bulks = new ConcurrentHashMap<>();
+    private final int bulkDefaultConcurrency;
+    private final int bulkMaxConcurrency;
+
+    public IngestionService(IngestJobRepository ingestJobRepository,
+                            DocumentRepository documentRepository,
+                            PythonClientService pythonClientService,
+                            AnswerCache answerCache,
+                            IngestProgressHub progressHub,
+                            AppMetrics metrics,
+                            @Value("${app.ingest.parallelism:2}") int parallelism,
+                            @Value("${app.ingest.queue-capacity:50}") int queueCapacity,
+                            @Value("${app.ingest.max-attempts:3}") int maxAttempts,
+                            @Value("${app.ingest.backoff-base-ms:2000}") long backoffBaseMs,
+                            @Value("${app.ingest.backoff-max-ms:60000}") long backoffMaxMs,
+                            @Value("${app.ingest.poll-interval-ms:5000}") long pollIntervalMs,
+                            @Value("${app.ingest.recover-on-startup:requeue}") String recoverOnStartup,
+                            @Value("${app.ingest.batch.enabled:true}") boolean batchEnabled,
+                            @Value("${app.ingest.batch.max-size:8}") int batchMaxSize,
+                            @Value("${app.ingest.batch.window-ms:300}") long batchWindowMs,
+                            @Value("${app.ingest.bulk.default-concurrency:2}") int bulkDefaultConcurrency,
+                            @Value("${app.ingest.bulk.max-concurrency:8}") int bulkMaxConcurrency,
+                            @Value("${app.ingest.lease-ms:60000}") long leaseMs) {
+        this.ingestJobRepository = ingestJobRepository;
+        this.documentRepository = documentRepository;
+        this.pythonClientService = pythonClientService;
+        this.answerCache = answerCache;
+        this.progressHub = progressHub;
+        this.metrics = metrics;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.requeueOnStartup = "requeue".equalsIgnoreCase(recoverOnStartup);
+        this.batchEnabled = batchEnabled;
+        this.batchMaxSize = batchEnabled ? Math.max(1, batchMaxSize) : 1;
+        this.batchWindowMs = batchWindowMs;
+        this.bulkDefaultConcurrency = Math.max(1, bulkDefaultConcurrency);
+        this.bulkMaxConcurrency = Math.max(1, bulkMaxConcurrency);
+        this.leaseMs = Math.max(1000, leaseMs);
+
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                parallelism, parallelism,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "ingest-worker-" + seq.incrementAndGet()));
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ingest-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        this.poller.scheduleWithFixedDelay(this::pollSafely, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        long renewMs = this.leaseMs / 3;
+        this.poller.scheduleWithFixedDelay(this::renewAndRecover, renewMs, renewMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 문서 인덱싱 작업 등록. 작업은 먼저 DB에 저장되고, 워커 큐에 자리가 있으면 바로 들어감.
+    public IngestJob submit(Document d) {
+        return submitAll(List.of(d)).get(0);
+    }
+
+    // 여러 문서를 한 번에 등록 (다중 업로드). 배치 크기만큼 묶여서 바로 워커 큐로 감.
+    public List<IngestJob> submitAll(List<Document> documents) {
+        return submitAll(documents, null);
+    }
+
+    // onTerminal: 각 작업이 끝났을 때 호출 (큐에 넣기 전에 등록해서 놓치지 않음)
+    private List<IngestJob> submitAll(List<Document> documents, Consumer<IngestJob> onTerminal) {
+        List<IngestJob> jobs = new ArrayList<>();
+        for (Document d : documents) {
+            IngestJob job;
+            synchronized (submitLock) {
+                // 이미 진행 중인 작업이 있으면 그 작업을 돌려줌 (재인덱싱 두 번 클릭 -> 같은 doc_{id} 를 동시에 쓰지 않음)
+                Optional<IngestJob> active = ingestJobRepository.findFirstByDocumentIdAndStatusInOrderByIdDesc(
+                        d.getId(), ACTIVE_STATUSES);
+                if (active.isPresent()) {
+                    job = active.get();
+                    if (onTerminal != null) listenExisting(job.getId(), onTerminal);
+                    System.out.println(">>> [Ingest] 진행 중인 작업 재사용: 문서 " + d.getId() + " job " + job.getId());
+                    jobs.add(job);
+                    continue;
+                }
+                d.setStatus(DocumentStatus.PROCESSING);
+                documentRepository.save(d);
+
+                job = new IngestJob();
+                job.setDocumentId(d.getId());
+                job = ingestJobRepository.save(job);
+            }
+            if (onTerminal != null) terminalListeners.put(job.getId(), onTerminal);
+            progressHub.report(job.getId(), "queued", Map.of("documentId", d.getId()));
+            jobs.add(job);
+        }
+        for (IngestJob job : jobs) {
+            enqueue(job.getId());
+        }
+        return jobs;
+    }
+
+    private static final List<IngestJobStatus> ACTIVE_STATUSES = List.of(IngestJobStatus.QUEUED, IngestJobStatus.RUNNING);
+
+    // 이미 있는 작업에 완료 콜백 추가. 등록 사이에 끝나 버렸으면 바로 호출
+    private void listenExisting(Long jobId, Consumer<IngestJob> onTerminal) {
+        terminalListeners.merge(jobId, onTerminal, (a, b) -> a.andThen(b));
+        ingestJobRepository.findById(jobId)
+                .filter(j -> isTerminal(j.getStatus()))
+                .ifPresent(j -> {
+                    Consumer<IngestJob> listener = terminalListeners.remove(jobId);
+                    if (listener != null) listener.accept(j);
+                });
+    }
+
+    public Optional<IngestJob> findJob(Long jobId) {
+        return ingestJobRepository.findById(jobId);
+    }
+
+    public Map<String, Object> latestProgress(Long jobId) {
+        return progressHub.latest(jobId);
+    }
+
+    // 진행 상황 SSE 구독. 등록 후 DB 상태를 확인해서, 이미 끝난 작업이면 바로 done 을 보내고 닫음.
+    public SseEmitter subscribe(Long jobId) {
+        SseEmitter emitter = progressHub.subscribe(jobId);
+        ingestJobRepository.findById(jobId).ifPresentOrElse(job -> {
+            if (isTerminal(job.getStatus())) {
+                progressHub.finished(jobId, job.getStatus().name(), job.getLastError());
+            }
+        }, () -> progressHub.finished(jobId, "NOT_FOUND", "job not found"));
+        return emitter;
+    }
+
+    // 여러 문서 재인덱싱. 한 번에 concurrency 개까지만 작업을 등록하고, 하나가 끝날 때마다 다음 문서를 넣음.
+    public Map<String, Object> startBulk(List<Document> documents, List<Long> skipped, Integer concurrency) {
+        int limit = concurrency == null ? bulkDefaultConcurrency : Math.max(1, Math.min(concurrency, bulkMaxConcurrency));
+        BulkReingest bulk = new BulkReingest(UUID.randomUUID().toString(), limit, documents, skipped);
+        bulks.put(bulk.id, bulk);
+        pump(bulk);
+        return bulk.toMap();
+    }
+
+    public Optional<Map<String, Object>> findBulk(String bulkId) {
+        return Optional.ofNullable(bulks.get(bulkId)).map(BulkReingest::toMap);
+    }
+
+    private void pump(BulkReingest bulk) {
+        List<Document> next = new ArrayList<>();
+        synchronized (bulk) {
+            while (bulk.active < bulk.concurrency && !bulk.pending.isEmpty()) {
+                next.add(bulk.pending.poll());
+                bulk.active++;
+            }
+        }
+        if (next.isEmpty()) return;
+        try {
+            List<IngestJob> jobs = submitAll(next, job -> onBulkJobDone(bulk, job));
+            synchronized (bulk) {
+                jobs.forEach(j -> bulk.jobIds.add(j.getId()));
+            }
+        } catch (Exception e) {
+            System.err.println(">>> [Ingest] 일괄 재인덱싱 등록 실패: " + e.getMessage());
+            synchronized (bulk) {
+                bulk.active -= next.size();
+                bulk.failed += next.size();
+                bulk.markIfFinished();
+            }
+        }
+    }
+
+    private void onBulkJobDone(BulkReingest bulk, IngestJob job) {
+        synchronized (bulk) {
+            bulk.active--;
+            if (job.getStatus() == IngestJobStatus.SUCCEEDED) bulk.succeeded++;
+            else bulk.failed++;
+            bulk.markIfFinished();
+        }
+        pump(bulk);
+    }
+
+    // 배치 버퍼에 넣기. max-size 가 차면 바로, 아니면 window-ms 뒤에 워커 큐로 넘김.
+    private void enqueue(Long jobId) {
+        if (!inFlight.add(jobId)) {
+            return;
+        }
+        List<Long> ready = null;
+        synchronized (batchBuffer) {
+            batchBuffer.add(jobId);
+            if (batchBuffer.size() >= batchMaxSize) {
+                ready = drainBuffer();
+            } else if (batchBuffer.size() == 1) {
+                poller.schedule(this::flushBuffer, batchWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (ready != null) {
+            dispatch(ready);
+        }
+    }
+
+    private void flushBuffer() {
+        List<Long> ready;
+        synchronized (batchBuffer) {
+            ready = drainBuffer();
+        }
+        if (!ready.isEmpty()) {
+            dispatch(ready);
+        }
+    }
+
+    private List<Long> drainBuffer() {
+        List<Long> ready = new ArrayList<>(batchBuffer);
+        batchBuffer.clear();
+        return ready;
+    }
+
+    // 워커 큐에 배치 하나 넣기. 가득 차면 false (DB에 QUEUED 로 남아 poller 가 다시 시도) = backpressure
+    private boolean dispatch(List<Long> jobIds) {
+        try {
+            workers.execute(() -> {
+                try {
+                    runBatch(jobIds);
+                } finally {
+                    jobIds.forEach(running::remove);
+                    jobIds.forEach(inFlight::remove);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            jobIds.forEach(inFlight::remove);
+            System.out.println(">>> [Ingest] 워커 큐 가득 참, 대기: jobs " + jobIds);
+            return false;
+        }
+    }
+
+    private record Claimed(IngestJob job, Document document) {}
+
+    private void runBatch(List<Long> jobIds) {
+        List<Claimed> claimed = new ArrayList<>();
+        for (Long jobId : jobIds) {
+            // 다른 노드/스레드가 이미 가져간 작업이면 건너뜀
+            if (ingestJobRepository.claim(jobId, LocalDateTime.now()) == 0) continue;
+            running.add(jobId);
+            IngestJob job = ingestJobRepository.findById(jobId).orElse(null);
+            if (job == null) continue;
+
+            Document d = documentRepository.findById(job.getDocumentId()).orElse(null);
+            if (d == null) {
+                // 작업 도중 문서가 삭제됨
+                finish(job, IngestJobStatus.FAILED, "document deleted");
+                continue;
+            }
+            claimed.add(new Claimed(job, d));
+            progressHub.report(jobId, "started", Map.of("documentId", d.getId(), "attempt", job.getAttempts()));
+        }
+        if (claimed.isEmpty()) return;
+        long startedAt = System.nanoTime();
+
+        if (claimed.size() == 1) {
+            Claimed c = claimed.get(0);
+            try {
+                var resp = pythonClientService.ingestDocument(c.document(), c.job().getId());
+                System.out.println(" Python ingest 응답: " + resp);
+                succeed(c);
+                metrics.recordIngest("single", "succeeded", System.nanoTime() - startedAt);
+            } catch (Exception e) {
+                metrics.recordIngest("single", fail(c, e.getMessage()), System.nanoTime() - startedAt);
+            }
+            return;
+        }
+
+        List<Document> docs = claimed.stream().map(Claimed::document).toList();
+        Map<Long, Map<String, Object>> results;
+        try {
+            results = pythonClientService.ingestBatch(docs, claimed.stream().map(c -> c.job().getId()).toList());
+        } catch (Exception e) {
+            for (Claimed c : claimed) {
+                metrics.recordIngest("batch", fail(c, e.getMessage()), System.nanoTime() - startedAt);
+            }
+            return;
+        }
+        System.out.println(" Python ingest 배치 응답: " + docs.size() + "건");
+        // 문서별 결과를 각 Document 상태에 반영
+        for (Claimed c : claimed) {
+            Map<String, Object> r = results.get(c.document().getId());
+            if (r != null && Boolean.TRUE.equals(r.get("ok"))) {
+                succeed(c);
+                metrics.recordIngest("batch", "succeeded", System.nanoTime() - startedAt);
+            } else {
+                String outcome = fail(c, r == null ? "no result in batch response" : String.valueOf(r.get("message")));
+                metrics.recordIngest("batch", outcome, System.nanoTime() - startedAt);
+            }
+        }
+    }
+
+    private void succeed(Claimed c) {
+        Document d = c.document();
+        d.setStatus(DocumentStatus.DONE);
+        documentRepository.save(d);
+        answerCache.invalidateDocument(d.getId());
+        finish(c.job(), IngestJobStatus.SUCCEEDED, null);
+    }
+
+    // 반환값: retrying / failed (지표용)
+    private String fail(Claimed c, String error) {
+        IngestJob job = c.job();
+        System.err.println("Python ingest 호출 실패 (" + job.getAttempts() + "/" + maxAttempts + "): " + error);
+        if (job.getAttempts() < maxAttempts) {
+            retryLater(job, error);
+            return "retrying";
+        }
+        Document d = c.document();
+        d.setStatus(DocumentStatus.FAILED);
+        documentRepository.save(d);
+        finish(job, IngestJobStatus.FAILED, error);
+        return "failed";
+    }
+
+    // 지수 백오프: base * 2^(attempts-1), 최대 backoff-max-ms
+    private void retryLater(IngestJob job, String error) {
+        long delay = Math.min(backoffMaxMs, backoffBaseMs * (1L << Math.min(20, job.getAttempts() - 1)));
+        job.setStatus(IngestJobStatus.QUEUED);
+        job.setLastError(truncate(error));
+        job.setNextAttemptAt(LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(delay)));
+        job.setUpdatedAt(LocalDateTime.now());
+        ingestJobRepository.save(job);
+        Long jobId = job.getId();
+        progressHub.report(jobId, "retrying", Map.of("attempt", job.getAttempts(), "delayMs", delay,
+                "error", job.getLastError() == null ? "" : job.getLastError()));
+        poller.schedule(() -> enqueue(jobId), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void finish(IngestJob job, IngestJobStatus status, String error) {
+        job.setStatus(status);
+        job.setLastError(truncate(error));
+        job.setUpdatedAt(LocalDateTime.now());
+        ingestJobRepository.save(job);
+        if (isTerminal(status)) {
+            progressHub.finished(job.getId(), status.name(), job.getLastError());
+            Consumer<IngestJob> listener = terminalListeners.remove(job.getId());
+            if (listener != null) listener.accept(job);
+        }
+    }
+
+    private static boolean isTerminal(IngestJobStatus status) {
+        return status == IngestJobStatus.SUCCEEDED || status == IngestJobStatus.FAILED;
+    }
+
+    // 실행 시각이 된 QUEUED 작업을 워커 큐 여유만큼 채움 (큐가 찼을 때 밀린 작업, 재시작 후 복구 작업)
+    private void pollSafely() {
+        long now = System.currentTimeMillis();
+        bulks.values().removeIf(b -> b.isFinishedBefore(now - TimeUnit.HOURS.toMillis(1)));
+        try {
+            int room = workers.getQueue().remainingCapacity();
+            if (room <= 0) return;
+            List<IngestJob> due = ingestJobRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                    IngestJobStatus.QUEUED, LocalDateTime.now(), Limit.of(room * batchMaxSize));
+            for (IngestJob job : due) {
+                enqueue(job.getId());
+            }
+        } catch (Exception e) {
+            System.err.println(">>> [Ingest] 대기 작업 조회 실패: " + e.getMessage());
+        }
+    }
+
+    // 이 노드가 실행 중인 작업의 lease 갱신 + lease 가 끊긴(실행하던 노드가 죽은) 작업 되살리기
+    private void renewAndRecover() {
+        try {
+            if (!running.isEmpty()) {
+                ingestJobRepository.renewLeases(List.copyOf(running), LocalDateTime.now());
+            }
+            LocalDateTime staleBefore = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs));
+            for (IngestJob job : ingestJobRepository.findByStatusAndUpdatedAtBeforeOrderByIdAsc(
+                    IngestJobStatus.RUNNING, staleBefore, Limit.of(50))) {
+                recoverStale(job, staleBefore);
+            }
+        } catch (Exception e) {
+            System.err.println(">>> [Ingest] lease 갱신/복구 실패: " + e.getMessage());
+        }
+    }
+
+    // lease 가 끊긴 RUNNING 작업을 다시 큐에(requeue, 시도 횟수가 남았을 때) 또는 FAILED 로.
+    // 조건부 update 라서 원래 노드가 그 사이 lease 를 갱신했거나 다른 노드가 먼저 처리했으면 아무것도 안 함
+    private void recoverStale(IngestJob job, LocalDateTime staleBefore) {
+        if (running.contains(job.getId())) return;
+        boolean retry = requeueOnStartup && job.getAttempts() < maxAttempts;
+        String error = "lease expired (node stopped)";
+        IngestJobStatus next = retry ? IngestJobStatus.QUEUED : IngestJobStatus.FAILED;
+        if (ingestJobRepository.releaseStale(job.getId(), next, error, staleBefore, LocalDateTime.now()) == 0) return;
+
+        if (retry) {
+            System.out.println(">>> [Ingest] lease 만료 작업 다시 큐에 넣음: job " + job.getId());
+            enqueue(job.getId());
+            return;
+        }
+        documentRepository.findById(job.getDocumentId()).ifPresent(d -> {
+            d.setStatus(DocumentStatus.FAILED);
+            documentRepository.save(d);
+        });
+        job.setStatus(IngestJobStatus.FAILED);
+        job.setLastError(error);
+        progressHub.finished(job.getId(), IngestJobStatus.FAILED.name(), error);
+        Consumer<IngestJob> listener = terminalListeners.remove(job.getId());
+        if (listener != null) listener.accept(job);
+        System.out.println(">>> [Ingest] lease 만료 작업 FAILED 처리: job " + job.getId());
+    }
+
+    // 재시작 복구: PROCESSING 에 멈춘 문서를 다시 큐에 넣거나(requeue) FAILED 로 표시(fail).
+    // 모든 노드가 시작할 때 실행되므로 다른 노드가 지금 돌리는 작업(lease 가 살아 있는 RUNNING)은 건드리지 않음
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverStuckDocuments() {
+        LocalDateTime staleBefore = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs));
+        List<Document> stuck = documentRepository.findByStatus(DocumentStatus.PROCESSING);
+        for (Document d : stuck) {
+            Optional<IngestJob> last = ingestJobRepository.findFirstByDocumentIdOrderByIdDesc(d.getId());
+            IngestJob job = last.orElse(null);
+
+            if (job != null && job.getStatus() == IngestJobStatus.QUEUED) {
+                enqueue(job.getId()); // 대기 중인 작업은 그대로 (어느 노드든 선점한 곳이 실행)
+                continue;
+            }
+            if (job != null && job.getStatus() == IngestJobStatus.RUNNING) {
+                // 살아 있는 노드가 실행 중이면 건너뜀. lease 가 끊겼으면 되살림 (끊기기 전이면 주기 복구가 나중에 처리)
+                if (job.getUpdatedAt().isBefore(staleBefore)) recoverStale(job, staleBefore);
+                continue;
+            }
+
+            boolean canRetry = requeueOnStartup
+                    && d.getFilePath() != null && !d.getFilePath().isBlank()
+                    && (job == null || job.getAttempts() < maxAttempts);
+
+            if (!canRetry) {
+                d.setStatus(DocumentStatus.FAILED);
+                documentRepository.save(d);
+                if (job != null && job.getStatus() != IngestJobStatus.SUCCEEDED) {
+                    finish(job, IngestJobStatus.FAILED, "interrupted by restart");
+                }
+                System.out.println(">>> [Ingest] 재시작 복구: 문서 " + d.getId() + " FAILED 처리");
+                continue;
+            }
+
+            // 작업 없이 PROCESSING 에 남은 문서 (작업이 끝난 뒤 문서 상태 저장 전에 죽음 등)
+            submit(d);
+            System.out.println(">>> [Ingest] 재시작 복구: 문서 " + d.getId() + " 다시 큐에 넣음");
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("parallelism", workers.getMaximumPoolSize());
+        m.put("active", workers.getActiveCount());
+        m.put("queued", workers.getQueue().size());
+        m.put("queueRemaining", workers.getQueue().remainingCapacity());
+        m.put("completed", workers.getCompletedTaskCount());
+        m.put("batchMaxSize", batchMaxSize);
+        synchronized (batchBuffer) {
+            m.put("buffered", batchBuffer.size());
+        }
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        workers.shutdown();
+    }
+
+    // 일괄 재인덱싱 진행 상태 (메모리에만 유지. 이미 등록된 작업은 DB 에 있으므로 재시작 후에도 이어서 처리됨)
+    private static final class BulkReingest {
+        final String id;
+        final int concurrency;
+        final Deque<Document> pending;
+        final List<Long> skipped;
+        final List<Long> jobIds = new ArrayList<>();
+        final int total;
+        int active;
+        int succeeded;
+        int failed;
+        long finishedAt;
+
+        BulkReingest(String id, int concurrency, List<Document> documents, List<Long> skipped) {
+            this.id = id;
+            this.concurrency = concurrency;
+            this.pending = new ArrayDeque<>(documents);
+            this.skipped = List.copyOf(skipped);
+            this.total = documents.size();
+            markIfFinished();
+        }
+
+        void markIfFinished() {
+            if (finishedAt == 0 && pending.isEmpty() && active == 0) {
+                finishedAt = System.currentTimeMillis();
+            }
+        }
+
+        synchronized boolean isFinishedBefore(long time) {
+            return finishedAt > 0 && finishedAt < time;
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("bulkId", id);
+            m.put("concurrency", concurrency);
+            m.put("total", total);
+            m.put("pending", pending.size());
+            m.put("active", active);
+            m.put("succeeded", succeeded);
+            m.put("failed", failed);
+            m.put("skipped", skipped);
+            m.put("jobIds", List.copyOf(jobIds));
+            m.put("finished", finishedAt > 0);
+            return m;
+        }
+    }
+
+    private static String truncate(String s) {
+        if (s == null) return null;
+        return s.length() > 1000 ? s.substring(0, 1000) : s;
+    }
+}
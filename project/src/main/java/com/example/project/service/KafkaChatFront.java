@@ -0,0 +1,92 @@
+package com.example.project.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.project.controller.dto.ChatRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// HTTP 프론트 노드 쪽 Kafka 처리 (chat.stream.transport=kafka 일 때만 생성).
+// 1) 요청을 chat-requests 토픽에 발행 (key = requestId)
+// 2) chat-replies 토픽을 노드마다 고유한 group 으로 전부 구독하고, 이 노드가 Emitter를 들고 있는 requestId만 골라 전달
+@Service
+@ConditionalOnProperty(name = "chat.stream.transport", havingValue = "kafka")
+public class KafkaChatFront {
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatEmitterRegistry activeEmitters;
+    private final String requestTopic;
+
+    public KafkaChatFront(KafkaTemplate<String, String> kafkaTemplate,
+                          ObjectMapper objectMapper,
+                          ChatEmitterRegistry activeEmitters,
+                          @Value("${chat.kafka.request-topic:chat-requests}") String requestTopic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.activeEmitters = activeEmitters;
+        this.requestTopic = requestTopic;
+    }
+
+    // [Producer 역할] 요청을 Kafka로 전송
+    public void publish(String requestId, ChatRequest req) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(req);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("ChatRequest 직렬화 실패", e);
+        }
+
+        kafkaTemplate.send(requestTopic, requestId, payload).whenComplete((result, ex) -> {
+            if (ex != null) {
+                System.err.println(">>> [Kafka] 요청 발행 실패: " + requestId + " " + ex.getMessage());
+                fail(requestId, "요청 전송 실패: " + ex.getMessage());
+            }
+        });
+    }
+
+    // 응답 토픽 Consumer. 노드마다 group 이 달라서 모든 노드가 모든 응답을 받고, 자기 Emitter만 처리함.
+    @KafkaListener(topics = "${chat.kafka.reply-topic:chat-replies}",
+            groupId = "chat-front-${chat.kafka.node-id:${random.uuid}}",
+            properties = "auto.offset.reset=latest")
+    public void onReply(String payload) {
+        KafkaStreamFrame frame;
+        try {
+            frame = objectMapper.readValue(payload, KafkaStreamFrame.class);
+        } catch (JsonProcessingException e) {
+            System.err.println(">>> [Kafka] 응답 파싱 실패: " + e.getMessage());
+            return;
+        }
+
+        SseEmitter emitter = activeEmitters.get(frame.getRequestId());
+        if (emitter == null) {
+            return; // 다른 노드의 요청이거나 이미 연결이 끊긴 경우
+        }
+
+        switch (frame.getEvent()) {
+            case "done" -> emitter.complete();
+            case "error" -> fail(frame.getRequestId(), frame.getData());
+            default -> {
+                try {
+                    emitter.send(SseEmitter.event().name(frame.getEvent()).data(frame.getData()));
+                } catch (Exception e) {
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+    }
+
+    private void fail(String requestId, String message) {
+        SseEmitter emitter = activeEmitters.get(requestId);
+        if (emitter == null) return;
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message));
+        } catch (Exception ignore) {}
+        emitter.completeWithError(new RuntimeException(message));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.project.service;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.project.controller.dto.ChatRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// LLM 워커 노드 (chat.kafka.worker-enabled=true 일 때만 생성).
+// chat-requests 를 워커 공용 group 으로 나눠 받아 파이썬을 호출하고,
+// 이벤트를 requestId 를 key 로 chat-replies 에 발행함. HTTP 프론트와 따로 늘리고 줄일 수 있음.
+@Service
+@ConditionalOnProperty(name = "chat.kafka.worker-enabled", havingValue = "true")
+public class KafkaChatWorker {
+
+    private final PythonClientService pythonClientService;
+    private final ChatHistoryService chatHistoryService;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String replyTopic;
+    // delta 를 합쳐서 발행 -> 응답 토픽 메시지 수와 프론트의 send 횟수가 같이 줄어듦
+    private final DeltaCoalescer coalescer;
+
+    public KafkaChatWorker(PythonClientService pythonClientService,
+                           ChatHistoryService chatHistoryService,
+                           KafkaTemplate<String, String> kafkaTemplate,
+                           ObjectMapper objectMapper,
+                           @Value("${chat.kafka.reply-topic:chat-replies}") String replyTopic,
+                           DeltaCoalescer coalescer) {
+        this.pythonClientService = pythonClientService;
+        this.chatHistoryService = chatHistoryService;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.replyTopic = replyTopic;
+        this.coalescer = coalescer;
+    }
+
+    // [Consumer 역할] 한 건이 답변 생성 전체 시간 동안 스레드를 잡으므로 poll 당 1건만 가져옴
+    @KafkaListener(topics = "${chat.kafka.request-topic:chat-requests}",
+            groupId = "${chat.kafka.worker-group:chat-workers}",
+            concurrency = "${chat.kafka.worker-concurrency:3}",
+            properties = {"max.poll.records=1", "max.poll.interval.ms=600000"})
+    public void onRequest(ConsumerRecord<String, String> record) {
+        String requestId = record.key();
+        DeltaCoalescer.CoalescingSink sink = null;
+        try {
+            ChatRequest req = objectMapper.readValue(record.value(), ChatRequest.class);
+            System.out.println(">>> [Kafka] 워커가 Python 서버로 요청 전송 중... " + requestId);
+            sink = coalescer.wrap((event, data) -> reply(requestId, event, data), req.getCoalesceMs());
+            // 레코드 시각 = 프론트가 요청을 발행한 시각 (그 뒤에 삭제된 대화면 저장하지 않음)
+            pythonClientService.forwardSse(req, sink,
+                    (fullAnswer) -> chatHistoryService.saveExchange(req.getQuestion(), fullAnswer, req.getUserId(),
+                            req.getConversationId(), record.timestamp()));
+            reply(requestId, "done", "");
+        } catch (Exception e) {
+            if (sink != null) {
+                try {
+                    sink.close(); // 타이머 정리
+                } catch (Exception ignore) {}
+            }
+            System.err.println(">>> [Kafka] 워커 에러 발생: " + e.getMessage());
+            reply(requestId, "error", String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void reply(String requestId, String event, String data) {
+        try {
+            String payload = objectMapper.writeValueAsString(new KafkaStreamFrame(requestId, event, data));
+            kafkaTemplate.send(replyTopic, requestId, payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("응답 직렬화 실패", e);
+        }
+    }
+}
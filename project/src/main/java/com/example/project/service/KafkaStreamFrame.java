@@ -0,0 +1,26 @@
+package com.example.project.service;
+
+// Kafka 응답 토픽(chat-replies)으로 오가는 메시지. key = requestId.
+// event 는 파이썬 SSE 이벤트 이름 그대로이고, 워커 제어용으로 "done" / "error" 를 추가로 사용.
+public class KafkaStreamFrame {
+    private String requestId;
+    private String event;
+    private String data;
+
+    public KafkaStreamFrame() {}
+
+    public KafkaStreamFrame(String requestId, String event, String data) {
+        this.requestId = requestId;
+        this.event = event;
+        this.data = data;
+    }
+
+    public String getRequestId() { return requestId; }
+    public void setRequestId(String requestId) { this.requestId = requestId; }
+
+    public String getEvent() { return event; }
+    public void setEvent(String event) { this.event = event; }
+
+    public String getData() { return data; }
+    public void setData(String data) { this.data = data; }
+}
@@ -1,60 +1,83 @@
 package com.example.project.service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.example.project.controller.dto.ChatRequest;
 import com.example.project.domain.Document;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
 
 @Service
 public class PythonClientService {
 
-    private final RestTemplate restTemplate;
-    private final String baseUrl;
-    private final ObjectMapper objectMapper; // JSON 파싱용
+    // 커넥션 풀 + 타임아웃 프로필 + 서킷 브레이커/벌크헤드를 가진 파이썬 호출 출입구
+    private final PythonGateway gateway;
+    private final JsonFactory jsonFactory = new JsonFactory(); // delta 의 text 추출용
+    private final AppMetrics metrics;
 
     // 생성자
-    public PythonClientService(RestTemplate restTemplate,
-                              @Value("${python.base-url}") String baseUrl) {
-        this.restTemplate = restTemplate;
-        this.baseUrl = baseUrl;
-        this.objectMapper = new ObjectMapper();
+    public PythonClientService(PythonGateway gateway, AppMetrics metrics) {
+        this.gateway = gateway;
+        this.metrics = metrics;
         }
 
     public Map<String, Object> ingestDocument(Document document) {
-        String url = baseUrl + "/ingest";
+        return ingestDocument(document, null);
+    }
+
+    // jobId 가 있으면 파이썬이 단계별 진행 상황(pages parsed, chunks embedded, index written)을 보고함
+    public Map<String, Object> ingestDocument(Document document, Long jobId) {
 
         PythonIngestRequest req = new PythonIngestRequest(
                 List.of(document.getId()),
                 document.getFilePath(),
-                document.getTitle()
+                document.getTitle(),
+                jobId
         );
 
         // 이게 파이썬 서버로 보내거나 받는 코드. POST역할을 함. url = 목적지, req = 보낼 데이터
         // 즉, 보낸후 응답을 줄때까지 기다리다가 받는 코드를 의미함. 
-        Map<String, Object> response = restTemplate.postForObject(url, req, Map.class);
+        Map<String, Object> response = gateway.postJson(PythonGateway.Profile.INGEST, "/ingest", req, Map.class, document.getId());
         return response;
     }
 
+    // 여러 문서를 한 번의 /ingest/batch 호출로 인덱싱. 결과는 documentId -> 문서별 결과 (ok, message ...)
+    // jobIds 는 documents 와 같은 순서의 작업 id (진행 상황 보고용)
+    public Map<Long, Map<String, Object>> ingestBatch(List<Document> documents, List<Long> jobIds) {
+        List<PythonIngestRequest> items = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Document d = documents.get(i);
+            items.add(new PythonIngestRequest(List.of(d.getId()), d.getFilePath(), d.getTitle(), jobIds.get(i)));
+        }
+
+        Map<String, Object> response = gateway.postJson(PythonGateway.Profile.INGEST, "/ingest/batch", new PythonIngestBatchRequest(items), Map.class,
+                documents.isEmpty() ? null : documents.get(0).getId());
+
+        Map<Long, Map<String, Object>> byDocument = new HashMap<>();
+        Object results = response == null ? null : response.get("results");
+        if (results instanceof List<?> list) {
+            for (Object o : list) {
+                if (!(o instanceof Map<?, ?> r) || !(r.get("document_id") instanceof List<?> ids)) continue;
+                for (Object id : ids) {
+                    byDocument.put(((Number) id).longValue(), (Map<String, Object>) r);
+                }
+            }
+        }
+        return byDocument;
+    }
+
     //파이썬 chat post로 이동.
     public Map<String, Object> chat(List<Long> documentIds, String question, Integer topK, String document_name) {
-    String url = baseUrl + "/chat";
-
     // 파이썬 서버가 document_id를 단일 int로 요구합니다.
     // 리스트에 0이 포함되어 있거나(전체/일반), 리스트가 비어있으면 0으로 설정합니다.
     // 그 외의 경우 첫 번째 문서 ID를 사용합니다.
@@ -65,97 +88,114 @@ public class PythonClientService {
     PythonChatRequest req = new PythonChatRequest(documentId, question, topK == null ? 5 : topK, document_name);
 
     // 파이썬 서버로 요청 url = 파이썬 app.post(), req = 요청 데이터.
-    Map<String, Object> response = restTemplate.postForObject(url, req, Map.class);
+    Map<String, Object> response = gateway.postJson(PythonGateway.Profile.CHAT, "/chat", req, Map.class, documentId == 0L ? null : documentId);
     return response;
     }   
     
     // 그대로 읽어서 vue로 전달 + 완료 시 콜백 호출
     public void forwardSseToClient(ChatRequest req, SseEmitter emitter, Consumer<String> onComplete) throws Exception {
-        // ✅ Python이 GET 방식으로 변경되었으므로, 쿼리 파라미터로 변환
-        // URLEncoder을 사용하여 한국어를 인코딩하여 url에 넣고 전달.
-        String docIds = req.getDocumentIds().toString().replaceAll("[\\[\\] ]", ""); // [1, 2] -> 1,2
-        String q = URLEncoder.encode(req.getQuestion(), StandardCharsets.UTF_8);
-        int topK = (req.getTopK() == null) ? 3 : req.getTopK();
-        String model = req.getModel();
-        String documentName = URLEncoder.encode(req.getDocumentName() == null ? "" : req.getDocumentName(), StandardCharsets.UTF_8);
-        String userId = req.getUserId();
-
+        forwardSse(req, (name, data) -> emitter.send(SseEmitter.event().name(name).data(data)), onComplete);
+    }
 
-        // URL 생성: /chat/stream?docIds=1,2&q=질문&topK=3 여기서 모델을 인식해야함
-        String query = String.format("?docIds=%s&q=%s&topK=%d&model=%s&document_name=%s&user_id=%s", docIds, q, topK, model, documentName,userId);
-        URL url = new URL(baseUrl + "/chat/stream" + query);
-
-        // 파이썬 연결 시키기. 파이썬의 "/chat/stream"로 연결 
-        HttpURLConnection con = (HttpURLConnection) url.openConnection();
-        con.setRequestMethod("GET"); // GET으로 변경
-        con.setRequestProperty("Accept", "text/event-stream"); // 파이썬과 연결 성공.
-
-        // POST Body 전송 코드 삭제 (GET은 Body를 보내지 않음)
-        // try (OutputStream os = con.getOutputStream()) { ... }
-        int code = con.getResponseCode();
-        if (code >= 400) {
-            String err = readAll(con.getErrorStream());
-            throw new RuntimeException("Python SSE error: " + code + " " + err);
-        }
+    // 파이썬 SSE 이벤트를 sink로 전달 (SseEmitter, Kafka 응답 토픽 등) + 완료 시 콜백 호출
+    public void forwardSse(ChatRequest req, StreamEventSink downstream, Consumer<String> onComplete) throws Exception {
+        forwardSse(req, downstream, onComplete, null);
+    }
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8))) {
-            String line;
-            String eventName = "message";
-            StringBuilder dataBuf = new StringBuilder();
-            StringBuilder fullAnswer = new StringBuilder(); // 전체 답변 수집용
-
-            while ((line = br.readLine()) != null) {
-                // SSE는 빈 줄이 "이벤트 끝" 구분자
-                if (line.isEmpty()) {
-                    if (dataBuf.length() > 0) {
-                        String dataStr = dataBuf.toString();
-                        emitter.send(SseEmitter.event().name(eventName).data(dataStr));
-                        
-                        // 답변 내용 수집 (delta 이벤트의 text 필드)
-                        if ("delta".equals(eventName)) {
-                            try {
-                                Map<String, Object> map = objectMapper.readValue(dataStr, Map.class);
-                                if (map.containsKey("text")) {
-                                    fullAnswer.append(map.get("text"));
-                                }
-                            } catch (Exception e) {
-                                // JSON 파싱 실패 시 무시
-                            }
-                        }
-
-                        dataBuf.setLength(0);
-                        eventName = "message";
-                    }
-                    continue;
+    // cancellation: 클라이언트가 떠났을 때 업스트림 연결을 바로 끊고 파이썬에 중단 신호를 보내기 위한 손잡이 (없으면 null)
+    public void forwardSse(ChatRequest req, StreamEventSink downstream, Consumer<String> onComplete,
+                           StreamCancellation cancellation) throws Exception {
+        // TTFT / 토큰 수 / 스트림 시간 계측. 내려보내기 실패(클라이언트 끊김)는 cancelled 로 구분
+        AppMetrics.StreamRecorder recorder = metrics.startStream("blocking", req.getModel());
+        boolean[] clientGone = {false};
+        StreamEventSink sink = new StreamEventSink() {
+            @Override
+            public void send(String name, String data) throws IOException {
+                recorder.onEvent(name);
+                try {
+                    downstream.send(name, data);
+                } catch (IOException | RuntimeException e) {
+                    clientGone[0] = true;
+                    throw e;
                 }
+            }
 
-                if (line.startsWith("event:")) {
-                    eventName = line.substring("event:".length()).trim();
-                } else if (line.startsWith("data:")) {
-                    // 여러 줄 data 지원 위해 누적
-                    String payload = line.substring("data:".length()).trim();
-                    if (dataBuf.length() > 0) dataBuf.append("\n");
-                    dataBuf.append(payload);
+            @Override
+            public void end() throws IOException {
+                try {
+                    downstream.end();
+                } catch (IOException | RuntimeException e) {
+                    clientGone[0] = true;
+                    throw e;
                 }
             }
-            
-            // 스트리밍 종료 후 콜백 호출 (DB 저장용)
-            if (onComplete != null) {
-                onComplete.accept(fullAnswer.toString());
+        };
+
+        // 파이썬 연결 시키기. 파이썬의 "/chat/stream"로 연결 (게이트웨이의 풀링된 커넥션, stream 타임아웃 프로필)
+        String fullAnswerText;
+        try {
+            String query = buildStreamQuery(req) + (cancellation == null ? "" : "&request_id=" + cancellation.upstreamId());
+            fullAnswerText = gateway.stream("/chat/stream" + query, affinityKey(req), body -> relay(body, sink), cancellation);
+            sink.end();
+        } catch (Exception e) {
+            boolean cancelled = cancellation != null && cancellation.isCancelled();
+            recorder.finish(clientGone[0] || cancelled ? "cancelled" : "error");
+            if (cancelled) {
+                metrics.recordStreamCancelled(cancellation.reason());
             }
+            throw e;
+        }
+        recorder.finish("ok");
+
+        // 스트리밍 종료 후 콜백 호출 (DB 저장용)
+        if (onComplete != null) {
+            onComplete.accept(fullAnswerText);
         }
     }
     
-    //에러 발생시. 그 에러 뭐가 문제인지 파악해줌.
-    private String readAll(InputStream is) throws IOException {
-        if (is == null) return "";
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) sb.append(line).append("\n");
-            return sb.toString();
+    // 파이썬 SSE 본문을 이벤트 단위로 잘라 sink 로 전달하고, delta 의 text 를 모은 전체 답변을 반환.
+    // 바이트 단위 증분 파서 + 재사용 버퍼: 토큰마다 줄 String / substring / Map 을 만들지 않음.
+    // data 는 그대로 내려보내고(String 1개), delta 만 JsonParser 로 text 필드를 읽음.
+    String relay(InputStream body, StreamEventSink sink) throws IOException {
+        SseFrameParser parser = new SseFrameParser();
+        StringBuilder fullAnswer = new StringBuilder(); // 전체 답변 수집용
+        SseFrameParser.Listener listener = (event, data, offset, length) -> {
+            sink.send(event, new String(data, offset, length, StandardCharsets.UTF_8));
+            // 답변 내용 수집 (delta 이벤트의 text 필드)
+            if ("delta".equals(event)) {
+                SseFrameParser.appendDeltaText(jsonFactory, data, offset, length, fullAnswer);
+            }
+        };
+
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = body.read(buf)) != -1) {
+            parser.feed(buf, 0, n, listener);
         }
+        return fullAnswer.toString();
+    }
+
+    // 라우팅용 문서 id: 파이썬은 첫 번째 문서의 인덱스를 읽음 (0 = 전체/일반 질문은 친화 노드 없음)
+    static Long affinityKey(ChatRequest req) {
+        List<Long> ids = req.getDocumentIds();
+        if (ids == null || ids.isEmpty() || ids.get(0) == null || ids.get(0) == 0L) return null;
+        return ids.get(0);
     }
 
+    // ✅ Python이 GET 방식으로 변경되었으므로, 쿼리 파라미터로 변환
+    // URLEncoder을 사용하여 한국어를 인코딩하여 url에 넣고 전달.
+    static String buildStreamQuery(ChatRequest req) {
+        String docIds = req.getDocumentIds().toString().replaceAll("[\\[\\] ]", ""); // [1, 2] -> 1,2
+        String q = URLEncoder.encode(req.getQuestion(), StandardCharsets.UTF_8);
+        int topK = (req.getTopK() == null) ? 3 : req.getTopK();
+        String model = req.getModel();
+        String documentName = URLEncoder.encode(req.getDocumentName() == null ? "" : req.getDocumentName(), StandardCharsets.UTF_8);
+        String userId = req.getUserId();
+        // 대화 id: 파이썬이 /chats/history 를 부를 때 그대로 돌려줌 (그 대화의 기록만 프롬프트에)
+        String conversationId = URLEncoder.encode(req.getConversationId() == null ? "" : req.getConversationId(), StandardCharsets.UTF_8);
+
+        // URL 생성: /chat/stream?docIds=1,2&q=질문&topK=3 여기서 모델을 인식해야함
+        return String.format("?docIds=%s&q=%s&topK=%d&model=%s&document_name=%s&user_id=%s&conversation_id=%s", docIds, q, topK, model, documentName,userId,conversationId);
+    }
 
 }
@@ -0,0 +1,258 @@
+package com.example.project.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// 파이썬 워커 여러 대에 대한 라우팅.
+// - 문서 id 가 있으면 일관된 해싱(가상 노드 ring)으로 같은 노드에 보냄 -> 그 노드에 FAISS 인덱스가 이미 올라가 있음
+// - 그 노드가 포화(in-flight >= spill-threshold)면 in-flight 가 가장 적은 노드로 넘김 (spill-over)
+// - 문서 id 가 없으면 least-outstanding-requests
+// - 헬스 체크 실패 또는 서킷 브레이커 OPEN 인 노드는 후보에서 뺌 (모두 빠지면 전체를 후보로)
+public class PythonEndpointPool {
+
+    private static final int VIRTUAL_NODES = 64;
+
+    // 파이썬 노드 1대의 상태
+    public static final class Endpoint {
+        final String baseUrl;
+        final CircuitBreaker breaker;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder totalMs = new LongAdder();
+        final AtomicLong maxMs = new AtomicLong();
+        volatile boolean healthy = true;
+        int consecutiveProbeFailures;
+
+        Endpoint(String baseUrl, int failureThreshold, long openMs) {
+            this.baseUrl = baseUrl;
+            this.breaker = new CircuitBreaker(baseUrl, failureThreshold, openMs);
+        }
+
+        public String baseUrl() { return baseUrl; }
+
+        void finished(long ms, boolean failed) {
+            inFlight.decrementAndGet();
+            calls.increment();
+            totalMs.add(ms);
+            maxMs.accumulateAndGet(ms, Math::max);
+            if (failed) {
+                failures.increment();
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private final TreeMap<Long, Endpoint> ring = new TreeMap<>();
+    private final int spillThreshold;
+    private final int unhealthyAfter;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    public PythonEndpointPool(List<String> baseUrls, int spillThreshold, int unhealthyAfter,
+                              int failureThreshold, long openMs) {
+        if (baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("python endpoint 가 없습니다.");
+        }
+        List<Endpoint> list = new ArrayList<>();
+        for (String url : baseUrls) {
+            Endpoint e = new Endpoint(url, failureThreshold, openMs);
+            list.add(e);
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                ring.put(hash(url + "#" + v), e);
+            }
+        }
+        this.endpoints = List.copyOf(list);
+        this.spillThreshold = spillThreshold;
+        this.unhealthyAfter = Math.max(1, unhealthyAfter);
+    }
+
+    public List<Endpoint> endpoints() { return endpoints; }
+
+    // 노드 선택 + in-flight 증가. 서킷 브레이커가 허락한 노드만 반환. 없으면 null
+    public Endpoint acquire(Long affinityKey) {
+        List<Endpoint> candidates = new ArrayList<>();
+        for (Endpoint e : endpoints) {
+            if (e.healthy && e.breaker.isAvailable()) candidates.add(e);
+        }
+        if (candidates.isEmpty()) {
+            // 헬스 체크가 전부 실패 중이어도 브레이커가 허락하면 시도 (프로브보다 실제 호출이 더 정확)
+            for (Endpoint e : endpoints) {
+                if (e.breaker.isAvailable()) candidates.add(e);
+            }
+        }
+
+        List<Endpoint> order = new ArrayList<>(candidates.size());
+        Endpoint home = affinityKey == null ? null : home(affinityKey, candidates);
+        if (home != null && home.inFlight.get() < spillThreshold) {
+            order.add(home);
+        }
+        // least-outstanding 순. 같으면 라운드로빈으로 시작점을 돌려서 한 노드로 몰리지 않게
+        int offset = candidates.isEmpty() ? 0 : Math.floorMod(roundRobin.getAndIncrement(), candidates.size());
+        List<Endpoint> rotated = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            rotated.add(candidates.get((offset + i) % candidates.size()));
+        }
+        rotated.sort(Comparator.comparingInt(e -> e.inFlight.get()));
+        for (Endpoint e : rotated) {
+            if (!order.contains(e)) order.add(e);
+        }
+
+        for (Endpoint e : order) {
+            if (e.breaker.allowRequest()) {
+                e.inFlight.incrementAndGet();
+                return e;
+            }
+        }
+        return null;
+    }
+
+    // 호출을 시작하지 않고 돌려줄 때 (벌크헤드 거절 등)
+    public void release(Endpoint e) {
+        e.inFlight.decrementAndGet();
+        e.breaker.release();
+    }
+
+    // ring 에서 affinityKey 위치부터 시계 방향으로 첫 후보 노드
+    private Endpoint home(Long affinityKey, List<Endpoint> candidates) {
+        if (candidates.isEmpty()) return null;
+        long h = hash("doc_" + affinityKey);
+        for (Endpoint e : ring.tailMap(h, true).values()) {
+            if (candidates.contains(e)) return e;
+        }
+        for (Endpoint e : ring.headMap(h, false).values()) {
+            if (candidates.contains(e)) return e;
+        }
+        return null;
+    }
+
+    // 헬스 체크 결과 반영. unhealthyAfter 번 연속 실패하면 후보에서 빠지고, 한 번 성공하면 복귀
+    public void probeResult(Endpoint e, boolean ok) {
+        synchronized (e) {
+            if (ok) {
+                e.consecutiveProbeFailures = 0;
+                if (!e.healthy) System.out.println(">>> [Python] 노드 복귀: " + e.baseUrl);
+                e.healthy = true;
+            } else if (++e.consecutiveProbeFailures >= unhealthyAfter) {
+                if (e.healthy) System.out.println(">>> [Python] 노드 제외 (헬스 체크 실패): " + e.baseUrl);
+                e.healthy = false;
+            }
+        }
+    }
+
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Endpoint e : endpoints) {
+            long calls = e.calls.sum();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("baseUrl", e.baseUrl);
+            m.put("healthy", e.healthy);
+            m.put("breaker", e.breaker.state().name().toLowerCase());
+            m.put("inFlight", e.inFlight.get());
+            m.put("calls", calls);
+            m.put("failures", e.failures.sum());
+            m.put("avgMs", calls == 0 ? 0 : e.totalMs.sum() / calls);
+            m.put("maxMs", e.maxMs.get());
+            list.add(m);
+        }
+        return list;
+    }
+
+    private static long hash(String s) {
+        try {
+            byte[] d = MessageDigest.getInstance("MD5").digest(s.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (d[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            return Arrays.hashCode(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // 연속 실패 횟수 기반 서킷 브레이커 (노드별).
+    // CLOSED -> (연속 실패 threshold) -> OPEN -> (open-ms 경과) -> HALF_OPEN (시험 호출 1건) -> 성공 CLOSED / 실패 OPEN
+    static final class CircuitBreaker {
+        enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final String name;
+        private final int failureThreshold;
+        private final long openMs;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        CircuitBreaker(String name, int failureThreshold, long openMs) {
+            this.name = name;
+            this.failureThreshold = failureThreshold;
+            this.openMs = openMs;
+        }
+
+        // 상태를 바꾸지 않고 지금 호출 가능해 보이는지만 확인 (후보 고르기용)
+        synchronized boolean isAvailable() {
+            return switch (state) {
+                case CLOSED -> true;
+                case OPEN -> System.currentTimeMillis() - openedAt >= openMs;
+                case HALF_OPEN -> !trialInFlight;
+            };
+        }
+
+        synchronized boolean allowRequest() {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs) {
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+            if (state == State.OPEN) return false;
+            if (state == State.HALF_OPEN) {
+                if (trialInFlight) return false;
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        // 호출을 시작하지 않고 돌려줄 때 (벌크헤드 거절)
+        synchronized void release() {
+            if (state == State.HALF_OPEN) trialInFlight = false;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                System.out.println(">>> [Python] 서킷 브레이커 CLOSED: " + name);
+            }
+            state = State.CLOSED;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                if (state != State.OPEN) {
+                    System.out.println(">>> [Python] 서킷 브레이커 OPEN (" + openMs + "ms): " + name);
+                }
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+                trialInFlight = false;
+            }
+        }
+
+        synchronized State state() {
+            return state;
+        }
+    }
+}
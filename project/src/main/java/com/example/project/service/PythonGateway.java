@@ -0,0 +1,450 @@
+package com.example.project.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.NoHttpResponseException;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+// 파이썬 백엔드로 가는 모든 HTTP 호출의 단일 출입구.
+// - keep-alive 커넥션 풀 (전체 / 라우트별 상한). 호출마다 TCP 연결을 새로 만들지 않음
+// - 용도별 타임아웃 프로필 (chat / ingest / stream)
+// - 프로필별 벌크헤드(동시 호출 상한): 인덱싱이 몰려도 채팅 슬롯을 다 먹지 않음
+// - 서킷 브레이커(노드별): 연속 실패가 쌓이면 open-ms 동안 바로 실패 -> 멈춘 파이썬 때문에 스레드가 쌓이지 않음
+// - 파이썬 노드 여러 대: PythonEndpointPool 이 헬스 체크 / 문서 친화 라우팅 / least-outstanding 으로 노드 선택
+// - 프로필별 호출 수 / 실패 / 거절 / 지연 통계
+@Service
+public class PythonGateway {
+
+    public enum Profile { CHAT, INGEST, STREAM }
+
+    // 스트림 본문 처리기. 반환값은 stream() 의 반환값이 됨
+    @FunctionalInterface
+    public interface StreamHandler<T> {
+        T handle(InputStream body) throws Exception;
+    }
+
+    private static final class ProfileState {
+        final Profile profile;
+        final RequestConfig requestConfig;
+        final Semaphore bulkhead;
+        final int maxConcurrent;
+        final long readTimeoutMs;
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder shortCircuited = new LongAdder();
+        final LongAdder totalMs = new LongAdder();
+        final AtomicLong maxMs = new AtomicLong();
+
+        ProfileState(Profile profile, long readTimeoutMs, long poolWaitMs, int maxConcurrent) {
+            this.profile = profile;
+            this.maxConcurrent = maxConcurrent;
+            this.readTimeoutMs = readTimeoutMs;
+            this.bulkhead = new Semaphore(maxConcurrent);
+            this.requestConfig = RequestConfig.custom()
+                    .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                    .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolWaitMs))
+                    .build();
+        }
+    }
+
+    // 호출 1건. 벌크헤드 슬롯을 잡고 있다가 success/failure 에서 반납 + 통계 기록 (여러 번 불러도 1번만 반영)
+    public final class Call {
+        private final ProfileState state;
+        private final PythonEndpointPool.Endpoint endpoint;
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Call(ProfileState state, PythonEndpointPool.Endpoint endpoint) {
+            this.state = state;
+            this.endpoint = endpoint;
+        }
+
+        // 이 호출이 갈 파이썬 노드 주소
+        public String baseUrl() { return endpoint.baseUrl(); }
+
+        public void success() {
+            if (!done.compareAndSet(false, true)) return;
+            record(false);
+        }
+
+        public void failure(Throwable error) {
+            if (!done.compareAndSet(false, true)) return;
+            state.failures.increment();
+            record(true);
+            System.err.println(">>> [Python] " + state.profile + " 호출 실패 (" + endpoint.baseUrl() + "): " + error.getMessage());
+        }
+
+        private void record(boolean failed) {
+            state.bulkhead.release();
+            long nanos = System.nanoTime() - startedAt;
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            metrics.recordPythonCall(state.profile.name().toLowerCase(), endpoint.baseUrl(), failed ? "error" : "ok", nanos);
+            endpoint.finished(ms, failed);
+            state.calls.increment();
+            state.totalMs.add(ms);
+            state.maxMs.accumulateAndGet(ms, Math::max);
+        }
+    }
+
+    private final PythonEndpointPool endpointPool;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Profile, ProfileState> profiles = new EnumMap<>(Profile.class);
+    private final long bulkheadWaitMs;
+    private final RequestConfig healthConfig;
+    private final ScheduledExecutorService healthProber;
+    private final AppMetrics metrics;
+
+    public PythonGateway(@Value("${python.base-url}") String baseUrl,
+                         @Value("${python.endpoints:}") String endpoints,
+                         @Value("${python.routing.spill-threshold:8}") int spillThreshold,
+                         @Value("${python.health.path:/health}") String healthPath,
+                         @Value("${python.health.interval-ms:5000}") long healthIntervalMs,
+                         @Value("${python.health.timeout-ms:1000}") long healthTimeoutMs,
+                         @Value("${python.health.unhealthy-after:2}") int unhealthyAfter,
+                         @Value("${python.http.max-total:100}") int maxTotal,
+                         @Value("${python.http.max-per-route:50}") int maxPerRoute,
+                         @Value("${python.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+                         @Value("${python.http.pool-wait-ms:2000}") long poolWaitMs,
+                         @Value("${python.http.bulkhead-wait-ms:0}") long bulkheadWaitMs,
+                         @Value("${python.http.chat.read-timeout-ms:60000}") long chatReadTimeoutMs,
+                         @Value("${python.http.chat.max-concurrent:20}") int chatMaxConcurrent,
+                         @Value("${python.http.ingest.read-timeout-ms:600000}") long ingestReadTimeoutMs,
+                         @Value("${python.http.ingest.max-concurrent:4}") int ingestMaxConcurrent,
+                         @Value("${python.http.stream.read-timeout-ms:120000}") long streamReadTimeoutMs,
+                         @Value("${python.http.stream.max-concurrent:50}") int streamMaxConcurrent,
+                         @Value("${python.http.breaker.failure-threshold:5}") int failureThreshold,
+                         @Value("${python.http.breaker.open-ms:10000}") long openMs,
+                         AppMetrics metrics) {
+        this.bulkheadWaitMs = bulkheadWaitMs;
+        this.metrics = metrics;
+
+        // python.endpoints 가 비어 있으면 기존처럼 python.base-url 한 대
+        List<String> urls = new ArrayList<>();
+        for (String url : (endpoints == null || endpoints.isBlank() ? baseUrl : endpoints).split(",")) {
+            String u = url.trim();
+            if (u.endsWith("/")) u = u.substring(0, u.length() - 1);
+            if (!u.isEmpty()) urls.add(u);
+        }
+        this.endpointPool = new PythonEndpointPool(urls, spillThreshold, unhealthyAfter, failureThreshold, openMs);
+
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(1))
+                        .build())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(TimeValue.ofSeconds(4)) // uvicorn keep-alive(5s) 보다 짧게
+                .disableAutomaticRetries()
+                .build();
+
+        profiles.put(Profile.CHAT, new ProfileState(Profile.CHAT, chatReadTimeoutMs, poolWaitMs, chatMaxConcurrent));
+        profiles.put(Profile.INGEST, new ProfileState(Profile.INGEST, ingestReadTimeoutMs, poolWaitMs, ingestMaxConcurrent));
+        profiles.put(Profile.STREAM, new ProfileState(Profile.STREAM, streamReadTimeoutMs, poolWaitMs, streamMaxConcurrent));
+
+        this.healthConfig = RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(healthTimeoutMs))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(healthTimeoutMs))
+                .build();
+        this.healthProber = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "python-health");
+            t.setDaemon(true);
+            return t;
+        });
+        if (healthIntervalMs > 0) {
+            healthProber.scheduleWithFixedDelay(() -> probeAll(healthPath), healthIntervalMs, healthIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // 노드별 헬스 체크 (GET /health, 200 이면 정상). 호출 통계/브레이커와는 별개
+    private void probeAll(String healthPath) {
+        for (PythonEndpointPool.Endpoint e : endpointPool.endpoints()) {
+            HttpGet get = new HttpGet(e.baseUrl() + healthPath);
+            get.setConfig(healthConfig);
+            // 프로브는 드물게 도는 호출이라 keep-alive 재사용 시 닫힌 커넥션에 걸리기 쉬움 -> 매번 새 커넥션
+            get.setHeader("Connection", "close");
+            boolean ok;
+            try {
+                ok = httpClient.execute(get, response -> {
+                    EntityUtils.consume(response.getEntity());
+                    return response.getCode() == 200;
+                });
+            } catch (Exception ex) {
+                ok = false;
+            }
+            endpointPool.probeResult(e, ok);
+        }
+    }
+
+    public long readTimeoutMs(Profile profile) { return profiles.get(profile).readTimeoutMs; }
+
+    // 풀링된 클라이언트 (RestTemplate 등 다른 용도에서도 같은 풀을 쓰도록)
+    public CloseableHttpClient httpClient() { return httpClient; }
+
+    public Call begin(Profile profile) {
+        return begin(profile, null);
+    }
+
+    // 노드 선택(서킷 브레이커 포함) + 벌크헤드 통과 후 Call 반환. 막히면 PythonGatewayException (바로 실패)
+    // affinityKey: 문서 id (같은 문서는 가능하면 같은 노드로). 없으면 null
+    public Call begin(Profile profile, Long affinityKey) {
+        ProfileState state = profiles.get(profile);
+        PythonEndpointPool.Endpoint endpoint = endpointPool.acquire(affinityKey);
+        if (endpoint == null) {
+            state.shortCircuited.increment();
+            metrics.recordPythonRejected(profile.name().toLowerCase(), "circuit_open");
+            throw new PythonGatewayException("circuit_open", "No available Python backend (all circuits open)");
+        }
+        boolean acquired;
+        try {
+            acquired = bulkheadWaitMs <= 0
+                    ? state.bulkhead.tryAcquire()
+                    : state.bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            endpointPool.release(endpoint); // half-open 시험 호출 자리를 잡았다면 돌려줌
+            state.rejected.increment();
+            metrics.recordPythonRejected(profile.name().toLowerCase(), "bulkhead_full");
+            throw new PythonGatewayException("bulkhead_full", "Too many concurrent " + profile + " calls to Python backend");
+        }
+        return new Call(state, endpoint);
+    }
+
+    // JSON POST. 2xx 면 응답 JSON 을 type 으로 변환
+    public <T> T postJson(Profile profile, String path, Object body, Class<T> type) {
+        return postJson(profile, path, body, type, null);
+    }
+
+    public <T> T postJson(Profile profile, String path, Object body, Class<T> type, Long affinityKey) {
+        Call call = begin(profile, affinityKey);
+        HttpPost post = new HttpPost(call.baseUrl() + path);
+        post.setConfig(profiles.get(profile).requestConfig);
+        try {
+            post.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(body), ContentType.APPLICATION_JSON));
+            HttpClientResponseHandler<T> handler = response -> {
+                checkStatus(response);
+                return objectMapper.readValue(response.getEntity().getContent(), type);
+            };
+            T result;
+            try {
+                result = httpClient.execute(post, handler);
+            } catch (NoHttpResponseException stale) {
+                // 서버가 이미 닫은 keep-alive 커넥션을 재사용했을 수도 있지만, 요청을 처리한 뒤 응답 전에 끊겼을 수도 있음.
+                // 다시 보내도 되는 호출(CHAT: 답변 생성만, 저장 없음)만 한 번 더 보냄. INGEST 는 두 번 색인될 수 있으므로
+                // 그대로 실패 -> 작업 재시도(백오프)에 맡김. 오래 쉰 커넥션은 validateAfterInactivity / evictIdle 이 먼저 걸러냄
+                if (!isIdempotent(profile)) throw stale;
+                result = httpClient.execute(post, handler);
+            }
+            call.success();
+            return result;
+        } catch (PythonGatewayException e) {
+            settle(call, e);
+            throw e;
+        } catch (IOException e) {
+            call.failure(e);
+            throw new PythonGatewayException("io_error", profile + " call to " + call.baseUrl() + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isIdempotent(Profile profile) {
+        return profile == Profile.CHAT;
+    }
+
+    // GET 스트림 (text/event-stream). handler 가 본문을 다 읽을 때까지 커넥션/슬롯을 잡고 있음.
+    // 업스트림 읽기 중 오류만 실패로 셈 (handler 쪽 오류, 예: 클라이언트 끊김은 파이썬 탓이 아님)
+    public <T> T stream(String pathAndQuery, Long affinityKey, StreamHandler<T> handler) throws Exception {
+        return stream(pathAndQuery, affinityKey, handler, null);
+    }
+
+    // cancellation 이 있으면 밖에서 연결을 끊을 수 있음 (클라이언트가 떠났을 때). 끊긴 뒤에는 같은 노드에 취소 신호를 보냄
+    public <T> T stream(String pathAndQuery, Long affinityKey, StreamHandler<T> handler,
+                        StreamCancellation cancellation) throws Exception {
+        Call call = begin(Profile.STREAM, affinityKey);
+        HttpGet get = new HttpGet(call.baseUrl() + pathAndQuery);
+        get.setConfig(profiles.get(Profile.STREAM).requestConfig);
+        get.setHeader("Accept", "text/event-stream");
+        ClassicHttpResponse response = null;
+        UpstreamInputStream upstream = null;
+        if (cancellation != null) {
+            cancellation.bind(get::cancel);
+        }
+        try {
+            response = httpClient.executeOpen(HttpHost.create(get.getUri()), get, null);
+            checkStatus(response);
+            upstream = new UpstreamInputStream(response.getEntity().getContent());
+            T result = handler.handle(upstream);
+            call.success();
+            response.close(); // 본문을 끝까지 읽었으므로 커넥션은 풀로 반납
+            return result;
+        } catch (PythonGatewayException e) {
+            settle(call, e);
+            closeQuietly(response);
+            throw e;
+        } catch (Exception e) {
+            boolean cancelled = cancellation != null && cancellation.isCancelled();
+            if (!cancelled && (upstream == null || upstream.failed)) {
+                call.failure(e); // 우리가 끊은 것은 파이썬 실패로 세지 않음 (서킷 브레이커에 반영 안 함)
+            } else {
+                call.success();
+            }
+            // 중간에 끊긴 경우: 남은 본문을 기다리지 않도록 커넥션을 버림 (풀에 반납하면 남은 바이트를 다 읽음)
+            get.abort();
+            closeQuietly(response);
+            if (cancelled) {
+                signalCancel(call.baseUrl(), cancellation.upstreamId());
+            }
+            throw e;
+        }
+    }
+
+    // 파이썬에 생성 중단 신호 (연결 끊김만으로는 다음 토큰을 보낼 때까지 모를 수 있음). 실패해도 무시
+    private void signalCancel(String baseUrl, String upstreamId) {
+        HttpPost post = new HttpPost(baseUrl + "/chat/cancel?request_id=" + upstreamId);
+        post.setConfig(healthConfig);
+        try {
+            httpClient.execute(post, response -> {
+                EntityUtils.consumeQuietly(response.getEntity());
+                return null;
+            });
+        } catch (IOException e) {
+            System.err.println(">>> [Gateway] 취소 신호 실패: " + baseUrl + " " + e.getMessage());
+        }
+    }
+
+    // 상태 코드 검사. 4xx 는 요청 문제(파이썬은 정상), 5xx 는 실패로 셈
+    private void checkStatus(ClassicHttpResponse response) throws IOException {
+        int code = response.getCode();
+        if (code >= 400) {
+            String err = "";
+            try {
+                if (response.getEntity() != null) err = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            } catch (ParseException e) {
+                // 본문 없이 상태 코드만 사용
+            }
+            throw new PythonGatewayException(code >= 500 ? "server_error" : "client_error",
+                    "Python error: " + code + " " + err, code);
+        }
+    }
+
+    private void settle(Call call, PythonGatewayException e) {
+        if (e.getStatus() >= 400 && e.getStatus() < 500) call.success();
+        else call.failure(e);
+    }
+
+    private static void closeQuietly(ClassicHttpResponse response) {
+        if (response == null) return;
+        try {
+            response.close();
+        } catch (IOException ignored) {
+            // 이미 닫힘
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("endpoints", endpointPool.stats());
+        PoolStats pool = connectionManager.getTotalStats();
+        Map<String, Object> p = new LinkedHashMap<>();
+        p.put("leased", pool.getLeased());
+        p.put("available", pool.getAvailable());
+        p.put("pending", pool.getPending());
+        p.put("max", pool.getMax());
+        m.put("pool", p);
+        for (ProfileState s : profiles.values()) {
+            long calls = s.calls.sum();
+            Map<String, Object> ps = new LinkedHashMap<>();
+            ps.put("inFlight", s.maxConcurrent - s.bulkhead.availablePermits());
+            ps.put("maxConcurrent", s.maxConcurrent);
+            ps.put("calls", calls);
+            ps.put("failures", s.failures.sum());
+            ps.put("rejected", s.rejected.sum());
+            ps.put("shortCircuited", s.shortCircuited.sum());
+            ps.put("avgMs", calls == 0 ? 0 : s.totalMs.sum() / calls);
+            ps.put("maxMs", s.maxMs.get());
+            m.put(s.profile.name().toLowerCase(), ps);
+        }
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        healthProber.shutdownNow();
+        httpClient.close();
+    }
+
+    // 업스트림 읽기 오류를 표시하는 래퍼
+    private static final class UpstreamInputStream extends FilterInputStream {
+        volatile boolean failed;
+
+        UpstreamInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return in.read(b, off, len);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+}
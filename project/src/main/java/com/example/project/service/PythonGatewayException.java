@@ -0,0 +1,30 @@
+package com.example.project.service;
+
+// 파이썬 게이트웨이 호출 실패.
+// reason: circuit_open / bulkhead_full / io_error / server_error / client_error
+public class PythonGatewayException extends RuntimeException {
+
+    private final String reason;
+    private final int status;
+
+    public PythonGatewayException(String reason, String message) {
+        this(reason, message, 0);
+    }
+
+    public PythonGatewayException(String reason, String message, int status) {
+        super(message);
+        this.reason = reason;
+        this.status = status;
+    }
+
+    public PythonGatewayException(String reason, String message, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+        this.status = 0;
+    }
+
+    public String getReason() { return reason; }
+
+    // 파이썬이 돌려준 HTTP 상태 코드 (응답을 못 받았으면 0)
+    public int getStatus() { return status; }
+}
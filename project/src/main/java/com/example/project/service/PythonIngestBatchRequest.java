@@ -0,0 +1,15 @@
+package com.example.project.service;
+
+import java.util.List;
+
+// 파이썬 /ingest/batch 요청. 문서별 PythonIngestRequest 를 묶어서 한 번에 보냄.
+public class PythonIngestBatchRequest {
+    private List<PythonIngestRequest> items;
+
+    public PythonIngestBatchRequest(List<PythonIngestRequest> items) {
+        this.items = items;
+    }
+
+    public List<PythonIngestRequest> getItems() {return items;}
+    public void setItems(List<PythonIngestRequest> items) {this.items = items;}
+}
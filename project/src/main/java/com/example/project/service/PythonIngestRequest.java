@@ -6,6 +6,8 @@ public class PythonIngestRequest {
     private List<Long> document_id;
     private String file_path;
     private String title;
+    // 진행 상황 보고용 작업 id (파이썬이 /documents/jobs/{job_id}/progress 로 알려줌). 없으면 보고 안 함
+    private Long job_id;
 
     public PythonIngestRequest(List<Long> documentId, String filePath, String title) {
         this.document_id = documentId;
@@ -15,6 +17,11 @@ public class PythonIngestRequest {
 
     }
 
+    public PythonIngestRequest(List<Long> documentId, String filePath, String title, Long jobId) {
+        this(documentId, filePath, title);
+        this.job_id = jobId;
+    }
+
     public List<Long> getDocument_id() {return document_id;}
     public void setDocument_id(List<Long> document_id) {this.document_id = document_id;}
 
@@ -23,4 +30,7 @@ public class PythonIngestRequest {
 
     public String getTitle() {return title;}
     public void setTitle(String title) {this.title = title;}
+
+    public Long getJob_id() {return job_id;}
+    public void setJob_id(Long job_id) {this.job_id = job_id;}
 }
@@ -0,0 +1,123 @@
+package com.example.project.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.example.project.controller.dto.ChatRequest;
+import com.fasterxml.jackson.core.JsonFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+// 파이썬 /chat/stream 을 논블로킹(WebClient)으로 중계.
+// 스트림마다 스레드를 잡지 않으므로, 열려 있지만 조용한 스트림을 노드당 수천 개까지 유지할 수 있음.
+// 업스트림 이벤트의 data 바이트는 String으로 바꾸지 않고 그대로 내려보냄.
+@Service
+public class ReactivePythonClientService {
+
+    // 여러 줄 data 는 "\ndata:" 로 이어 붙여, 내려보낼 때 그대로 여러 data 줄이 되게 함
+    private static final byte[] DATA_JOIN = "\ndata:".getBytes(StandardCharsets.US_ASCII);
+
+    private final WebClient webClient;
+    // 서킷 브레이커 / 스트림 벌크헤드 / 통계는 블로킹 경로와 같은 게이트웨이를 공유
+    private final PythonGateway gateway;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final AppMetrics metrics;
+
+    public ReactivePythonClientService(WebClient.Builder webClientBuilder, PythonGateway gateway, AppMetrics metrics) {
+        this.webClient = webClientBuilder.build();
+        this.gateway = gateway;
+        this.metrics = metrics;
+    }
+
+    // 업스트림 이벤트를 그대로 흘려보내고, 끝나면 delta의 text를 모은 전체 답변으로 onComplete 호출 (DB 저장용)
+    public Flux<ServerSentEvent<byte[]>> streamChat(ChatRequest req, Consumer<String> onComplete) {
+        String query = "/chat/stream" + PythonClientService.buildStreamQuery(req);
+
+        return Flux.defer(() -> {
+            PythonGateway.Call call;
+            try {
+                call = gateway.begin(PythonGateway.Profile.STREAM, PythonClientService.affinityKey(req));
+            } catch (PythonGatewayException e) {
+                return Flux.error(e);
+            }
+
+            Flux<DataBuffer> body = webClient.get()
+                .uri(URI.create(call.baseUrl() + query))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, resp -> resp.bodyToMono(String.class)
+                        .defaultIfEmpty("")
+                        .map(err -> new RuntimeException("Python SSE error: " + resp.statusCode().value() + " " + err)))
+                .bodyToFlux(DataBuffer.class)
+                // stream 타임아웃 프로필: 업스트림이 이 시간 동안 아무것도 안 보내면 실패
+                .timeout(Duration.ofMillis(gateway.readTimeoutMs(PythonGateway.Profile.STREAM)));
+
+            // 구독(스트림)마다 독립된 상태 (파서 + 재사용 버퍼)
+            SseFrameParser parser = new SseFrameParser(DATA_JOIN);
+            byte[] chunk = new byte[8192];
+            StringBuilder fullAnswer = new StringBuilder(); // 전체 답변 수집용
+            AppMetrics.StreamRecorder recorder = metrics.startStream("reactive", req.getModel());
+
+            Flux<ServerSentEvent<byte[]>> events = body.concatMapIterable(buf -> {
+                List<ServerSentEvent<byte[]>> out = new ArrayList<>(2);
+                try {
+                    while (buf.readableByteCount() > 0) {
+                        int n = Math.min(chunk.length, buf.readableByteCount());
+                        buf.read(chunk, 0, n);
+                        parser.feed(chunk, 0, n, (event, data, offset, length) -> {
+                            // 답변 내용 수집은 파서 버퍼에서 바로 (복사본 없이)
+                            if ("delta".equals(event)) {
+                                SseFrameParser.appendDeltaText(jsonFactory, data, offset, length, fullAnswer);
+                            }
+                            out.add(ServerSentEvent.builder(Arrays.copyOfRange(data, offset, offset + length)).event(event).build());
+                        });
+                    }
+                    return out;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    DataBufferUtils.release(buf);
+                }
+            }).doOnNext(event -> recorder.onEvent(event.event()))
+                    .doOnError(call::failure)
+                    .doFinally(signal -> recorder.finish(outcome(signal)));
+
+            // 스트리밍 종료 후 콜백 호출 (JPA 저장은 블로킹이므로 boundedElastic에서)
+            Mono<ServerSentEvent<byte[]>> complete = Mono.<Void>fromRunnable(() -> {
+                if (onComplete != null) {
+                    onComplete.accept(fullAnswer.toString());
+                }
+            }).subscribeOn(Schedulers.boundedElastic()).then(Mono.empty());
+
+            // 업스트림 오류가 아니면(정상 종료, 클라이언트 끊김) 성공으로 반납
+            return events.concatWith(complete).doFinally(signal -> call.success());
+        });
+    }
+
+    // 지표용 결과: 정상 종료 / 클라이언트가 먼저 끊음 / 오류
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> "ok";
+            case CANCEL -> "cancelled";
+            default -> "error";
+        };
+    }
+}
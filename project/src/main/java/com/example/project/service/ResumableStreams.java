@@ -0,0 +1,395 @@
+package com.example.project.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+
+// 재연결 가능한 SSE 스트림 (로컬 모드 /chats/stream).
+// 내려보내는 이벤트마다 "<requestId>:<순번>" id 를 붙이고, 요청별 버퍼(buffer-events / buffer-bytes 한도, 넘치면 오래된 것부터 버림)에 보관.
+// 브라우저 연결이 잠깐 끊겨도 생성은 계속 돌고, grace-ms 안에 /chats/stream/resume?requestId=..(+ Last-Event-ID) 로 다시 붙으면
+// 그 id 이후 이벤트를 재생한 뒤 이어서 받음. 이미 끝난 스트림도 grace-ms 동안은 버퍼에서 재생.
+// id 에 requestId 가 들어 있어서 브라우저 EventSource 가 같은 URL(GET /chats/stream)로 자동 재연결해도(Last-Event-ID 헤더) 이어받을 수 있음.
+// grace-ms 가 지나도록 다시 안 붙으면 만료: onExpire("client_gone") 로 대기열 / single-flight 에서 빼고 업스트림을 끊음.
+// 죽은 연결은 heartbeat-ms 마다 보내는 SSE 주석(": hb")이 실패하는 것으로 빨리 알아챔 (토큰이 안 나오는 대기/프롬프트 처리 중에도).
+// heartbeat 쓰기는 heartbeat 풀에서 스트림 락 밖으로 (느린 클라이언트 1명이 다른 스트림의 heartbeat / 스위퍼 / 릴레이 send 를 막지 않게).
+@Component
+public class ResumableStreams {
+
+    public enum ResumeResult { RESUMED, FINISHED, NOT_FOUND, GAP }
+
+    private record Buffered(long id, String event, String data, int bytes) {}
+
+    // SSE 이벤트 id = "<requestId>:<순번>". 순번 0 은 첫 "request" 이벤트
+    public record EventId(String requestId, long seq) {
+
+        @Override
+        public String toString() {
+            return requestId + ":" + seq;
+        }
+
+        // Last-Event-ID 헤더 해석. 형식이 다르면 null (예전 형식인 순번만 있는 값은 requestId 가 null)
+        public static EventId parse(String raw) {
+            if (raw == null || raw.isBlank()) return null;
+            String v = raw.trim();
+            int sep = v.lastIndexOf(':');
+            try {
+                if (sep < 0) return new EventId(null, Long.parseLong(v));
+                if (sep == 0) return null;
+                return new EventId(v.substring(0, sep), Long.parseLong(v.substring(sep + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private final long graceMs;
+    private final long heartbeatMs;
+    private final int maxEvents;
+    private final long maxBytes;
+    private final AppMetrics metrics;
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+    private final ScheduledExecutorService heartbeatTimer; // heartbeat-ms 0 이면 null
+    private final ThreadPoolExecutor heartbeatPool;
+
+    private final LongAdder expired = new LongAdder();
+
+    public ResumableStreams(@Value("${chat.stream.resume.grace-ms:10000}") long graceMs,
+                            @Value("${chat.stream.resume.buffer-events:2000}") int maxEvents,
+                            @Value("${chat.stream.resume.buffer-bytes:262144}") long maxBytes,
+                            @Value("${chat.stream.heartbeat-ms:5000}") long heartbeatMs,
+                            @Value("${chat.stream.heartbeat-threads:4}") int heartbeatThreads,
+                            AppMetrics metrics) {
+        this.graceMs = Math.max(0, graceMs);
+        this.heartbeatMs = heartbeatMs;
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+        this.metrics = metrics;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-resume-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(200, Math.min(1000, this.graceMs / 2));
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        int threads = Math.max(1, heartbeatThreads);
+        AtomicInteger seq = new AtomicInteger();
+        this.heartbeatPool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 64), r -> {
+                    Thread t = new Thread(r, "sse-heartbeat-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.heartbeatPool.allowCoreThreadTimeOut(true);
+        if (heartbeatMs > 0) {
+            this.heartbeatTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sse-heartbeat");
+                t.setDaemon(true);
+                return t;
+            });
+            heartbeatTimer.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.heartbeatTimer = null;
+        }
+    }
+
+    // 새 스트림 등록. 클라이언트가 재연결할 때 쓸 requestId 를 "request" 이벤트로 먼저 알려줌.
+    // onExpire(reason): 클라이언트가 grace 안에 안 돌아왔을 때(client_gone) / 취소 요청(client_cancel). 대기열에서 빼기, 업스트림 끊기 등
+    public Stream open(String requestId, SseEmitter emitter, Consumer<String> onExpire) {
+        Stream stream = new Stream(requestId, emitter, onExpire);
+        streams.put(requestId, stream);
+        try {
+            emitter.send(SseEmitter.event().id(new EventId(requestId, 0).toString())
+                    .name("request").data(Map.of("requestId", requestId)));
+        } catch (IOException | RuntimeException e) {
+            stream.detach(emitter);
+        }
+        return stream;
+    }
+
+    public Stream get(String requestId) {
+        return requestId == null ? null : streams.get(requestId);
+    }
+
+    // 재연결: lastEventId 이후 이벤트를 재생하고, 아직 돌고 있으면 새 emitter 로 이어서 받음
+    public ResumeResult resume(String requestId, long lastEventId, SseEmitter emitter) {
+        Stream stream = get(requestId);
+        ResumeResult result = stream == null ? ResumeResult.NOT_FOUND : stream.reattach(lastEventId, emitter);
+        metrics.recordStreamResume(result.name().toLowerCase());
+        return result;
+    }
+
+    // 클라이언트의 명시적 취소: 재연결을 기다리지 않고 바로 만료. 연결돼 있으면 "cancelled" 이벤트 후 닫음
+    public boolean cancel(String requestId) {
+        return close(requestId, "client_cancel",
+                SseEmitter.event().name("cancelled").data(Map.of("requestId", requestId)));
+    }
+
+    // 드레인 중 아직 시작 안 한 요청: "draining" 이벤트(재연결 대기 시간 포함)로 다른 노드에 다시 요청하라고 알리고 닫음
+    public boolean redirect(String requestId, long retryAfterMs) {
+        return close(requestId, "shutdown", SseEmitter.event()
+                .name("draining")
+                .reconnectTime(retryAfterMs)
+                .data(Map.of("requestId", requestId, "status", 503, "retryAfterMs", retryAfterMs)));
+    }
+
+    private boolean close(String requestId, String reason, SseEmitter.SseEventBuilder last) {
+        Stream stream = get(requestId);
+        if (stream == null || !stream.close(last)) return false;
+        streams.remove(requestId, stream);
+        expired.increment();
+        stream.runExpire(reason);
+        return true;
+    }
+
+    public int size() {
+        return streams.size();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("resumable", streams.size());
+        s.put("resumeGraceMs", graceMs);
+        s.put("heartbeatMs", heartbeatMs);
+        s.put("heartbeatQueued", heartbeatPool.getQueue().size());
+        s.put("expired", expired.sum());
+        return s;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        if (heartbeatTimer != null) heartbeatTimer.shutdownNow();
+        heartbeatPool.shutdownNow();
+    }
+
+    // 끝난 지 / 끊긴 지 grace 가 지난 스트림 정리
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (Stream s : streams.values()) {
+            Boolean gone = s.expireIfIdle(now);
+            if (gone == null) continue;
+            streams.remove(s.requestId, s);
+            if (gone) {
+                expired.increment();
+                s.runExpire("client_gone");
+            }
+        }
+    }
+
+    // 연결된 모든 스트림에 SSE 주석 전송 (쓰기는 heartbeat 풀에서). 실패하면 끊긴 것으로 표시 -> grace 후 만료.
+    // 이전 heartbeat 쓰기가 아직 안 끝난 스트림(느린 클라이언트)은 건너뜀. 풀이 꽉 찼으면 다음 주기에
+    private void heartbeat() {
+        for (Stream s : streams.values()) {
+            if (!s.beating.compareAndSet(false, true)) continue;
+            try {
+                heartbeatPool.execute(() -> {
+                    try {
+                        s.heartbeat();
+                    } finally {
+                        s.beating.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                s.beating.set(false);
+            }
+        }
+    }
+
+    // 요청 1개의 이벤트 버퍼 + 현재 연결(emitter, 끊겨 있으면 null).
+    // 릴레이 스레드(send)와 재연결 요청 스레드(reattach), 스위퍼, heartbeat 풀이 함께 쓰므로 synchronized.
+    public final class Stream {
+        private final String requestId;
+        private final Consumer<String> onExpire;
+        private final AtomicBoolean beating = new AtomicBoolean();
+        private final ArrayDeque<Buffered> buffer = new ArrayDeque<>();
+        private long bufferedBytes;
+        private long nextId = 1;
+        private long droppedThrough; // 이 id 까지는 버퍼에서 밀려남 (이보다 앞에서 재연결하면 GAP)
+
+        private SseEmitter emitter;
+        private long detachedAt;
+        private boolean finished;
+        private long finishedAt;
+        private boolean expired;
+
+        private Stream(String requestId, SseEmitter emitter, Consumer<String> onExpire) {
+            this.requestId = requestId;
+            this.emitter = emitter;
+            this.onExpire = onExpire;
+        }
+
+        public String requestId() {
+            return requestId;
+        }
+
+        // 버퍼에 넣고 연결돼 있으면 id 를 붙여 전송. 끊겨 있으면 버퍼에만 (grace 가 지났으면 예외)
+        public StreamEventSink sink() {
+            return this::send;
+        }
+
+        private synchronized void send(String event, String data) throws IOException {
+            if (expired) throw new IOException("클라이언트 재연결 없음: " + requestId);
+            long id = nextId++;
+            // 크기는 UTF-16 문자 수 * 2 로 추정 (한도 판단용이라 정확한 바이트 수는 필요 없음)
+            append(new Buffered(id, event, data, data == null ? 64 : data.length() * 2 + 64));
+            if (emitter == null) return;
+            try {
+                emitter.send(SseEmitter.event().id(new EventId(requestId, id).toString()).name(event).data(data));
+            } catch (IOException | RuntimeException e) {
+                emitter = null;
+                detachedAt = System.currentTimeMillis();
+                if (graceMs == 0) {
+                    expired = true;
+                    throw e;
+                }
+            }
+        }
+
+        private void append(Buffered b) {
+            buffer.addLast(b);
+            bufferedBytes += b.bytes();
+            while (buffer.size() > maxEvents || (bufferedBytes > maxBytes && buffer.size() > 1)) {
+                Buffered old = buffer.pollFirst();
+                bufferedBytes -= old.bytes();
+                droppedThrough = old.id();
+            }
+        }
+
+        // 정상 종료: 연결돼 있으면 닫고, grace 동안은 재생용으로 남겨 둠
+        public void complete() {
+            SseEmitter current;
+            synchronized (this) {
+                finished = true;
+                finishedAt = System.currentTimeMillis();
+                current = emitter;
+                emitter = null;
+            }
+            if (current != null) current.complete();
+        }
+
+        // 실패: error 이벤트를 버퍼에도 남기고 (재연결해도 같은 결과) 연결을 에러로 닫음
+        public void fail(Exception error) {
+            try {
+                send("error", error.getMessage() == null ? "error" : error.getMessage());
+            } catch (IOException ignore) {}
+            SseEmitter current;
+            synchronized (this) {
+                finished = true;
+                finishedAt = System.currentTimeMillis();
+                current = emitter;
+                emitter = null;
+            }
+            if (current != null) current.completeWithError(error);
+        }
+
+        // emitter 의 onCompletion / onTimeout / onError 에서 호출. 지금 연결된 emitter 일 때만 끊긴 것으로 표시
+        public synchronized void detach(SseEmitter e) {
+            if (emitter == e && e != null) {
+                emitter = null;
+                detachedAt = System.currentTimeMillis();
+            }
+        }
+
+        public synchronized boolean isAttached() {
+            return emitter != null;
+        }
+
+        private ResumeResult reattach(long lastEventId, SseEmitter next) {
+            SseEmitter previous;
+            boolean done;
+            synchronized (this) {
+                if (expired) return ResumeResult.NOT_FOUND;
+                if (lastEventId < droppedThrough) return ResumeResult.GAP;
+                try {
+                    for (Buffered b : buffer) {
+                        if (b.id() <= lastEventId) continue;
+                        next.send(SseEmitter.event().id(new EventId(requestId, b.id()).toString()).name(b.event()).data(b.data()));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    return finished ? ResumeResult.FINISHED : ResumeResult.RESUMED; // 새 연결도 바로 끊김: 그대로 끊긴 상태 유지
+                }
+                done = finished;
+                previous = emitter;
+                emitter = done ? null : next;
+            }
+            // 예전 연결이 아직 살아 있으면(반쯤 끊긴 탭) 닫음
+            if (previous != null && previous != next) previous.complete();
+            if (done) next.complete();
+            return done ? ResumeResult.FINISHED : ResumeResult.RESUMED;
+        }
+
+        // 락은 현재 emitter 를 읽을 때만. 쓰는 동안 재연결 / 종료로 바뀌었으면 detach 가 무시함
+        private void heartbeat() {
+            SseEmitter current;
+            synchronized (this) {
+                if (emitter == null || finished) return;
+                current = emitter;
+            }
+            try {
+                current.send(SseEmitter.event().comment("hb"));
+            } catch (IOException | RuntimeException e) {
+                detach(current);
+            }
+        }
+
+        // 취소 / 드레인으로 바로 닫음. 이미 끝났거나 만료됐으면 false
+        private boolean close(SseEmitter.SseEventBuilder last) {
+            SseEmitter current;
+            synchronized (this) {
+                if (finished || expired) return false;
+                expired = true;
+                buffer.clear();
+                current = emitter;
+                emitter = null;
+            }
+            if (current != null) {
+                try {
+                    current.send(last);
+                } catch (IOException | RuntimeException ignore) {}
+                current.complete();
+            }
+            return true;
+        }
+
+        private void runExpire(String reason) {
+            if (onExpire == null) return;
+            try {
+                onExpire.accept(reason);
+            } catch (RuntimeException e) {
+                System.err.println(">>> [Resume] 만료 처리 실패: " + requestId + " " + e.getMessage());
+            }
+        }
+
+        // 스위퍼용: 정리할 때가 아니면 null, 끝난 스트림이면 false, 클라이언트가 안 돌아온 스트림이면 true (만료 콜백 실행)
+        private synchronized Boolean expireIfIdle(long now) {
+            if (finished) {
+                return now - finishedAt >= graceMs ? Boolean.FALSE : null;
+            }
+            if (emitter == null && detachedAt > 0 && now - detachedAt >= graceMs) {
+                expired = true;
+                buffer.clear();
+                return Boolean.TRUE;
+            }
+            return null;
+        }
+    }
+}
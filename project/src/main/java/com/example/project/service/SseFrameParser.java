@@ -0,0 +1,136 @@
+package com.example.project.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+// 업스트림 SSE 바이트를 이벤트 단위로 자르는 증분 파서 (스트림 1개당 1개, 스레드 안전하지 않음).
+// 줄 String / substring / trim / StringBuilder 없이 재사용 버퍼에 바이트를 모으고,
+// 빈 줄에서 (event 이름, data 바이트 구간)을 listener 로 넘김. data 를 어떻게 쓸지(그대로 String, 복사 등)는 호출하는 쪽이 정함.
+// listener 에 넘긴 바이트 구간은 다음 feed 호출 전까지만 유효.
+public final class SseFrameParser {
+
+    @FunctionalInterface
+    public interface Listener {
+        void onEvent(String event, byte[] data, int offset, int length) throws IOException;
+    }
+
+    private static final byte[] DATA = "data:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT = "event:".getBytes(StandardCharsets.US_ASCII);
+    private static final String DEFAULT_EVENT = "message";
+
+    // 여러 줄 data 를 이을 때 넣는 구분자 (블로킹 경로: "\n", 바이트 그대로 내려보내는 경로: "\ndata:")
+    private final byte[] dataJoin;
+
+    private byte[] line = new byte[256];
+    private int lineLen;
+    private byte[] data = new byte[512];
+    private int dataLen;
+    private boolean hasData;
+    private String eventName = DEFAULT_EVENT;
+
+    // 직전 event 이름 (delta 가 연속으로 오므로 같은 이름이면 String 을 다시 만들지 않음)
+    private byte[] lastNameBytes = new byte[0];
+    private String lastName = DEFAULT_EVENT;
+
+    public SseFrameParser(byte[] dataJoin) {
+        this.dataJoin = dataJoin;
+    }
+
+    public SseFrameParser() {
+        this(new byte[] {'\n'});
+    }
+
+    public void feed(byte[] buf, int offset, int length, Listener listener) throws IOException {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buf[i];
+            if (b == '\n') {
+                onLine(listener);
+                lineLen = 0;
+            } else if (b != '\r') {
+                if (lineLen == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLen++] = b;
+            }
+        }
+    }
+
+    private void onLine(Listener listener) throws IOException {
+        // SSE는 빈 줄이 "이벤트 끝" 구분자
+        if (lineLen == 0) {
+            if (hasData) {
+                String name = eventName;
+                hasData = false;
+                eventName = DEFAULT_EVENT;
+                int len = dataLen;
+                dataLen = 0;
+                listener.onEvent(name, data, 0, len);
+            }
+            return;
+        }
+        if (startsWith(EVENT)) {
+            eventName = eventName(EVENT.length);
+        } else if (startsWith(DATA)) {
+            int from = DATA.length;
+            if (from < lineLen && line[from] == ' ') from++;
+            if (hasData) append(dataJoin, 0, dataJoin.length);
+            append(line, from, lineLen - from);
+            hasData = true;
+        }
+        // id:, retry:, 주석(:) 줄은 무시
+    }
+
+    private String eventName(int from) {
+        int to = lineLen;
+        while (from < to && line[from] == ' ') from++;
+        while (to > from && line[to - 1] == ' ') to--;
+        int len = to - from;
+        if (len == lastNameBytes.length && Arrays.equals(line, from, to, lastNameBytes, 0, len)) {
+            return lastName;
+        }
+        lastNameBytes = Arrays.copyOfRange(line, from, to);
+        lastName = new String(lastNameBytes, StandardCharsets.UTF_8);
+        return lastName;
+    }
+
+    private void append(byte[] src, int from, int len) {
+        if (dataLen + len > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLen + len));
+        }
+        System.arraycopy(src, from, data, dataLen, len);
+        dataLen += len;
+    }
+
+    private boolean startsWith(byte[] prefix) {
+        if (lineLen < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    // delta 이벤트 JSON에서 text 필드만 토큰 단위로 읽어 out 에 붙임 (Map 전체를 만들지 않음)
+    public static void appendDeltaText(JsonFactory jsonFactory, byte[] data, int offset, int length, StringBuilder out) {
+        try (JsonParser p = jsonFactory.createParser(data, offset, length)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return;
+            JsonToken t;
+            while ((t = p.nextToken()) == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("text".equals(name) && value == JsonToken.VALUE_STRING) {
+                    out.append(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+                    return;
+                }
+                p.skipChildren();
+            }
+        } catch (IOException e) {
+            // JSON 파싱 실패 시 무시
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.project.service;
+
+import java.util.UUID;
+
+// 진행 중인 파이썬 스트림 1개를 밖에서 끊기 위한 손잡이.
+// 게이트웨이가 연결을 열면 bind(abort) 로 끊는 방법을 등록하고, 클라이언트가 떠나면 cancel(reason) 으로
+// 업스트림 소켓을 바로 닫음 (다음 토큰을 기다리지 않음). upstreamId 는 파이썬에 request_id 로 넘겨 취소 신호에 씀.
+public final class StreamCancellation {
+
+    private final String upstreamId = UUID.randomUUID().toString();
+    private Runnable abort;
+    private String reason;
+
+    public String upstreamId() {
+        return upstreamId;
+    }
+
+    // 연결이 열렸을 때 게이트웨이가 호출. 이미 취소됐으면 바로 끊음
+    public void bind(Runnable abort) {
+        boolean cancelled;
+        synchronized (this) {
+            this.abort = abort;
+            cancelled = reason != null;
+        }
+        if (cancelled) abort.run();
+    }
+
+    // reason: client_gone (모든 클라이언트 끊김) / client_cancel (취소 요청) / shutdown. 여러 번 불러도 처음 1번만
+    public void cancel(String reason) {
+        Runnable a;
+        synchronized (this) {
+            if (this.reason != null) return;
+            this.reason = reason;
+            a = abort;
+        }
+        if (a != null) a.run();
+    }
+
+    public synchronized boolean isCancelled() {
+        return reason != null;
+    }
+
+    public synchronized String reason() {
+        return reason;
+    }
+}
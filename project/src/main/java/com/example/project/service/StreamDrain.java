@@ -0,0 +1,156 @@
+package com.example.project.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Flux;
+
+// 배포(롤링 재시작) 시 스트림 드레인.
+// 1) readiness 를 REFUSING_TRAFFIC 로 바꿔 로드밸런서가 새 트래픽을 다른 노드로 보내게 함 (/actuator/health/readiness)
+// 2) 새 스트림은 받지 않고 "draining" 이벤트로 다른 노드에 다시 요청하라고 알림. 대기열에서 아직 시작 안 한 요청도 같은 방식으로 돌려보냄
+// 3) 실행 중인 릴레이는 timeout-ms 까지 끝나기를 기다림 (끝나면 onComplete 에서 대화 기록 저장). 넘기면 업스트림을 끊음
+//    실행기 슬롯을 쓰지 않는 스트림(리액티브 경로, 간격을 두고 재생하는 캐시 답변)은 track() 으로 따로 세어 같이 기다림.
+//    single-flight 팔로워는 리더의 릴레이 스레드가 슬롯을 반납하기 전에 onDone(기록 저장)을 불러 주므로 리더를 기다리면 됨
+// 4) write-behind 큐에 남은 대화 기록을 플러시
+// 종료 시(SIGTERM) 웹 서버 graceful shutdown 보다 먼저 실행되고, 배포 스크립트가 POST /chats/stream/drain 으로 미리 시작할 수도 있음.
+@Component
+public class StreamDrain implements SmartLifecycle {
+
+    private final ChatStreamExecutor executor;
+    private final FairChatScheduler scheduler;
+    private final InFlightStreams inFlight;
+    private final ResumableStreams resumable;
+    private final ChatMessageWriteBehind writeBehind;
+    private final ApplicationEventPublisher publisher;
+    private final long timeoutMs;
+    private final long retryAfterMs;
+
+    private volatile boolean running;
+    private volatile boolean draining;
+    private volatile long drainStartedAt;
+    private volatile int redirected;
+    private final AtomicInteger tracked = new AtomicInteger(); // 실행기 밖에서 도는 스트림 수
+
+    public StreamDrain(ChatStreamExecutor executor, FairChatScheduler scheduler, InFlightStreams inFlight,
+                       ResumableStreams resumable, ChatMessageWriteBehind writeBehind,
+                       ApplicationEventPublisher publisher,
+                       @Value("${chat.stream.drain.timeout-ms:30000}") long timeoutMs,
+                       @Value("${chat.stream.drain.retry-after-ms:1000}") long retryAfterMs) {
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.inFlight = inFlight;
+        this.resumable = resumable;
+        this.writeBehind = writeBehind;
+        this.publisher = publisher;
+        this.timeoutMs = timeoutMs;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public long retryAfterMs() {
+        return retryAfterMs;
+    }
+
+    // 실행기 밖에서 도는 스트림 1개 시작. 끝나면(기록 저장 뒤) 돌려받은 Runnable 을 부름 (여러 번 불러도 1번만 셈)
+    public Runnable track() {
+        tracked.incrementAndGet();
+        AtomicBoolean done = new AtomicBoolean();
+        return () -> {
+            if (done.compareAndSet(false, true)) tracked.decrementAndGet();
+        };
+    }
+
+    // 리액티브 스트림용: 구독 시 세고, 끝나거나 취소되면 뺌
+    public <T> Flux<T> tracked(Flux<T> flux) {
+        return Flux.defer(() -> {
+            Runnable done = track();
+            return flux.doFinally(signal -> done.run());
+        });
+    }
+
+    // 드레인이 기다리는 스트림 수 (실행기 슬롯 + track)
+    public int inProgress() {
+        return executor.running() + tracked.get();
+    }
+
+    // 드레인 시작 (새 요청 차단 + readiness 내림 + 대기 중 요청 돌려보내기). 이미 시작됐으면 false
+    public synchronized boolean begin() {
+        if (draining) return false;
+        draining = true;
+        drainStartedAt = System.currentTimeMillis();
+        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.REFUSING_TRAFFIC);
+
+        List<String> queued = scheduler.close();
+        for (String requestId : queued) {
+            if (resumable.redirect(requestId, retryAfterMs)) redirected++;
+        }
+        System.out.println(">>> [Drain] 시작: 실행 중 " + inProgress() + "개, 돌려보낸 대기 요청 " + queued.size() + "개");
+        return true;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    // 컨텍스트 종료 시: 실행 중인 릴레이가 끝나기를 기다린 뒤 대화 기록 플러시
+    @Override
+    public void stop() {
+        begin();
+        long deadline = drainStartedAt + timeoutMs;
+        awaitRelays(deadline);
+        if (inProgress() > 0) {
+            System.err.println(">>> [Drain] 시간 초과, 남은 스트림 " + inProgress() + "개 업스트림 중단");
+            inFlight.cancelAll("shutdown");
+            awaitRelays(System.currentTimeMillis() + 5000); // 끊긴 릴레이가 error 이벤트를 보내고 슬롯을 반납할 시간
+        }
+        writeBehind.flush();
+        System.out.println(">>> [Drain] 완료: " + (System.currentTimeMillis() - drainStartedAt) + "ms");
+        running = false;
+    }
+
+    private void awaitRelays(long deadline) {
+        while (inProgress() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 높은 phase 가 먼저 멈춤: 웹 서버 graceful shutdown 보다 먼저 (SSE 연결이 살아 있는 동안) 드레인
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("draining", draining);
+        s.put("drainingForMs", draining ? System.currentTimeMillis() - drainStartedAt : 0);
+        s.put("drainTimeoutMs", timeoutMs);
+        s.put("drainRedirected", redirected);
+        s.put("drainTracked", tracked.get());
+        return s;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.project.service;
+
+import java.io.IOException;
+
+// 파이썬 스트림에서 읽은 SSE 이벤트(event 이름 + data)를 받아 내보내는 곳.
+// SseEmitter로 바로 보내거나, Kafka 응답 토픽으로 보내는 등 전달 방식만 바꿔 끼울 수 있게 분리.
+@FunctionalInterface
+public interface StreamEventSink {
+    void send(String event, String data) throws IOException;
+
+    // 업스트림이 정상적으로 끝났을 때 (완료 콜백 전). 모아둔 이벤트가 있는 sink 는 여기서 내보냄
+    default void end() throws IOException {
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.project.service;
+
+// 프롬프트 토큰 수 추정 (모델 토크나이저를 쓰지 않는 근사치).
+// 대화 기록을 토큰 예산으로 자를 때 쓰므로 정확도보다 "긴 글은 길게, 짧은 글은 짧게" 세는 것이 중요.
+// - 영문/숫자 연속 구간: 4글자당 1토큰 (BPE 평균)
+// - 한글/한자/가나 등 ASCII 밖 글자: 글자당 1토큰 (qwen 계열 토크나이저 기준 대략 1~1.5)
+// - 구두점/기호: 1개당 1토큰, 공백: 0
+// 메시지 1개마다 role 표시 등 틀 비용(MESSAGE_OVERHEAD)을 더함.
+public final class TokenCounter {
+
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenCounter() {
+    }
+
+    // 메시지 1개(틀 포함)의 토큰 수. ChatMessage 저장 시 한 번 계산해 token_count 에 넣음
+    public static int countMessage(String content) {
+        return MESSAGE_OVERHEAD + count(content);
+    }
+
+    public static int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        int tokens = 0;
+        int asciiRun = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp < 128 && Character.isLetterOrDigit(cp)) {
+                asciiRun++;
+                continue;
+            }
+            tokens += (asciiRun + 3) / 4;
+            asciiRun = 0;
+            if (!Character.isWhitespace(cp)) {
+                tokens++;
+            }
+        }
+        return tokens + (asciiRun + 3) / 4;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.project.controller.dto.ChatRequest;
+
+class AnswerCacheTest {
+
+    private static ChatRequest request(String question, String userId, String conversationId, Long... docIds) {
+        ChatRequest req = new ChatRequest();
+        req.setQuestion(question);
+        req.setUserId(userId);
+        req.setConversationId(conversationId);
+        req.setDocumentIds(List.of(docIds));
+        req.setModel("ollama");
+        return req;
+    }
+
+    private static List<AnswerCache.Frame> frames(String text) {
+        return List.of(new AnswerCache.Frame("delta", text), new AnswerCache.Frame("meta", "end"));
+    }
+
+    // 정규화한 질문 + 정렬한 문서 id 로 적중, 다른 유저 / 다른 대화는 미스 (프롬프트에 유저별 이전 대화가 들어감)
+    @Test
+    void hitIsScopedToUserAndConversation() {
+        AnswerCache cache = new AnswerCache(true, 3600, 1 << 20, 100, 0);
+        cache.put(request("요약해줘", "a", "c1", 1L, 2L), frames("답"), "답", System.currentTimeMillis());
+
+        AnswerCache.Hit hit = cache.get(request("  요약해줘 ", "a", "c1", 2L, 1L));
+        assertNotNull(hit);
+        assertEquals("답", hit.fullAnswer());
+        assertNull(cache.get(request("요약해줘", "b", "c1", 1L, 2L)));
+        assertNull(cache.get(request("요약해줘", "a", "c2", 1L, 2L)));
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(2L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void expiredEntryIsMiss() throws Exception {
+        AnswerCache cache = new AnswerCache(true, 0, 1 << 20, 100, 0);
+        cache.put(request("q", "a", null, 1L), frames("답"), "답", System.currentTimeMillis());
+        Thread.sleep(5);
+        assertNull(cache.get(request("q", "a", null, 1L)));
+        assertEquals(0, cache.stats().get("entries"));
+    }
+
+    // 메모리 예산을 넘으면 가장 오래 안 쓴 답변부터 제거
+    @Test
+    void byteBudgetEvictsLeastRecentlyUsed() {
+        String answer = "x".repeat(100);
+        AnswerCache cache = new AnswerCache(true, 3600, 1300, 100, 0); // 답변 1개 약 580바이트 -> 2개까지
+        long now = System.currentTimeMillis();
+        cache.put(request("q1", "a", null, 1L), frames(answer), answer, now);
+        cache.put(request("q2", "a", null, 1L), frames(answer), answer, now);
+        assertNotNull(cache.get(request("q1", "a", null, 1L))); // q1 을 최근 사용으로
+        cache.put(request("q3", "a", null, 1L), frames(answer), answer, now);
+
+        assertNotNull(cache.get(request("q1", "a", null, 1L)));
+        assertNull(cache.get(request("q2", "a", null, 1L)));
+        assertNotNull(cache.get(request("q3", "a", null, 1L)));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    // 문서가 바뀌면 그 문서가 들어간 답변 제거. 무효화 전에 시작된 스트림의 답변은 저장하지 않음
+    @Test
+    void invalidationDropsEntriesAndLateWrites() throws Exception {
+        AnswerCache cache = new AnswerCache(true, 3600, 1 << 20, 100, 0);
+        long startedAt = System.currentTimeMillis();
+        cache.put(request("q", "a", null, 1L, 2L), frames("답"), "답", startedAt);
+        cache.put(request("q", "a", null, 3L), frames("답"), "답", startedAt);
+
+        Thread.sleep(2);
+        cache.invalidateDocument(2L);
+        assertNull(cache.get(request("q", "a", null, 1L, 2L)));
+        assertNotNull(cache.get(request("q", "a", null, 3L)));
+
+        cache.put(request("q", "a", null, 2L), frames("늦은 답"), "늦은 답", startedAt);
+        assertNull(cache.get(request("q", "a", null, 2L)));
+        cache.put(request("q", "a", null, 2L), frames("새 답"), "새 답", System.currentTimeMillis() + 1);
+        assertNotNull(cache.get(request("q", "a", null, 2L)));
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AppMetricsTest {
+
+    // 클라이언트가 보낸 model 값은 알려진 모델만 태그로, 나머지(대소문자만 다른 값 포함)는 other (태그 값 수가 늘지 않게)
+    @Test
+    void unknownModelsShareOneTag() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AppMetrics metrics = new AppMetrics(registry);
+        for (String model : new String[] {"gemini", "Gemini", "gpt-" + System.nanoTime(), "x".repeat(200), null}) {
+            AppMetrics.StreamRecorder recorder = metrics.startStream("blocking", model);
+            recorder.onEvent("delta");
+            recorder.finish("ok");
+        }
+
+        assertNotNull(registry.find("chat.stream.ttft").tag("model", "gemini").timer());
+        assertEquals(1, registry.find("chat.stream.ttft").tag("model", "gemini").timer().count());
+        assertEquals(3, registry.find("chat.stream.ttft").tag("model", "other").timer().count());
+        assertEquals(1, registry.find("chat.stream.ttft").tag("model", "unknown").timer().count());
+        assertEquals(3, registry.find("chat.stream.ttft").timers().size());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.project.domain.ChatMessage;
+
+class ChatHistoryCacheTest {
+
+    private static ChatMessage msg(String role, String content) {
+        ChatMessage m = new ChatMessage();
+        m.setRole(role);
+        m.setContent(content);
+        m.setTokenCount(TokenCounter.countMessage(content));
+        return m;
+    }
+
+    @Test
+    void tokenCountsEnglishByRunsAndKoreanByCharacter() {
+        assertEquals(0, TokenCounter.count(""));
+        assertEquals(2, TokenCounter.count("contract")); // 8글자 -> 2
+        assertEquals(3, TokenCounter.count("갱신 조"));
+        assertEquals(4, TokenCounter.count("abc, def?"));
+    }
+
+    // 긴 문서를 붙여넣은 옛 턴은 예산 밖으로 밀려 요약 1줄이 되고, 최근 짧은 턴은 그대로 들어감
+    @Test
+    void packsNewestWithinBudgetAndFoldsOlderTurnsIntoSummary() {
+        ChatHistoryCache cache = new ChatHistoryCache(50, 100, 300, 20, true);
+        List<ChatMessage> history = new ArrayList<>();
+        history.add(msg("user", "이 계약서 요약해줘\n" + "제1조 목적 ".repeat(400)));
+        history.add(msg("assistant", "계약 기간은 2년입니다."));
+        for (int i = 0; i < 6; i++) {
+            history.add(msg(i % 2 == 0 ? "user" : "assistant", "짧은 질문 " + i));
+        }
+        cache.load("u", history);
+
+        List<Map<String, String>> packed = cache.snapshot("u", 20, 200);
+        assertEquals("system", packed.get(0).get("role"));
+        assertTrue(packed.get(0).get("content").contains("- 사용자: 이 계약서 요약해줘"));
+        assertEquals(1 + 7, packed.size()); // 요약 + 긴 턴 뒤의 7개
+        assertEquals("짧은 질문 5", packed.get(packed.size() - 1).get("content"));
+
+        int tokens = 0;
+        for (Map<String, String> m : packed) tokens += TokenCounter.countMessage(m.get("content"));
+        assertTrue(tokens <= 200, "budget exceeded: " + tokens);
+
+        // 예산 없이 부르면 예전처럼 개수로만 자름 (요약 없음)
+        assertEquals(8, cache.snapshot("u", 20).size());
+    }
+
+    // 재시작 / 캐시 미스: 창보다 많이 읽은 앞부분은 버리지 않고 요약으로 접어 둠
+    @Test
+    void loadFoldsMessagesOlderThanWindowIntoSummary() {
+        ChatHistoryCache cache = new ChatHistoryCache(4, 100, 300, 20, true);
+        assertEquals(24, cache.getLoadSize());
+        List<ChatMessage> history = new ArrayList<>();
+        history.add(msg("user", "첫 질문: 계약 기간은?"));
+        for (int i = 0; i < 5; i++) {
+            history.add(msg(i % 2 == 0 ? "assistant" : "user", "턴 " + i));
+        }
+        cache.load("u", history);
+
+        List<Map<String, String>> packed = cache.snapshot("u", 4, 1000);
+        assertEquals(5, packed.size()); // 요약 + 창 4개
+        assertEquals("system", packed.get(0).get("role"));
+        assertTrue(packed.get(0).get("content").contains("- 사용자: 첫 질문: 계약 기간은?"));
+        assertTrue(packed.get(0).get("content").contains("- 답변: 턴 0"));
+        assertEquals("턴 4", packed.get(4).get("content"));
+        // 예산 없이(예전 경로) 부르면 요약 없이 창 안의 개수만
+        assertEquals(4, cache.snapshot("u", 10).size());
+    }
+
+    // Kafka 모드처럼 캐시를 끄면 창을 들고 있지 않고(매번 DB), 같은 방식으로 잘라서만 돌려줌
+    @Test
+    void disabledCacheKeepsNothingButStillPacks() {
+        ChatHistoryCache cache = new ChatHistoryCache(50, 100, 300, 20, false);
+        List<ChatMessage> history = List.of(msg("user", "a"), msg("assistant", "b"), msg("user", "c"));
+        cache.load("u", history);
+        cache.append("u", msg("assistant", "d"));
+
+        assertNull(cache.snapshot("u", 20));
+        assertEquals(0, cache.stats().get("windows"));
+        assertEquals(List.of("b", "c"), cache.render(history, 2, 0).stream().map(m -> m.get("content")).toList());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.project.domain.ChatMessage;
+import com.example.project.repository.ChatMessageRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ChatHistoryServiceTest {
+
+    private final ChatMessageRepository repository = mock(ChatMessageRepository.class);
+    private final ChatMessageWriteBehind writeBehind = mock(ChatMessageWriteBehind.class); // isEnabled() = false -> 바로 save
+    private final ChatHistoryService service = new ChatHistoryService(repository, new ChatHistoryCache(50, 100, 300, 20, true),
+            writeBehind, new AppMetrics(new SimpleMeterRegistry()), 0, 600_000);
+
+    // 삭제 전에 시작된 스트림이 끝나며 저장해도 대화가 되살아나지 않음. 삭제 뒤에 시작한 요청은 저장
+    @Test
+    void streamStartedBeforeDeleteDoesNotRecreateConversation() throws Exception {
+        when(repository.deleteConversation("u", "c1")).thenReturn(2);
+        long startedBefore = System.currentTimeMillis();
+        Thread.sleep(2);
+
+        assertEquals(2, service.deleteConversation("u", "c1"));
+        assertFalse(service.saveExchange("질문", "답변", "u", "c1", startedBefore));
+        verify(repository, never()).save(any(ChatMessage.class));
+
+        Thread.sleep(2);
+        assertTrue(service.saveExchange("질문", "답변", "u", "c1", System.currentTimeMillis()));
+        assertTrue(service.saveExchange("질문", "답변", "u", "c2", startedBefore)); // 다른 대화는 그대로
+        verify(repository, times(4)).save(any(ChatMessage.class));
+    }
+
+    // 기록 없는 첫 질문만 false (single-flight 가 유저끼리 합칠 수 있는 경우). 저장 후에는 같은 대화만 true
+    @Test
+    void promptHistoryOnlyAfterSavingInThatConversation() {
+        assertFalse(service.hasPromptHistory("u", "c1"));
+        assertTrue(service.saveExchange("질문", "답변", "u", "c1", System.currentTimeMillis()));
+        assertTrue(service.hasPromptHistory("u", "c1"));
+        assertFalse(service.hasPromptHistory("u", "c2"));
+        assertFalse(service.hasPromptHistory("other", "c1"));
+    }
+
+    // 없는 대화 삭제는 0 (컨트롤러가 404 로)
+    @Test
+    void deletingUnknownConversationReturnsZero() {
+        assertEquals(0, service.deleteConversation("u", "missing"));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.project.domain.ChatMessage;
+
+class ChatMessageWriteBehindTest {
+
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    // 플러시 스레드 없이(enabled=false) flush() 를 직접 불러 확인
+    private final ChatMessageWriteBehind writeBehind = new ChatMessageWriteBehind(jdbc,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), false, 100, 10, 200);
+
+    private static ChatMessage message(String userId, String content) {
+        ChatMessage m = new ChatMessage();
+        m.setUserId(userId);
+        m.setRole("user");
+        m.setContent(content);
+        m.setCreatedAt(LocalDateTime.now());
+        return m;
+    }
+
+    // 배치가 계속 실패하면 한 건씩 다시 저장하고, 그래도 실패한 행만 유실로 셈
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedBatchFallsBackToRowInsertsAndCountsLoss() {
+        when(jdbc.batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("bad row"));
+        AtomicInteger rows = new AtomicInteger();
+        when(jdbc.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(inv -> {
+            if (rows.incrementAndGet() == 2) throw new DataIntegrityViolationException("bad row");
+            return 1;
+        });
+
+        writeBehind.enqueue(message("a", "1"));
+        writeBehind.enqueue(message("a", "2"));
+        writeBehind.enqueue(message("b", "3"));
+        writeBehind.flush();
+
+        verify(jdbc, times(3)).update(anyString(), any(PreparedStatementSetter.class));
+        assertEquals(2L, writeBehind.stats().get("written"));
+        assertEquals(1L, writeBehind.stats().get("rowFallbacks"));
+        assertEquals(1L, writeBehind.lostCount());
+        assertEquals(0, writeBehind.stats().get("pendingUsers"));
+    }
+
+    // 저장이 끝난 유저의 대기 카운터는 지워져서 flushUser 가 플러시하지 않음
+    @Test
+    @SuppressWarnings("unchecked")
+    void pendingCounterIsRemovedOnceUserIsWritten() {
+        writeBehind.enqueue(message("a", "1"));
+        assertEquals(1, writeBehind.stats().get("pendingUsers"));
+        writeBehind.flushUser("a");
+        assertEquals(0, writeBehind.stats().get("pendingUsers"));
+        assertEquals(1L, writeBehind.stats().get("written"));
+
+        writeBehind.flushUser("a");
+        verify(jdbc, times(1)).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbc, never()).update(anyString(), any(PreparedStatementSetter.class));
+    }
+}
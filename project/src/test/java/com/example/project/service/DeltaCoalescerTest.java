@@ -0,0 +1,110 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class DeltaCoalescerTest {
+
+    private final DeltaCoalescer coalescer = new DeltaCoalescer(true, 15, 50, 2048, 2, new AppMetrics(new SimpleMeterRegistry()));
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    private static String delta(String text) {
+        return "{\"type\": \"delta\", \"text\": \"" + text + "\"}";
+    }
+
+    @Test
+    void firstDeltaGoesOutImmediatelyAndTheRestAreMergedUntilANonDeltaEvent() throws Exception {
+        // 요청별 창을 길게 잡아 타이머가 끼어들지 않게 함
+        DeltaCoalescer.CoalescingSink sink = coalescer.wrap((e, d) -> sent.add(e + "|" + d), 1000);
+        sink.send("meta", "{\"type\": \"start\"}");
+        sink.send("delta", delta("안"));
+        sink.send("delta", delta("녕"));
+        sink.send("delta", delta("하\\n"));
+        sink.send("delta", "{\"type\": \"delta\", \"text\": \"세\", \"extra\": 1}");
+        sink.send("delta", delta("요"));
+        sink.send("meta", "{\"type\": \"end\"}");
+        sink.end();
+
+        assertEquals(List.of(
+                "meta|{\"type\": \"start\"}",
+                "delta|" + delta("안"),
+                "delta|{\"type\":\"delta\",\"text\":\"녕하\\n\"}",
+                "delta|{\"type\": \"delta\", \"text\": \"세\", \"extra\": 1}",
+                "delta|" + delta("요"),
+                "meta|{\"type\": \"end\"}"), sent);
+    }
+
+    @Test
+    void windowExpiryFlushesWithoutAnotherEvent() throws Exception {
+        DeltaCoalescer.CoalescingSink sink = coalescer.wrap((e, d) -> sent.add(d), null);
+        sink.send("delta", delta("a"));
+        sink.send("delta", delta("b"));
+        sink.send("delta", delta("c"));
+        for (int i = 0; i < 100 && sent.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(delta("a"), "{\"type\":\"delta\",\"text\":\"bc\"}"), sent);
+        sink.end();
+        assertEquals(2, sent.size());
+    }
+
+    // 느린 클라이언트의 flush 가 막혀 있어도 다른 스트림의 창 만료 flush 는 제때 나감
+    @Test
+    void slowClientDoesNotStallOtherStreams() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowBlocked = new CountDownLatch(1);
+        List<String> slowSent = new CopyOnWriteArrayList<>();
+        DeltaCoalescer.CoalescingSink slow = coalescer.wrap((e, d) -> {
+            if (!slowSent.isEmpty()) {
+                slowBlocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            slowSent.add(d);
+        }, null);
+        slow.send("delta", delta("a"));
+        slow.send("delta", delta("b"));
+        assertTrue(slowBlocked.await(2, TimeUnit.SECONDS)); // flush 풀 스레드 1개가 막힘
+
+        DeltaCoalescer.CoalescingSink fast = coalescer.wrap((e, d) -> sent.add(d), null);
+        fast.send("delta", delta("x"));
+        fast.send("delta", delta("y"));
+        for (int i = 0; i < 100 && sent.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(delta("x"), delta("y")), sent);
+
+        release.countDown();
+        slow.end();
+        fast.end();
+        assertEquals(List.of(delta("a"), delta("b")), slowSent);
+    }
+
+    @Test
+    void disabledPerRequestPassesEverythingThrough() throws Exception {
+        DeltaCoalescer.CoalescingSink sink = coalescer.wrap((e, d) -> sent.add(d), 0);
+        assertFalse(sink.isActive());
+        sink.send("delta", delta("a"));
+        sink.send("delta", delta("b"));
+        assertEquals(2, sent.size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.project.domain.Document;
+import com.example.project.repository.DocumentRepository;
+
+class DocumentServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private final DocumentRepository documents = mock(DocumentRepository.class);
+    private final IngestionService ingestion = mock(IngestionService.class);
+    private final AtomicLong ids = new AtomicLong();
+    private DocumentService service;
+
+    @BeforeEach
+    void setUp() {
+        when(documents.save(any(Document.class))).thenAnswer(inv -> {
+            Document d = inv.getArgument(0);
+            if (d.getId() == null) ReflectionTestUtils.setField(d, "id", ids.incrementAndGet());
+            return d;
+        });
+        service = new DocumentService(documents, tmp.resolve("uploads").toString(), mock(PythonClientService.class),
+                new AnswerCache(false, 60, 1024, 10, 0), ingestion, tmp.resolve("data").toString(), true, false, 1 << 20);
+    }
+
+    private static MockMultipartFile pdf(String name) {
+        return new MockMultipartFile("files", name, "application/pdf", ("%PDF " + name).getBytes());
+    }
+
+    // 읽는 도중 끊기는 업로드 파트
+    private static MockMultipartFile broken(String name) {
+        return new MockMultipartFile("files", name, "application/pdf", "%PDF".getBytes()) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+    }
+
+    // 중간 파일 저장이 실패해도 앞서 저장된 파일은 인덱싱 등록되고, 실패한 파일의 행은 지워짐
+    @Test
+    void partialFailureStillIngestsStoredFilesAndDropsFailedRow() throws Exception {
+        MockMultipartFile first = pdf("a.pdf");
+        MockMultipartFile second = broken("b.pdf");
+
+        assertThrows(IOException.class, () -> service.createAndUploadMany(List.of(first, second), "u"));
+
+        verify(ingestion).submitAll(argThat(list ->
+                list.size() == 1 && "a.pdf".equals(list.get(0).getTitle()) && list.get(0).getFilePath() != null));
+        verify(documents).delete(argThat(d -> "b.pdf".equals(d.getTitle())));
+        try (var files = Files.list(tmp.resolve("uploads"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    // 형식이 틀린 파일이 섞여 있으면 아무것도 저장하지 않음
+    @Test
+    void invalidFileIsRejectedBeforeAnythingIsStored() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createAndUploadMany(List.of(pdf("a.pdf"), pdf("notes.txt")), "u"));
+
+        verify(documents, never()).save(any(Document.class));
+        verify(ingestion, never()).submitAll(any());
+    }
+}
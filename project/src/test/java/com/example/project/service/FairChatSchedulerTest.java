@@ -0,0 +1,138 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class FairChatSchedulerTest {
+
+    private final AppMetrics metrics = new AppMetrics(new SimpleMeterRegistry());
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ChatStreamExecutor executor;
+    private FairChatScheduler scheduler;
+
+    private void setUp(int slots, int perUserConcurrency, int perUserQueue, int queueCapacity) {
+        executor = new ChatStreamExecutor("pool", slots, slots, metrics);
+        scheduler = new FairChatScheduler(executor, perUserConcurrency, perUserQueue, queueCapacity);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    private Runnable record(String name) {
+        return () -> ran.add(name);
+    }
+
+    // release 될 때까지 슬롯을 잡고 있는 작업
+    private Runnable blocking(String name) {
+        return () -> {
+            ran.add(name);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    // 한 유저가 여러 건을 먼저 넣어도 슬롯이 날 때마다 유저를 번갈아 가며 실행
+    @Test
+    void queuedUsersAreServedRoundRobin() {
+        setUp(1, 1, 10, 100);
+        assertEquals(FairChatScheduler.Result.STARTED, scheduler.submit("x", "x", blocking("x"), null).result());
+        for (String id : List.of("a1", "a2", "a3")) {
+            assertEquals(FairChatScheduler.Result.QUEUED, scheduler.submit(id, "a", record(id), null).result());
+        }
+        scheduler.submit("b1", "b", record("b1"), null);
+        scheduler.submit("c1", "c", record("c1"), null);
+
+        release.countDown();
+        waitFor(() -> ran.size() == 6);
+        assertEquals(List.of("x", "a1", "b1", "c1", "a2", "a3"), ran);
+        assertEquals(0, scheduler.queuedCount());
+    }
+
+    // 빈 슬롯이 있어도 유저별 동시 실행 한도를 넘으면 대기, 다른 유저는 바로 시작
+    @Test
+    void perUserConcurrencyLeavesSlotsForOtherUsers() {
+        setUp(3, 1, 10, 100);
+        assertEquals(FairChatScheduler.Result.STARTED, scheduler.submit("a1", "a", blocking("a1"), null).result());
+        assertEquals(FairChatScheduler.Result.QUEUED, scheduler.submit("a2", "a", record("a2"), null).result());
+        assertEquals(FairChatScheduler.Result.STARTED, scheduler.submit("b1", "b", record("b1"), null).result());
+        waitFor(() -> ran.contains("b1"));
+        assertTrue(!ran.contains("a2"));
+
+        release.countDown();
+        waitFor(() -> ran.contains("a2"));
+    }
+
+    // 유저 대기열 / 전체 대기열이 가득 차면 429 성격의 거절 + 재시도 힌트
+    @Test
+    void fullQueuesRejectWithRetryHint() {
+        setUp(1, 1, 2, 3);
+        scheduler.submit("x", "x", blocking("x"), null);
+        scheduler.submit("a1", "a", record("a1"), null);
+        scheduler.submit("a2", "a", record("a2"), null);
+
+        FairChatScheduler.Admission userFull = scheduler.submit("a3", "a", record("a3"), null);
+        assertEquals(FairChatScheduler.Result.REJECTED, userFull.result());
+        assertEquals("user_queue_full", userFull.reason());
+        assertTrue(userFull.retryAfterMs() > 0);
+
+        assertEquals(FairChatScheduler.Result.QUEUED, scheduler.submit("b1", "b", record("b1"), null).result());
+        FairChatScheduler.Admission full = scheduler.submit("c1", "c", record("c1"), null);
+        assertEquals(FairChatScheduler.Result.REJECTED, full.result());
+        assertEquals("queue_full", full.reason());
+        assertEquals(3, scheduler.queuedCount());
+    }
+
+    // 대기 위치는 라운드로빈 순서 기준으로 알림 스레드에서 전달되고, 앞 작업이 빠지면 갱신됨
+    @Test
+    void queuePositionsFollowRoundRobinOrder() {
+        setUp(1, 1, 10, 100);
+        Map<String, Integer> positions = new ConcurrentHashMap<>();
+        scheduler.submit("x", "x", blocking("x"), null);
+        scheduler.submit("a1", "a", record("a1"), (p, w) -> positions.put("a1", p));
+        scheduler.submit("a2", "a", record("a2"), (p, w) -> positions.put("a2", p));
+        scheduler.submit("b1", "b", record("b1"), (p, w) -> positions.put("b1", p));
+
+        waitFor(() -> Integer.valueOf(3).equals(positions.get("a2")));
+        assertEquals(1, positions.get("a1"));
+        assertEquals(2, positions.get("b1"));
+
+        // a 가 여전히 라운드로빈 맨 앞이므로 a2 가 1번, b1 은 그대로 2번
+        scheduler.cancel("a1", "a");
+        waitFor(() -> Integer.valueOf(1).equals(positions.get("a2")));
+        assertEquals(2, positions.get("b1"));
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("timed out");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.project.controller.dto.ChatRequest;
+
+class InFlightStreamsTest {
+
+    private final InFlightStreams inFlight = new InFlightStreams(true);
+
+    private static ChatRequest request(String question) {
+        ChatRequest req = new ChatRequest();
+        req.setDocumentIds(List.of(2L, 1L));
+        req.setQuestion(question);
+        return req;
+    }
+
+    private static InFlightStreams.Subscriber subscriber(String id, List<String> events, List<String> done) {
+        return new InFlightStreams.Subscriber(id, (e, d) -> events.add(d), done::add, e -> done.add("error"));
+    }
+
+    // 늦게 붙은 요청은 지금까지 나간 이벤트를 먼저 받고, 끝나면 요청마다 완료 콜백(대화 기록 저장)을 받음
+    @Test
+    void lateJoinerGetsCatchUpAndOwnCompletion() throws Exception {
+        List<String> a = new ArrayList<>(), b = new ArrayList<>(), done = new ArrayList<>();
+        InFlightStreams.Join leader = inFlight.join(request("요약해줘"), subscriber("a", a, done));
+        assertTrue(leader.leader());
+
+        leader.flight().send("meta", "start");
+        leader.flight().send("delta", "안녕");
+        assertTrue(inFlight.attachIfRunning(request("  요약해줘 "), subscriber("b", b, done)));
+        leader.flight().send("delta", "하세요");
+        leader.flight().end();
+        leader.flight().complete("안녕하세요");
+
+        assertEquals(List.of("start", "안녕", "하세요"), a);
+        assertEquals(a, b);
+        assertEquals(List.of("안녕하세요", "안녕하세요"), done);
+        // 끝난 뒤에는 새로 붙지 않음 -> 다음 요청은 새 리더
+        assertFalse(inFlight.attachIfRunning(request("요약해줘"), subscriber("c", new ArrayList<>(), done)));
+        assertEquals(0, inFlight.size());
+    }
+
+    // 이전 대화가 있으면 프롬프트가 유저별로 달라지므로 다른 유저 / 다른 대화의 같은 질문은 합치지 않음
+    @Test
+    void conversationWithHistoryGetsOwnFlight() {
+        List<String> done = new ArrayList<>();
+        ChatRequest a = request("요약해줘");
+        a.setUserId("a");
+        a.setConversationId("c1");
+        assertTrue(inFlight.join(a, true, subscriber("a", new ArrayList<>(), done)).leader());
+
+        ChatRequest otherUser = request("요약해줘");
+        otherUser.setUserId("b");
+        otherUser.setConversationId("c1");
+        assertFalse(inFlight.attachIfRunning(otherUser, true, subscriber("b", new ArrayList<>(), done)));
+        assertFalse(inFlight.attachIfRunning(otherUser, false, subscriber("b", new ArrayList<>(), done)));
+
+        ChatRequest otherConversation = request("요약해줘");
+        otherConversation.setUserId("a");
+        otherConversation.setConversationId("c2");
+        assertFalse(inFlight.attachIfRunning(otherConversation, true, subscriber("c", new ArrayList<>(), done)));
+
+        ChatRequest sameConversation = request("요약해줘");
+        sameConversation.setUserId("a");
+        sameConversation.setConversationId(" c1 ");
+        assertTrue(inFlight.attachIfRunning(sameConversation, true, subscriber("d", new ArrayList<>(), done)));
+    }
+
+    // 기록 없는 첫 질문은 프롬프트가 같으므로 유저가 달라도 합치고, 완료 콜백(각자 대화 기록 저장)은 유저마다
+    @Test
+    void usersWithoutHistoryShareFlight() throws Exception {
+        List<String> a = new ArrayList<>(), b = new ArrayList<>(), done = new ArrayList<>();
+        ChatRequest first = request("이 문서 뭐야?");
+        first.setUserId("a");
+        InFlightStreams.Join leader = inFlight.join(first, false, subscriber("a", a, done));
+        assertTrue(leader.leader());
+
+        ChatRequest second = request("이 문서  뭐야?");
+        second.setUserId("b");
+        second.setConversationId("c9");
+        assertTrue(inFlight.attachIfRunning(second, false, subscriber("b", b, done)));
+
+        ChatRequest withHistory = request("이 문서 뭐야?");
+        withHistory.setUserId("c");
+        assertFalse(inFlight.attachIfRunning(withHistory, true, subscriber("c", new ArrayList<>(), done)));
+
+        leader.flight().send("delta", "안내서");
+        leader.flight().complete("안내서");
+        assertEquals(List.of("안내서"), a);
+        assertEquals(List.of("안내서"), b);
+        assertEquals(List.of("안내서", "안내서"), done);
+    }
+
+    // 리더 클라이언트가 끊겨도 남은 구독자가 있으면 스트림은 계속, 모두 끊기면 업스트림을 멈추도록 예외
+    @Test
+    void relayContinuesUntilEverySubscriberIsGone() throws Exception {
+        List<String> b = new ArrayList<>(), done = new ArrayList<>();
+        InFlightStreams.Join leader = inFlight.join(request("q"), new InFlightStreams.Subscriber("a",
+                (e, d) -> { throw new IOException("broken pipe"); }, done::add, e -> done.add("error")));
+        InFlightStreams.Join follower = inFlight.join(request("q"), subscriber("b", b, done));
+        assertFalse(follower.leader());
+
+        leader.flight().send("delta", "x");
+        assertEquals(List.of("x"), b);
+
+        InFlightStreams.Join lone = inFlight.join(request("other"), new InFlightStreams.Subscriber("c",
+                (e, d) -> { throw new IOException("broken pipe"); }, done::add, e -> done.add("error")));
+        try {
+            lone.flight().send("delta", "y");
+            throw new AssertionError("expected IOException");
+        } catch (IOException expected) {
+            // 구독자가 없으면 리더가 파이썬 스트림을 끊음
+        }
+        assertEquals("client_gone", lone.flight().cancellation().reason());
+    }
+
+    // 요청이 빠질 때(만료/취소) 마지막 구독자였을 때만 업스트림을 끊음. 이미 연결된 호출은 바로 abort
+    @Test
+    void leavingLastSubscriberCancelsUpstream() {
+        List<String> done = new ArrayList<>();
+        InFlightStreams.Join leader = inFlight.join(request("q"), subscriber("a", new ArrayList<>(), done));
+        inFlight.join(request("q"), subscriber("b", new ArrayList<>(), done));
+        boolean[] aborted = {false};
+        leader.flight().cancellation().bind(() -> aborted[0] = true);
+
+        assertTrue(inFlight.leave("a", "client_cancel"));
+        assertFalse(leader.flight().cancellation().isCancelled());
+        assertTrue(inFlight.leave("b", "client_gone"));
+        assertTrue(aborted[0]);
+        assertEquals("client_gone", leader.flight().cancellation().reason());
+        assertFalse(inFlight.leave("b", "client_gone"));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.project.domain.Document;
+import com.example.project.domain.DocumentStatus;
+import com.example.project.domain.IngestJob;
+import com.example.project.domain.IngestJobStatus;
+import com.example.project.repository.DocumentRepository;
+import com.example.project.repository.IngestJobRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class IngestionServiceTest {
+
+    private final IngestJobRepository jobs = mock(IngestJobRepository.class);
+    private final DocumentRepository documents = mock(DocumentRepository.class);
+    private final PythonClientService python = mock(PythonClientService.class);
+    private final Map<Long, IngestJob> savedJobs = new ConcurrentHashMap<>();
+    private final AtomicLong jobSeq = new AtomicLong();
+    private IngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        when(jobs.save(any(IngestJob.class))).thenAnswer(inv -> {
+            IngestJob job = inv.getArgument(0);
+            if (job.getId() == null) ReflectionTestUtils.setField(job, "id", jobSeq.incrementAndGet());
+            savedJobs.put(job.getId(), job);
+            return job;
+        });
+        when(jobs.findById(anyLong())).thenAnswer(inv -> Optional.ofNullable(savedJobs.get(inv.<Long>getArgument(0))));
+        // 선점 = QUEUED -> RUNNING + 시도 횟수 증가 (DB 의 조건부 update 흉내)
+        when(jobs.claim(anyLong(), any())).thenAnswer(inv -> {
+            IngestJob job = savedJobs.get(inv.<Long>getArgument(0));
+            if (job == null || job.getStatus() != IngestJobStatus.QUEUED) return 0;
+            job.setStatus(IngestJobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            return 1;
+        });
+        // parallelism 1, 재시도 3번 (백오프 10ms), 배치 창 50ms, lease 60s
+        service = new IngestionService(jobs, documents, python, new AnswerCache(false, 60, 1024, 10, 0),
+                new IngestProgressHub(), new AppMetrics(new SimpleMeterRegistry()),
+                1, 10, 3, 10, 100, 60_000, "requeue", true, 8, 50, 2, 8, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private Document document(long id) {
+        Document d = new Document();
+        ReflectionTestUtils.setField(d, "id", id);
+        d.setFilePath("uploads/" + id + ".pdf");
+        when(documents.findById(id)).thenReturn(Optional.of(d));
+        return d;
+    }
+
+    private IngestJob job(long documentId, IngestJobStatus status, LocalDateTime updatedAt) {
+        IngestJob job = new IngestJob();
+        ReflectionTestUtils.setField(job, "id", jobSeq.incrementAndGet());
+        job.setDocumentId(documentId);
+        job.setStatus(status);
+        job.setUpdatedAt(updatedAt);
+        savedJobs.put(job.getId(), job);
+        return job;
+    }
+
+    // 재인덱싱을 두 번 눌러도 진행 중인 작업을 돌려주고 새 작업을 만들지 않음
+    @Test
+    void submitReturnsActiveJobInsteadOfCreatingAnother() {
+        Document d = document(1L);
+        IngestJob running = job(1L, IngestJobStatus.RUNNING, LocalDateTime.now());
+        when(jobs.findFirstByDocumentIdAndStatusInOrderByIdDesc(eq(1L), any())).thenReturn(Optional.of(running));
+
+        assertSame(running, service.submit(d));
+        verify(jobs, never()).save(any(IngestJob.class));
+        verify(documents, never()).save(any());
+    }
+
+    // 실패하면 백오프 뒤 다시 시도하고, 성공하면 문서 DONE + 작업 SUCCEEDED
+    @Test
+    void failedIngestIsRetriedWithBackoff() {
+        Document d = document(2L);
+        when(python.ingestDocument(eq(d), anyLong()))
+                .thenThrow(new RuntimeException("python down"))
+                .thenReturn(Map.of("ok", true));
+
+        IngestJob job = service.submit(d);
+
+        verify(python, timeout(3000).times(2)).ingestDocument(eq(d), anyLong());
+        verify(jobs, timeout(3000).times(2)).claim(eq(job.getId()), any());
+        waitFor(() -> job.getStatus() == IngestJobStatus.SUCCEEDED);
+        assertEquals(DocumentStatus.DONE, d.getStatus());
+    }
+
+    // 가까운 시간에 등록된 작업은 /ingest/batch 한 번으로 묶임
+    @Test
+    void jobsSubmittedTogetherAreBatched() {
+        Document a = document(3L);
+        Document b = document(4L);
+        when(python.ingestBatch(any(), any())).thenReturn(Map.of(3L, Map.of("ok", true), 4L, Map.of("ok", true)));
+
+        service.submitAll(List.of(a, b));
+
+        verify(python, timeout(3000)).ingestBatch(eq(List.of(a, b)), any());
+        verify(python, never()).ingestDocument(any(), any());
+        waitFor(() -> a.getStatus() == DocumentStatus.DONE && b.getStatus() == DocumentStatus.DONE);
+    }
+
+    // 재시작 복구: lease 가 살아 있는 RUNNING 작업(다른 노드가 실행 중)은 건드리지 않고, 끊긴 작업만 다시 큐에
+    @Test
+    void startupRecoveryOnlyRequeuesStaleRunningJobs() {
+        Document live = document(5L);
+        Document dead = document(6L);
+        live.setStatus(DocumentStatus.PROCESSING);
+        dead.setStatus(DocumentStatus.PROCESSING);
+        IngestJob liveJob = job(5L, IngestJobStatus.RUNNING, LocalDateTime.now());
+        IngestJob deadJob = job(6L, IngestJobStatus.RUNNING, LocalDateTime.now().minusMinutes(10));
+        when(documents.findByStatus(DocumentStatus.PROCESSING)).thenReturn(List.of(live, dead));
+        when(jobs.findFirstByDocumentIdOrderByIdDesc(5L)).thenReturn(Optional.of(liveJob));
+        when(jobs.findFirstByDocumentIdOrderByIdDesc(6L)).thenReturn(Optional.of(deadJob));
+        when(jobs.releaseStale(eq(deadJob.getId()), eq(IngestJobStatus.QUEUED), anyString(), any(), any())).thenAnswer(inv -> {
+            deadJob.setStatus(IngestJobStatus.QUEUED);
+            return 1;
+        });
+        when(python.ingestDocument(eq(dead), anyLong())).thenReturn(Map.of("ok", true));
+
+        service.recoverStuckDocuments();
+
+        verify(jobs, never()).releaseStale(eq(liveJob.getId()), any(), any(), any(), any());
+        verify(jobs, never()).claim(eq(liveJob.getId()), any());
+        verify(jobs, timeout(3000)).claim(eq(deadJob.getId()), any());
+        verify(python, timeout(3000)).ingestDocument(eq(dead), anyLong());
+        verify(python, times(0)).ingestDocument(eq(live), anyLong());
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("timed out");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
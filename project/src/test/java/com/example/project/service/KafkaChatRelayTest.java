@@ -0,0 +1,113 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.project.config.KafkaTopicConfig;
+import com.example.project.controller.dto.ChatRequest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringBootTest(
+        classes = {KafkaChatFront.class, KafkaChatWorker.class, ChatEmitterRegistry.class, KafkaTopicConfig.class,
+                DeltaCoalescer.class, AppMetrics.class, SimpleMeterRegistry.class},
+        properties = {
+                "chat.stream.transport=kafka",
+                "chat.kafka.worker-enabled=true",
+                "chat.kafka.partitions=1",
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}"
+        })
+@ImportAutoConfiguration({KafkaAutoConfiguration.class, JacksonAutoConfiguration.class})
+@EmbeddedKafka(partitions = 1)
+class KafkaChatRelayTest {
+
+    @MockitoBean
+    PythonClientService pythonClientService;
+
+    @MockitoBean
+    ChatHistoryService chatHistoryService;
+
+    @Autowired
+    KafkaChatFront kafkaChatFront;
+
+    @Autowired
+    ChatEmitterRegistry activeEmitters;
+
+    @Autowired
+    KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Test
+    void workerRepliesAreRoutedToTheNodeHoldingTheEmitter() throws Exception {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            ContainerTestUtils.waitForAssignment(container, 1);
+        }
+
+        doAnswer(inv -> {
+            StreamEventSink sink = inv.getArgument(1);
+            sink.send("delta", "{\"type\":\"delta\",\"text\":\"안녕\"}");
+            sink.send("meta", "{\"type\":\"end\",\"citations\":[]}");
+            Consumer<String> onComplete = inv.getArgument(2);
+            onComplete.accept("안녕");
+            return null;
+        }).when(pythonClientService).forwardSse(any(), any(), any());
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        activeEmitters.put("req-1", emitter);
+
+        ChatRequest req = new ChatRequest();
+        req.setDocumentIds(List.of(1L));
+        req.setQuestion("질문");
+        req.setUserId("u1");
+        req.setConversationId("c1");
+        kafkaChatFront.publish("req-1", req);
+
+        assertTrue(emitter.completed.await(30, TimeUnit.SECONDS));
+        assertEquals(2, emitter.frames.size());
+        assertTrue(emitter.frames.get(0).contains("event:delta"));
+        assertTrue(emitter.frames.get(1).contains("event:meta"));
+        verify(chatHistoryService).saveExchange(eq("질문"), eq("안녕"), eq("u1"), eq("c1"), anyLong());
+    }
+
+    // 전송된 SSE 프레임을 문자열로 모아두는 테스트용 Emitter
+    static class RecordingEmitter extends SseEmitter {
+        final List<String> frames = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            frames.add(builder.build().stream()
+                    .map(d -> String.valueOf(d.getData()))
+                    .collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// 로컬 스텁 파이썬 서버 여러 대로 게이트웨이 라우팅 확인 (문서 친화 / spill-over / 헬스 체크 / least-outstanding)
+class PythonGatewayRoutingTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private PythonGateway gateway;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (gateway != null) gateway.shutdown();
+        servers.forEach(s -> s.stop(0));
+    }
+
+    private final Map<String, AtomicBoolean> healthy = new HashMap<>();
+
+    // /chat 에 자기 이름을 돌려주고 /health 는 healthy 플래그에 따라 200 / 503
+    private String stub(String name) throws IOException {
+        AtomicBoolean up = new AtomicBoolean(true);
+        healthy.put(name, up);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat", ex -> {
+            byte[] body = ("{\"node\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/health", ex -> {
+            ex.sendResponseHeaders(up.get() ? 200 : 503, -1);
+            ex.close();
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private PythonGateway gateway(List<String> urls, int spillThreshold, long healthIntervalMs) {
+        return new PythonGateway(urls.get(0), String.join(",", urls), spillThreshold,
+                "/health", healthIntervalMs, 500, 1,
+                20, 10, 1000, 1000, 0,
+                5000, 20, 5000, 4, 5000, 20,
+                5, 10000, new AppMetrics(new SimpleMeterRegistry()));
+    }
+
+    private String nodeFor(Long documentId) {
+        Map<?, ?> r = gateway.postJson(PythonGateway.Profile.CHAT, "/chat", Map.of(), Map.class, documentId);
+        return (String) r.get("node");
+    }
+
+    @Test
+    void sameDocumentGoesToSameNodeAndDocumentsSpreadAcrossNodes() throws Exception {
+        gateway = gateway(List.of(stub("a"), stub("b"), stub("c")), 8, 0);
+
+        Set<String> used = new HashSet<>();
+        for (long doc = 1; doc <= 30; doc++) {
+            String first = nodeFor(doc);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(first, nodeFor(doc), "doc " + doc + " should stick to one node");
+            }
+            used.add(first);
+        }
+        assertEquals(3, used.size());
+    }
+
+    @Test
+    void spillsOverWhenHomeNodeIsSaturated() throws Exception {
+        gateway = gateway(List.of(stub("a"), stub("b")), 1, 0);
+        String home = nodeFor(7L);
+
+        // 친화 노드에 호출 1건을 잡아둠 (spill-threshold = 1)
+        PythonGateway.Call held = gateway.begin(PythonGateway.Profile.CHAT, 7L);
+        try {
+            assertNotEquals(home, nodeFor(7L));
+        } finally {
+            held.success();
+        }
+        assertEquals(home, nodeFor(7L));
+    }
+
+    @Test
+    void leastOutstandingWithoutAffinity() throws Exception {
+        String a = stub("a");
+        String b = stub("b");
+        gateway = gateway(List.of(a, b), 8, 0);
+
+        PythonGateway.Call held = gateway.begin(PythonGateway.Profile.CHAT, null);
+        try {
+            String busy = held.baseUrl().equals(a) ? "a" : "b";
+            for (int i = 0; i < 5; i++) {
+                assertNotEquals(busy, nodeFor(null));
+            }
+        } finally {
+            held.success();
+        }
+    }
+
+    @Test
+    void unhealthyNodeIsSkipped() throws Exception {
+        String a = stub("a");
+        gateway = gateway(List.of(a, stub("b")), 8, 50);
+        // a 의 헬스 체크가 실패하기 시작 -> 라우팅 후보에서 빠짐
+        healthy.get("a").set(false);
+        awaitHealthy(a, false);
+
+        for (long doc = 1; doc <= 10; doc++) {
+            assertEquals("b", nodeFor(doc));
+        }
+
+        // 다시 정상 -> 복귀
+        healthy.get("a").set(true);
+        awaitHealthy(a, true);
+        Set<String> used = new HashSet<>();
+        for (long doc = 1; doc <= 20; doc++) {
+            used.add(nodeFor(doc));
+        }
+        assertEquals(Set.of("a", "b"), used);
+    }
+
+    // 고정 sleep 대신 헬스 체크 결과가 stats 에 반영될 때까지 기다림 (느린 CI 에서도 안정적)
+    private void awaitHealthy(String baseUrl, boolean expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            List<?> endpoints = (List<?>) gateway.stats().get("endpoints");
+            for (Object o : endpoints) {
+                Map<?, ?> e = (Map<?, ?>) o;
+                if (baseUrl.equals(e.get("baseUrl")) && Boolean.valueOf(expected).equals(e.get("healthy"))) return;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, baseUrl + " healthy=" + expected + " not reached");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ResumableStreamsTest {
+
+    private final ResumableStreams streams = new ResumableStreams(30_000, 3, 1 << 20, 0, 1, new AppMetrics(new SimpleMeterRegistry()));
+
+    @AfterEach
+    void tearDown() {
+        streams.shutdown();
+    }
+
+    // 끊긴 뒤에도 생성은 계속 버퍼에 쌓이고, 마지막으로 받은 id 이후부터 이어받음
+    @Test
+    void reconnectReplaysAfterLastEventIdAndContinuesLive() throws Exception {
+        RecordingEmitter first = new RecordingEmitter();
+        ResumableStreams.Stream stream = streams.open("r1", first, null);
+        StreamEventSink sink = stream.sink();
+        sink.send("delta", "a");
+        first.broken = true;
+        sink.send("delta", "b"); // 전송 실패 -> 끊긴 상태, 버퍼에는 남음
+        sink.send("delta", "c");
+
+        RecordingEmitter second = new RecordingEmitter();
+        assertEquals(ResumableStreams.ResumeResult.RESUMED, streams.resume("r1", 1, second));
+        sink.send("meta", "end");
+        stream.complete();
+
+        assertTrue(first.frames.get(0).startsWith("id:r1:0|event:request")); // 첫 이벤트로 requestId 전달
+        assertTrue(first.frames.get(1).contains("id:r1:1"));
+        assertEquals(List.of("id:r1:2|event:delta|b", "id:r1:3|event:delta|c", "id:r1:4|event:meta|end"), second.frames);
+        assertTrue(second.completed);
+
+        // 끝난 스트림도 grace 동안은 버퍼에서 재생. 버퍼(3개)에서 밀려난 구간은 GAP
+        RecordingEmitter third = new RecordingEmitter();
+        assertEquals(ResumableStreams.ResumeResult.FINISHED, streams.resume("r1", 3, third));
+        assertEquals(List.of("id:r1:4|event:meta|end"), third.frames);
+        assertEquals(ResumableStreams.ResumeResult.GAP, streams.resume("r1", 0, new RecordingEmitter()));
+        assertEquals(ResumableStreams.ResumeResult.NOT_FOUND, streams.resume("nope", 0, new RecordingEmitter()));
+    }
+
+    // 이벤트 id 에 requestId 가 들어 있어서 EventSource 가 같은 URL 로 재연결해도 어느 스트림인지 알 수 있음
+    @Test
+    void eventIdCarriesRequestId() {
+        assertEquals(new ResumableStreams.EventId("a-b", 7), ResumableStreams.EventId.parse("a-b:7"));
+        assertEquals(new ResumableStreams.EventId(null, 3), ResumableStreams.EventId.parse(" 3 "));
+        assertNull(ResumableStreams.EventId.parse("x"));
+        assertNull(ResumableStreams.EventId.parse(":1"));
+        assertNull(ResumableStreams.EventId.parse(null));
+    }
+
+    // heartbeat 쓰기가 멈춘 클라이언트가 있어도 그 스트림의 send, 다른 스트림의 heartbeat 는 계속 나감
+    @Test
+    void stuckHeartbeatDoesNotBlockOtherStreams() throws Exception {
+        ResumableStreams beating = new ResumableStreams(30_000, 100, 1 << 20, 20, 2, new AppMetrics(new SimpleMeterRegistry()));
+        CountDownLatch stuck = new CountDownLatch(1), release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                super.send(builder);
+                if (frames.get(frames.size() - 1).startsWith(":hb")) {
+                    stuck.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        RecordingEmitter other = new RecordingEmitter();
+        try {
+            ResumableStreams.Stream slowStream = beating.open("slow", slow, null);
+            beating.open("other", other, null);
+            assertTrue(stuck.await(2, TimeUnit.SECONDS));
+
+            // 스트림 락을 잡고 쓰지 않으므로 릴레이 send 가 안 막힘
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> slowStream.sink().send("delta", "a"));
+            int before = (int) other.frames.stream().filter(f -> f.startsWith(":hb")).count();
+            long deadline = System.currentTimeMillis() + 2000;
+            while (other.frames.stream().filter(f -> f.startsWith(":hb")).count() < before + 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(other.frames.stream().filter(f -> f.startsWith(":hb")).count() >= before + 3);
+            assertEquals(1, slow.frames.stream().filter(f -> f.startsWith(":hb")).count()); // 멈춘 쓰기 위에 쌓지 않음
+        } finally {
+            release.countDown();
+            beating.shutdown();
+        }
+    }
+
+    static class RecordingEmitter extends SseEmitter {
+        final List<String> frames = new CopyOnWriteArrayList<>();
+        volatile boolean broken;
+        volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) throw new IOException("broken pipe");
+            String raw = builder.build().stream().map(d -> String.valueOf(d.getData())).collect(Collectors.joining());
+            // "id:r1:2\nevent:delta\ndata:b\n\n" -> "id:r1:2|event:delta|b"
+            frames.add(raw.replace("\ndata:", "|").replace("\n", "|").replaceAll("\\|+$", ""));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+}
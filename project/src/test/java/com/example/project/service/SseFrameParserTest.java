@@ -0,0 +1,64 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+class SseFrameParserTest {
+
+    private static final String STREAM =
+            "event: meta\ndata: {\"type\":\"start\"}\n\n"
+            + "event: delta\r\ndata: {\"type\":\"delta\",\"text\":\"안녕\"}\r\n\r\n"
+            + "event: delta\ndata: {\"type\":\"delta\",\"extra\":{\"a\":[1,2]},\"text\":\"하세요\\n\"}\n\n"
+            + ": comment\n"
+            + "data: line1\ndata: line2\n\n"
+            + "event: meta\ndata: {\"type\":\"end\",\"citations\":[]}\n\n";
+
+    // 업스트림이 어느 위치에서 잘려 와도 (UTF-8 글자 중간 포함) 같은 이벤트가 나와야 함
+    @Test
+    void sameEventsForEveryChunkSize() throws Exception {
+        byte[] bytes = STREAM.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = parse(bytes, bytes.length);
+        assertEquals(List.of(
+                "meta|{\"type\":\"start\"}",
+                "delta|{\"type\":\"delta\",\"text\":\"안녕\"}",
+                "delta|{\"type\":\"delta\",\"extra\":{\"a\":[1,2]},\"text\":\"하세요\\n\"}",
+                "message|line1\nline2",
+                "meta|{\"type\":\"end\",\"citations\":[]}"), expected);
+        for (int chunk = 1; chunk < 40; chunk++) {
+            assertEquals(expected, parse(bytes, chunk), "chunk size " + chunk);
+        }
+    }
+
+    @Test
+    void relayCollectsDeltaTextWithoutTouchingOtherEvents() throws Exception {
+        List<String> sent = new ArrayList<>();
+        String answer = new PythonClientService(null, null).relay(
+                new ByteArrayInputStream(STREAM.getBytes(StandardCharsets.UTF_8)),
+                (name, data) -> sent.add(name));
+        assertEquals("안녕하세요\n", answer);
+        assertEquals(List.of("meta", "delta", "delta", "message", "meta"), sent);
+
+        StringBuilder out = new StringBuilder();
+        byte[] notJson = "not json".getBytes(StandardCharsets.UTF_8);
+        SseFrameParser.appendDeltaText(new JsonFactory(), notJson, 0, notJson.length, out);
+        assertEquals("", out.toString());
+    }
+
+    private static List<String> parse(byte[] bytes, int chunk) throws Exception {
+        List<String> events = new ArrayList<>();
+        SseFrameParser parser = new SseFrameParser();
+        for (int i = 0; i < bytes.length; i += chunk) {
+            parser.feed(bytes, i, Math.min(chunk, bytes.length - i),
+                    (event, data, offset, length) -> events.add(event + "|" + new String(data, offset, length, StandardCharsets.UTF_8)));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Sinks;
+
+class StreamDrainTest {
+
+    private final AppMetrics metrics = new AppMetrics(new SimpleMeterRegistry());
+    private final ChatStreamExecutor executor = new ChatStreamExecutor("pool", 1, 1, metrics);
+    private final FairChatScheduler scheduler = new FairChatScheduler(executor, 1, 10, 100);
+    private final ResumableStreams resumable = new ResumableStreams(30_000, 100, 1 << 20, 0, 1, metrics);
+    private final ChatMessageWriteBehind writeBehind = mock(ChatMessageWriteBehind.class);
+    private final ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+    private final StreamDrain drain = new StreamDrain(executor, scheduler, new InFlightStreams(true), resumable,
+            writeBehind, publisher, 5_000, 1_000);
+
+    @AfterEach
+    void tearDown() {
+        resumable.shutdown();
+        executor.shutdown();
+    }
+
+    // 드레인: 대기 요청은 "draining" 으로 돌려보내고, 실행 중인 요청은 끝날 때까지 기다린 뒤 대화 기록 플러시
+    @Test
+    void drainRedirectsQueuedAndWaitsForRunning() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit("running", "u1", () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        ResumableStreamsTest.RecordingEmitter queuedClient = new ResumableStreamsTest.RecordingEmitter();
+        resumable.open("queued", queuedClient, null);
+        assertEquals(FairChatScheduler.Result.QUEUED, scheduler.submit("queued", "u2", () -> {}, null).result());
+
+        assertTrue(drain.begin());
+        verify(publisher).publishEvent(any(AvailabilityChangeEvent.class));
+        assertTrue(queuedClient.frames.stream().anyMatch(f -> f.contains("event:draining")));
+        assertTrue(queuedClient.completed);
+        assertEquals(0, scheduler.queuedCount());
+        assertEquals("draining", scheduler.submit("late", "u3", () -> {}, null).reason());
+
+        Thread stopper = new Thread(drain::stop);
+        stopper.start();
+        Thread.sleep(200);
+        assertTrue(stopper.isAlive()); // 실행 중인 릴레이를 기다리는 중
+        release.countDown();
+        stopper.join(5_000);
+        assertEquals(0, executor.running());
+        verify(writeBehind).flush();
+    }
+
+    // 실행기 슬롯을 쓰지 않는 스트림(리액티브, 간격 재생 캐시)도 끝날 때까지 기다림
+    @Test
+    void drainWaitsForTrackedStreamsOutsideExecutor() throws Exception {
+        Runnable replay = drain.track();
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        drain.tracked(upstream.asFlux()).subscribe();
+        assertEquals(2, drain.inProgress());
+
+        Thread stopper = new Thread(drain::stop);
+        stopper.start();
+        Thread.sleep(200);
+        assertTrue(stopper.isAlive());
+
+        replay.run();
+        replay.run(); // 여러 번 불러도 1번만 셈
+        assertEquals(1, drain.inProgress());
+        upstream.tryEmitComplete();
+        stopper.join(5_000);
+        assertFalse(stopper.isAlive());
+        assertEquals(0, drain.inProgress());
+        verify(writeBehind).flush();
+    }
+}